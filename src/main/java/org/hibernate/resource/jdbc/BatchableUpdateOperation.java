@@ -0,0 +1,65 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+
+/**
+ * An update (insert/update/delete) Operation which may be combined with others into a single JDBC batch when
+ * performed via {@link JdbcSession#acceptAll}.  Operations are combined when they are consecutive and share the same
+ * {@link #getSql() SQL}.
+ * <p/>
+ * The result is the update count; when performed as part of a JDBC batch this may be
+ * {@link java.sql.Statement#SUCCESS_NO_INFO}, depending on the driver.
+ *
+ * @author Steve Ebersole
+ */
+public abstract class BatchableUpdateOperation implements Operation<Integer> {
+	/**
+	 * The SQL to execute
+	 *
+	 * @return The SQL
+	 */
+	public abstract String getSql();
+
+	/**
+	 * Bind the parameter values for this operation
+	 *
+	 * @param statement The statement to bind to
+	 *
+	 * @throws SQLException Indicates a problem binding
+	 */
+	public abstract void bindParameters(PreparedStatement statement) throws SQLException;
+
+	/**
+	 * Statement preparation and execution are left to the JdbcSession, which treats a single BatchableUpdateOperation
+	 * as a batch of one.
+	 */
+	@Override
+	public final Integer perform(JdbcSession jdbcSession) throws SQLException {
+		return (Integer) jdbcSession.acceptAll( Collections.singletonList( this ) ).get( 0 );
+	}
+}
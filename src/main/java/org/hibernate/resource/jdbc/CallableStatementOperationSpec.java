@@ -0,0 +1,108 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc;
+
+import java.sql.CallableStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.hibernate.resource.jdbc.spi.SqlHandle;
+
+/**
+ * Specification of a stored procedure (or function) call.  The JdbcSession handles preparing the call, registering
+ * the output parameters, walking through all of the returned results and managing the JDBC resources (via the
+ * {@link ResourceRegistry}); the spec supplies the inputs and consumes the outputs:<ol>
+ *     <li>{@link #bindParameters} to bind IN (and INOUT) values</li>
+ *     <li>
+ *         {@link #processRow} / {@link #processUpdateCount} as each result comes back.  Rows are handed over as
+ *         they are read from the ResultSet (nothing is buffered), so the spec decides what to keep.
+ *     </li>
+ *     <li>{@link #buildResult} with the {@link #getOutputParameters() output parameter} values</li>
+ * </ol>
+ *
+ * @param <R> The result type
+ *
+ * @author Steve Ebersole
+ */
+public interface CallableStatementOperationSpec<R> extends OperationSpec<R> {
+	/**
+	 * The call to prepare; e.g. {@code "{call my_proc(?, ?)}"}.  Passed through the
+	 * {@link org.hibernate.resource.jdbc.spi.StatementInspector}.
+	 *
+	 * @return The SQL
+	 */
+	public String getSql();
+
+	/**
+	 * The {@link org.hibernate.resource.jdbc.spi.JdbcSessionFactory#registerSql registered} form of the SQL, if
+	 * any.  When available it is used in place of {@link #getSql()}, saving the per-execution inspection.
+	 *
+	 * @return The handle, or {@code null} to use {@link #getSql()}
+	 */
+	public SqlHandle getSqlHandle();
+
+	/**
+	 * The OUT and INOUT parameters to register.
+	 *
+	 * @return The output parameters; may be empty
+	 */
+	public List<OutputParameter<?>> getOutputParameters();
+
+	/**
+	 * Bind the IN (and INOUT) parameter values.
+	 *
+	 * @param statement The statement
+	 *
+	 * @throws SQLException Indicates a problem binding
+	 */
+	public void bindParameters(CallableStatement statement) throws SQLException;
+
+	/**
+	 * Process the current row of a returned ResultSet.  Do not move the cursor.
+	 *
+	 * @param resultSetIndex The (0-based) index of the ResultSet among those returned by the call
+	 * @param resultSet The ResultSet, positioned on the row
+	 *
+	 * @throws SQLException Indicates a problem reading the row
+	 */
+	public void processRow(int resultSetIndex, ResultSet resultSet) throws SQLException;
+
+	/**
+	 * Process an update count returned by the call.
+	 *
+	 * @param updateCountIndex The (0-based) index of the update count among those returned by the call
+	 * @param updateCount The update count
+	 */
+	public void processUpdateCount(int updateCountIndex, int updateCount);
+
+	/**
+	 * Build the result of the operation, once all returned results have been processed.
+	 *
+	 * @param outputs The values of the output parameters
+	 *
+	 * @return The result
+	 */
+	public R buildResult(OutputParameterValues outputs);
+}
@@ -0,0 +1,284 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.BitSet;
+
+/**
+ * A reusable batch of rows held column-wise in primitive arrays, for reading large numbers of numeric and temporal
+ * values without boxing each of them (and without a per-row {@code Object[]}).  Values are read with the primitive
+ * ResultSet getters; SQL NULLs are recorded in a per-column bitset (the array then holds 0).
+ * <p/>
+ * The columns of the batch correspond, in order, to the columns of the ResultSet.  Temporal columns are held as
+ * epoch milliseconds in a {@code long[]}.
+ * <p/>
+ * A batch is not thread-safe, but may be re-used for any number of {@link #fill} calls, including across
+ * executions.
+ *
+ * @author Steve Ebersole
+ * @see ColumnarQueryOperationSpec
+ */
+public class ColumnBatch {
+	/**
+	 * The types of column a batch can hold, and so the getter used to read them
+	 */
+	public static enum ColumnType {
+		/**
+		 * Read via {@link ResultSet#getInt}, held in an {@code int[]}
+		 */
+		INT,
+		/**
+		 * Read via {@link ResultSet#getLong}, held in a {@code long[]}
+		 */
+		LONG,
+		/**
+		 * Read via {@link ResultSet#getDouble}, held in a {@code double[]}
+		 */
+		DOUBLE,
+		/**
+		 * Read via {@link ResultSet#getDate}, held as epoch milliseconds in a {@code long[]}
+		 */
+		DATE,
+		/**
+		 * Read via {@link ResultSet#getTimestamp}, held as epoch milliseconds in a {@code long[]} (so sub-millisecond
+		 * precision is lost)
+		 */
+		TIMESTAMP
+	}
+
+	private final int capacity;
+	private final ColumnType[] columnTypes;
+
+	private final int[][] ints;
+	private final long[][] longs;
+	private final double[][] doubles;
+	private final BitSet[] nulls;
+
+	private int rowCount;
+
+	/**
+	 * Constructs a batch.
+	 *
+	 * @param capacity The maximum number of rows per batch
+	 * @param columnTypes The types of the columns, in ResultSet order
+	 */
+	public ColumnBatch(int capacity, ColumnType... columnTypes) {
+		if ( capacity < 1 ) {
+			throw new IllegalArgumentException( "capacity must be at least 1" );
+		}
+		this.capacity = capacity;
+		this.columnTypes = columnTypes.clone();
+
+		this.ints = new int[columnTypes.length][];
+		this.longs = new long[columnTypes.length][];
+		this.doubles = new double[columnTypes.length][];
+		this.nulls = new BitSet[columnTypes.length];
+		for ( int i = 0; i < columnTypes.length; i++ ) {
+			switch ( columnTypes[i] ) {
+				case INT: {
+					ints[i] = new int[capacity];
+					break;
+				}
+				case DOUBLE: {
+					doubles[i] = new double[capacity];
+					break;
+				}
+				default: {
+					longs[i] = new long[capacity];
+				}
+			}
+			nulls[i] = new BitSet( capacity );
+		}
+	}
+
+	/**
+	 * Replace the contents of the batch with the next rows of the ResultSet, up to the capacity.
+	 *
+	 * @param resultSet The ResultSet
+	 *
+	 * @return The number of rows read; fewer than the capacity means the ResultSet is exhausted.
+	 *
+	 * @throws SQLException Indicates a problem reading the rows
+	 */
+	public int fill(ResultSet resultSet) throws SQLException {
+		clear();
+		while ( rowCount < capacity && resultSet.next() ) {
+			readRow( resultSet, rowCount++ );
+		}
+		return rowCount;
+	}
+
+	private void readRow(ResultSet resultSet, int row) throws SQLException {
+		for ( int i = 0; i < columnTypes.length; i++ ) {
+			final int position = i + 1;
+			switch ( columnTypes[i] ) {
+				case INT: {
+					ints[i][row] = resultSet.getInt( position );
+					break;
+				}
+				case LONG: {
+					longs[i][row] = resultSet.getLong( position );
+					break;
+				}
+				case DOUBLE: {
+					doubles[i][row] = resultSet.getDouble( position );
+					break;
+				}
+				case DATE: {
+					final Date date = resultSet.getDate( position );
+					longs[i][row] = date == null ? 0 : date.getTime();
+					break;
+				}
+				case TIMESTAMP: {
+					final Timestamp timestamp = resultSet.getTimestamp( position );
+					longs[i][row] = timestamp == null ? 0 : timestamp.getTime();
+					break;
+				}
+			}
+			if ( resultSet.wasNull() ) {
+				nulls[i].set( row );
+			}
+		}
+	}
+
+	/**
+	 * Empty the batch
+	 */
+	public void clear() {
+		if ( rowCount > 0 ) {
+			for ( BitSet columnNulls : nulls ) {
+				columnNulls.clear();
+			}
+		}
+		rowCount = 0;
+	}
+
+	/**
+	 * The number of rows currently in the batch
+	 *
+	 * @return The row count
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * The maximum number of rows the batch holds
+	 *
+	 * @return The capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * The number of columns in the batch
+	 *
+	 * @return The column count
+	 */
+	public int getColumnCount() {
+		return columnTypes.length;
+	}
+
+	/**
+	 * The type of a column
+	 *
+	 * @param column The (0-based) column index
+	 *
+	 * @return The column type
+	 */
+	public ColumnType getColumnType(int column) {
+		return columnTypes[column];
+	}
+
+	/**
+	 * The values of an {@link ColumnType#INT} column.  Only the first {@link #getRowCount()} entries are valid.
+	 *
+	 * @param column The (0-based) column index
+	 *
+	 * @return The values; the array is re-used by the next {@link #fill}
+	 */
+	public int[] getInts(int column) {
+		return checkType( ints[column], column, ColumnType.INT );
+	}
+
+	/**
+	 * The values of a {@link ColumnType#LONG}, {@link ColumnType#DATE} or {@link ColumnType#TIMESTAMP} column.
+	 * Only the first {@link #getRowCount()} entries are valid.
+	 *
+	 * @param column The (0-based) column index
+	 *
+	 * @return The values; the array is re-used by the next {@link #fill}
+	 */
+	public long[] getLongs(int column) {
+		return checkType( longs[column], column, ColumnType.LONG );
+	}
+
+	/**
+	 * The values of a {@link ColumnType#DOUBLE} column.  Only the first {@link #getRowCount()} entries are valid.
+	 *
+	 * @param column The (0-based) column index
+	 *
+	 * @return The values; the array is re-used by the next {@link #fill}
+	 */
+	public double[] getDoubles(int column) {
+		return checkType( doubles[column], column, ColumnType.DOUBLE );
+	}
+
+	/**
+	 * Was the value in the given column of the given row SQL NULL?
+	 *
+	 * @param column The (0-based) column index
+	 * @param row The (0-based) row index
+	 *
+	 * @return {@code true} if the value was NULL
+	 */
+	public boolean isNull(int column, int row) {
+		return nulls[column].get( row );
+	}
+
+	/**
+	 * The NULL markers of a column, one bit per row.
+	 *
+	 * @param column The (0-based) column index
+	 *
+	 * @return The bitset; re-used by the next {@link #fill}
+	 */
+	public BitSet getNulls(int column) {
+		return nulls[column];
+	}
+
+	private <A> A checkType(A values, int column, ColumnType expected) {
+		if ( values == null ) {
+			throw new IllegalArgumentException(
+					"Column " + column + " is of type " + columnTypes[column] + ", not " + expected
+			);
+		}
+		return values;
+	}
+}
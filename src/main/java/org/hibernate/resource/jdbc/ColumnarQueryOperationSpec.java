@@ -0,0 +1,91 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.hibernate.resource.jdbc.spi.SqlHandle;
+
+/**
+ * Specification of a query whose (numeric and temporal) results are processed column-wise, a {@link ColumnBatch}
+ * at a time, rather than row by row.  The JdbcSession handles preparing and executing the query, filling the batch
+ * and managing the JDBC resources (via the {@link ResourceRegistry}); the spec supplies the inputs and consumes the
+ * batches:<ol>
+ *     <li>{@link #bindParameters} to bind the parameter values</li>
+ *     <li>{@link #processBatch} for each batch of rows; never called with an empty batch</li>
+ *     <li>{@link #buildResult} once all rows have been processed</li>
+ * </ol>
+ *
+ * @param <R> The result type
+ *
+ * @author Steve Ebersole
+ */
+public interface ColumnarQueryOperationSpec<R> extends OperationSpec<R> {
+	/**
+	 * The query to prepare.  Passed through the {@link org.hibernate.resource.jdbc.spi.StatementInspector}.
+	 *
+	 * @return The SQL
+	 */
+	public String getSql();
+
+	/**
+	 * The {@link org.hibernate.resource.jdbc.spi.JdbcSessionFactory#registerSql registered} form of the SQL, if
+	 * any.  When available it is used in place of {@link #getSql()}, saving the per-execution inspection.
+	 *
+	 * @return The handle, or {@code null} to use {@link #getSql()}
+	 */
+	public SqlHandle getSqlHandle();
+
+	/**
+	 * The batch to read the rows into.  Its column types must match the columns selected by the query.  It is
+	 * re-filled for each batch of rows, and may be re-used across executions (though not concurrently).
+	 *
+	 * @return The batch
+	 */
+	public ColumnBatch getColumnBatch();
+
+	/**
+	 * Bind the parameter values.
+	 *
+	 * @param statement The statement
+	 *
+	 * @throws SQLException Indicates a problem binding
+	 */
+	public void bindParameters(PreparedStatement statement) throws SQLException;
+
+	/**
+	 * Process a batch of rows.  The batch contents are only valid for the duration of the call.
+	 *
+	 * @param batch The batch
+	 */
+	public void processBatch(ColumnBatch batch);
+
+	/**
+	 * Build the result of the operation, once all rows have been processed.
+	 *
+	 * @return The result
+	 */
+	public R buildResult();
+}
@@ -23,6 +23,8 @@
  */
 package org.hibernate.resource.jdbc;
 
+import java.util.List;
+
 import org.hibernate.resource.transaction.TransactionCoordinator;
 
 /**
@@ -47,6 +49,11 @@ public interface JdbcSession {
 
 	/**
 	 * Get the logical connection to the database represented by this JdbcSession
+	 * <p/>
+	 * Unlike work done through {@link #accept}, work done directly against the LogicalConnection is not
+	 * coordinated with transaction completion initiated from other threads; callers doing so in JTA environments
+	 * should bracket that work with {@link TransactionCoordinator#beforeOwnerWork()} and
+	 * {@link TransactionCoordinator#afterOwnerWork()}.
 	 *
 	 * @return The logical JDBC connection.
 	 *
@@ -73,6 +80,20 @@ public interface JdbcSession {
 	 */
 	public <R> R accept(Operation<R> operation);
 
+	/**
+	 * Accept a sequence of operations to be performed, in order, within a single Connection window: the Connection
+	 * is held across all of them, a single after-statement release decision is made at the end, and any failure is
+	 * translated once, ending the sequence.
+	 * <p/>
+	 * Consecutive {@link BatchableUpdateOperation}s with the same SQL are sent to the database as a single JDBC
+	 * batch, where the driver supports batch updates.
+	 *
+	 * @param operations The operations to perform
+	 *
+	 * @return The operation results, in the same order as the operations
+	 */
+	public List<Object> acceptAll(List<? extends Operation<?>> operations);
+
 	/**
 	 * Accept the specification of an operation to be performed within bounds of this JdbcSession
 	 *
@@ -0,0 +1,62 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc;
+
+/**
+ * Describes a read of a table keyed by a numeric (long) key, in chunks, using keyset pagination; see
+ * {@link org.hibernate.resource.jdbc.spi.KeysetPaginatedReader}.
+ *
+ * @param <T> The row type
+ *
+ * @author Steve Ebersole
+ */
+public interface KeysetPaginationSpec<T> {
+	/**
+	 * The SQL to read the rows following a given key.  It must take exactly one parameter, the key of the last row
+	 * already read (exclusive), and must order the rows by the key; e.g.
+	 * {@code select id, name from person where id > ? order by id}.
+	 * <p/>
+	 * The size of each chunk is limited through {@link java.sql.Statement#setMaxRows}, so the SQL should not limit
+	 * the rows itself.
+	 *
+	 * @return The SQL
+	 */
+	public String getChunkSql();
+
+	/**
+	 * The extractor for the row objects
+	 *
+	 * @return The row extractor
+	 */
+	public RowExtractor<T> getRowExtractor();
+
+	/**
+	 * The key of a row, as extracted by the {@link #getRowExtractor() row extractor}
+	 *
+	 * @param row The row
+	 *
+	 * @return The key
+	 */
+	public long getKey(T row);
+}
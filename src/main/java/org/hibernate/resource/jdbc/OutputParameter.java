@@ -0,0 +1,128 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.CallableStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * Describes an OUT (or INOUT) parameter of a {@link CallableStatementOperationSpec}, including how to extract its
+ * value in a type-safe manner.  The value is then available from {@link OutputParameterValues#getValue}.
+ * <p/>
+ * For INOUT parameters, bind the input value in {@link CallableStatementOperationSpec#bindParameters} as usual;
+ * registration of the parameter as an output is handled for you.
+ *
+ * @param <T> The Java type of the parameter value
+ *
+ * @author Steve Ebersole
+ */
+public abstract class OutputParameter<T> {
+	private final int position;
+	private final int sqlType;
+
+	protected OutputParameter(int position, int sqlType) {
+		this.position = position;
+		this.sqlType = sqlType;
+	}
+
+	/**
+	 * The (1-based) position of the parameter
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * The JDBC type code to register the parameter with; see {@link Types}
+	 */
+	public int getSqlType() {
+		return sqlType;
+	}
+
+	/**
+	 * Extract the parameter value after execution
+	 *
+	 * @param statement The executed statement
+	 *
+	 * @return The value; {@code null} for SQL NULL
+	 *
+	 * @throws SQLException Indicates a problem accessing the value
+	 */
+	public abstract T extract(CallableStatement statement) throws SQLException;
+
+	public static OutputParameter<Integer> integer(int position) {
+		return new OutputParameter<Integer>( position, Types.INTEGER ) {
+			@Override
+			public Integer extract(CallableStatement statement) throws SQLException {
+				final int value = statement.getInt( getPosition() );
+				return statement.wasNull() ? null : value;
+			}
+		};
+	}
+
+	public static OutputParameter<Long> bigint(int position) {
+		return new OutputParameter<Long>( position, Types.BIGINT ) {
+			@Override
+			public Long extract(CallableStatement statement) throws SQLException {
+				final long value = statement.getLong( getPosition() );
+				return statement.wasNull() ? null : value;
+			}
+		};
+	}
+
+	public static OutputParameter<BigDecimal> decimal(int position) {
+		return new OutputParameter<BigDecimal>( position, Types.DECIMAL ) {
+			@Override
+			public BigDecimal extract(CallableStatement statement) throws SQLException {
+				return statement.getBigDecimal( getPosition() );
+			}
+		};
+	}
+
+	public static OutputParameter<String> varchar(int position) {
+		return new OutputParameter<String>( position, Types.VARCHAR ) {
+			@Override
+			public String extract(CallableStatement statement) throws SQLException {
+				return statement.getString( getPosition() );
+			}
+		};
+	}
+
+	public static OutputParameter<Timestamp> timestamp(int position) {
+		return new OutputParameter<Timestamp>( position, Types.TIMESTAMP ) {
+			@Override
+			public Timestamp extract(CallableStatement statement) throws SQLException {
+				return statement.getTimestamp( getPosition() );
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return "OutputParameter(" + position + ")";
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The values of the {@link OutputParameter}s of an executed {@link CallableStatementOperationSpec}
+ *
+ * @author Steve Ebersole
+ */
+public class OutputParameterValues {
+	private final Map<OutputParameter<?>,Object> values = new IdentityHashMap<OutputParameter<?>, Object>();
+
+	public <T> void setValue(OutputParameter<T> parameter, T value) {
+		values.put( parameter, value );
+	}
+
+	/**
+	 * Get the value of the given output parameter.
+	 *
+	 * @param parameter The output parameter, as returned from
+	 * {@link CallableStatementOperationSpec#getOutputParameters()}
+	 * @param <T> The parameter type
+	 *
+	 * @return The value; {@code null} for SQL NULL
+	 *
+	 * @throws IllegalArgumentException If the parameter is not one of the spec's output parameters
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getValue(OutputParameter<T> parameter) {
+		if ( !values.containsKey( parameter ) ) {
+			throw new IllegalArgumentException( "Unknown output parameter : " + parameter );
+		}
+		return (T) values.get( parameter );
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc;
+
+/**
+ * Describes a scan of a table keyed by a numeric (long) key, such that the scan can be split into key ranges;
+ * see {@link org.hibernate.resource.jdbc.spi.PartitionedScanExecutor}.
+ *
+ * @param <T> The row type
+ *
+ * @author Steve Ebersole
+ */
+public interface PartitionedScanSpec<T> {
+	/**
+	 * The SQL to scan a single key range.  It must take exactly two parameters: the lower bound of the range
+	 * (exclusive) and the upper bound (inclusive), and must order the rows by the key; e.g.
+	 * {@code select id, name from person where id > ? and id <= ? order by id}.
+	 * <p/>
+	 * The ordering is what allows a partition to resume after the last row delivered when it is retried.
+	 *
+	 * @return The SQL
+	 */
+	public String getRangeSql();
+
+	/**
+	 * The extractor for the row objects
+	 *
+	 * @return The row extractor
+	 */
+	public RowExtractor<T> getRowExtractor();
+
+	/**
+	 * The key of a row, as extracted by the {@link #getRowExtractor() row extractor}
+	 *
+	 * @param row The row
+	 *
+	 * @return The key
+	 */
+	public long getKey(T row);
+}
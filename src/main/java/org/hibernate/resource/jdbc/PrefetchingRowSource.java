@@ -0,0 +1,243 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.hibernate.HibernateException;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Exposes the rows of an open ResultSet, reading them in buffers on an Executor: while the caller processes one
+ * buffer, the next is read in the background.  Useful when per-row processing is expensive enough that overlapping
+ * it with the driver's network fetches (of {@link ResultSet#getFetchSize()} rows at a time) pays off; a buffer size
+ * that is a multiple of the fetch size works best.
+ * <p/>
+ * The ResultSet is only ever used by one thread at a time : buffers are read one after the other, and never while
+ * the caller is in {@link #hasNext}.  The Statement and ResultSet stay tracked by the {@link ResourceRegistry}
+ * throughout; {@link #close} releases them, and must be called (on the thread owning the JdbcSession) before the
+ * JdbcSession releases its resources.
+ * <p/>
+ * Typically used within an {@link Operation}, e.g.
+ * <pre>
+ *     final PreparedStatement statement = connection.prepareStatement( sql );
+ *     resourceRegistry.register( statement, true );
+ *     final PrefetchingRowSource&lt;Person&gt; rows = new PrefetchingRowSource&lt;Person&gt;(
+ *             resourceRegistry, statement, statement.executeQuery(), personExtractor, 500, executor
+ *     );
+ *     try {
+ *         while ( rows.hasNext() ) {
+ *             process( rows.next() );
+ *         }
+ *     }
+ *     finally {
+ *         rows.close();
+ *     }
+ * </pre>
+ *
+ * @param <T> The row type
+ *
+ * @author Steve Ebersole
+ */
+public class PrefetchingRowSource<T> {
+	private static final Logger log = Logger.getLogger( PrefetchingRowSource.class );
+
+	private final ResourceRegistry resourceRegistry;
+	private final Statement statement;
+	private final ResultSet resultSet;
+	private final RowExtractor<T> rowExtractor;
+	private final int bufferSize;
+	private final Executor executor;
+
+	private List<T> current;
+	private int position;
+	private FutureTask<List<T>> pending;
+	// held while reading the ResultSet in the background; close() takes it to wait out a read in progress
+	private final Lock readLock = new ReentrantLock();
+	private volatile boolean closed;
+
+	/**
+	 * Create the row source, and start reading the first buffer.
+	 *
+	 * @param resourceRegistry The registry the Statement is registered with
+	 * @param statement The Statement; already registered with the registry
+	 * @param resultSet The ResultSet to read; registered with the registry here
+	 * @param rowExtractor The extractor for the row objects
+	 * @param bufferSize The (maximum) number of rows per buffer
+	 * @param executor The Executor to read the buffers on
+	 */
+	public PrefetchingRowSource(
+			ResourceRegistry resourceRegistry,
+			Statement statement,
+			ResultSet resultSet,
+			RowExtractor<T> rowExtractor,
+			int bufferSize,
+			Executor executor) {
+		if ( bufferSize < 1 ) {
+			throw new IllegalArgumentException( "bufferSize must be at least 1" );
+		}
+		this.resourceRegistry = resourceRegistry;
+		this.statement = statement;
+		this.resultSet = resultSet;
+		this.rowExtractor = rowExtractor;
+		this.bufferSize = bufferSize;
+		this.executor = executor;
+
+		resourceRegistry.register( resultSet, statement );
+		this.pending = readAhead();
+	}
+
+	/**
+	 * Are there more rows?  Waits for the background read of the next buffer, if needed.
+	 *
+	 * @return {@code true} if there are more rows; {@code false} otherwise.
+	 *
+	 * @throws SQLException Indicates a problem reading the rows
+	 */
+	public boolean hasNext() throws SQLException {
+		if ( closed ) {
+			throw new IllegalStateException( "PrefetchingRowSource is closed" );
+		}
+
+		while ( current == null || position >= current.size() ) {
+			if ( pending == null ) {
+				return false;
+			}
+
+			current = await( pending );
+			position = 0;
+			pending = null;
+
+			// a short buffer is the last one
+			if ( current.size() == bufferSize ) {
+				pending = readAhead();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The next row
+	 *
+	 * @return The row
+	 *
+	 * @throws SQLException Indicates a problem reading the rows
+	 */
+	public T next() throws SQLException {
+		if ( !hasNext() ) {
+			throw new NoSuchElementException();
+		}
+		return current.get( position++ );
+	}
+
+	/**
+	 * Release the Statement and ResultSet.  If a buffer is being read in the background, that read is allowed to
+	 * finish first (its rows are discarded), even if the calling thread is interrupted.
+	 */
+	public void close() {
+		if ( closed ) {
+			return;
+		}
+		closed = true;
+		current = null;
+
+		if ( pending != null ) {
+			// a read not yet started now never will; one already running must finish before the ResultSet is
+			// released.  Deliberately not interruptible : returning early would break the one-thread-at-a-time rule
+			pending.cancel( false );
+			pending = null;
+		}
+		readLock.lock();
+		try {
+			resourceRegistry.release( statement );
+		}
+		finally {
+			readLock.unlock();
+		}
+	}
+
+	private FutureTask<List<T>> readAhead() {
+		final FutureTask<List<T>> task = new FutureTask<List<T>>(
+				new Callable<List<T>>() {
+					@Override
+					public List<T> call() throws SQLException {
+						readLock.lock();
+						try {
+							final List<T> buffer = new ArrayList<T>( bufferSize );
+							if ( closed ) {
+								return buffer;
+							}
+							while ( buffer.size() < bufferSize && resultSet.next() ) {
+								buffer.add( rowExtractor.extractRow( resultSet ) );
+							}
+							return buffer;
+						}
+						finally {
+							readLock.unlock();
+						}
+					}
+				}
+		);
+		try {
+			executor.execute( task );
+		}
+		catch (RejectedExecutionException e) {
+			log.debug( "Background read of rows rejected by Executor; reading on calling thread" );
+			task.run();
+		}
+		return task;
+	}
+
+	private List<T> await(FutureTask<List<T>> task) throws SQLException {
+		try {
+			return task.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new HibernateException( "Interrupted waiting for background read of rows", e );
+		}
+		catch (ExecutionException e) {
+			if ( e.getCause() instanceof SQLException ) {
+				throw (SQLException) e.getCause();
+			}
+			if ( e.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new HibernateException( "Unexpected error reading rows", e.getCause() );
+		}
+	}
+}
@@ -19,6 +19,9 @@ public abstract class AbstractLogicalConnectionImplementor implements LogicalCon
 
 	private final ResourceRegistryStandardImpl resourceRegistry = new ResourceRegistryStandardImpl();
 
+	private int statementBatchDepth;
+	private boolean afterStatementDeferred;
+
 	@Override
 	public PhysicalJdbcTransaction getPhysicalJdbcTransaction() {
 		errorIfClosed();
@@ -41,6 +44,41 @@ public abstract class AbstractLogicalConnectionImplementor implements LogicalCon
 		log.trace( "LogicalConnection#afterStatement" );
 	}
 
+	@Override
+	public void beginStatementBatch() {
+		statementBatchDepth++;
+	}
+
+	@Override
+	public void endStatementBatch() {
+		if ( statementBatchDepth == 0 ) {
+			throw new IllegalStateException( "No statement batch in progress" );
+		}
+		if ( --statementBatchDepth == 0 && afterStatementDeferred ) {
+			afterStatementDeferred = false;
+			afterStatement();
+		}
+	}
+
+	/**
+	 * Should the after-statement handling be skipped for now, because a statement batch window is in progress?
+	 * If so, the after-statement handling is re-triggered when the window ends.
+	 *
+	 * @return {@code true} if after-statement handling should be deferred
+	 */
+	protected boolean deferAfterStatement() {
+		if ( statementBatchDepth > 0 ) {
+			afterStatementDeferred = true;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void afterOperation() {
+		log.trace( "LogicalConnection#afterOperation" );
+	}
+
 	@Override
 	public void afterTransaction() {
 		log.trace( "LogicalConnection#afterTransaction" );
@@ -0,0 +1,140 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.internal;
+
+import java.sql.CallableStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.hibernate.resource.jdbc.CallableStatementOperationSpec;
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.Operation;
+import org.hibernate.resource.jdbc.OutputParameter;
+import org.hibernate.resource.jdbc.OutputParameterValues;
+import org.hibernate.resource.jdbc.ResourceRegistry;
+import org.hibernate.resource.jdbc.spi.FetchSizeTuner;
+import org.hibernate.resource.jdbc.spi.JdbcSessionContext;
+import org.hibernate.resource.jdbc.spi.LogicalConnectionImplementor;
+import org.hibernate.resource.jdbc.spi.SqlHandle;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * The Operation performing a {@link CallableStatementOperationSpec}
+ *
+ * @author Steve Ebersole
+ */
+class CallableStatementOperation<R> implements Operation<R> {
+	private final CallableStatementOperationSpec<R> spec;
+	private final StatementInspector statementInspector;
+	private final FetchSizeTuner fetchSizeTuner;
+	private final int defaultFetchSize;
+
+	CallableStatementOperation(CallableStatementOperationSpec<R> spec, JdbcSessionContext context) {
+		this.spec = spec;
+		this.statementInspector = context.getStatementInspector();
+		this.fetchSizeTuner = context.getFetchSizeTuner();
+		this.defaultFetchSize = context.getFetchSize();
+	}
+
+	@Override
+	public R perform(JdbcSession jdbcSession) throws SQLException {
+		final LogicalConnectionImplementor logicalConnection = (LogicalConnectionImplementor) jdbcSession.getLogicalConnection();
+		final ResourceRegistry resourceRegistry = logicalConnection.getResourceRegistry();
+
+		final SqlHandle sqlHandle = spec.getSqlHandle();
+		final String sql = StatementPreparationSupport.resolveSql( statementInspector, sqlHandle, spec.getSql() );
+		final CallableStatement statement = StatementPreparationSupport.prepareCall(
+				logicalConnection.getPhysicalConnection(),
+				sqlHandle,
+				sql
+		);
+		resourceRegistry.register( statement, true );
+		try {
+			StatementPreparationSupport.applyFetchSize( statement, fetchSizeTuner, sqlHandle, sql, defaultFetchSize );
+			for ( OutputParameter<?> parameter : spec.getOutputParameters() ) {
+				statement.registerOutParameter( parameter.getPosition(), parameter.getSqlType() );
+			}
+			spec.bindParameters( statement );
+
+			boolean isResultSet = statement.execute();
+			int resultSetIndex = 0;
+			int updateCountIndex = 0;
+			while ( true ) {
+				if ( isResultSet ) {
+					processResultSet( sqlHandle, sql, statement, resultSetIndex++, resourceRegistry );
+				}
+				else {
+					final int updateCount = statement.getUpdateCount();
+					if ( updateCount == -1 ) {
+						// no more results
+						break;
+					}
+					spec.processUpdateCount( updateCountIndex++, updateCount );
+				}
+				isResultSet = statement.getMoreResults();
+			}
+
+			final OutputParameterValues outputs = new OutputParameterValues();
+			for ( OutputParameter<?> parameter : spec.getOutputParameters() ) {
+				extract( parameter, statement, outputs );
+			}
+			return spec.buildResult( outputs );
+		}
+		finally {
+			resourceRegistry.release( statement );
+			logicalConnection.afterStatement();
+		}
+	}
+
+	private void processResultSet(
+			SqlHandle sqlHandle,
+			String sql,
+			CallableStatement statement,
+			int resultSetIndex,
+			ResourceRegistry resourceRegistry) throws SQLException {
+		final ResultSet resultSet = statement.getResultSet();
+		resourceRegistry.register( resultSet, statement );
+		try {
+			long rowCount = 0;
+			while ( resultSet.next() ) {
+				spec.processRow( resultSetIndex, resultSet );
+				rowCount++;
+			}
+			// the fetch size applies to all results of the call; tune it for the first (generally the only) one
+			if ( fetchSizeTuner != null && resultSetIndex == 0 ) {
+				StatementPreparationSupport.recordResults( fetchSizeTuner, sqlHandle, sql, resultSet, rowCount );
+			}
+		}
+		finally {
+			resourceRegistry.release( resultSet, statement );
+		}
+	}
+
+	private static <T> void extract(
+			OutputParameter<T> parameter,
+			CallableStatement statement,
+			OutputParameterValues outputs) throws SQLException {
+		outputs.setValue( parameter, parameter.extract( statement ) );
+	}
+}
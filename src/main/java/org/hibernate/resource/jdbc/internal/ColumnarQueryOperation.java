@@ -0,0 +1,102 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.internal;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.hibernate.resource.jdbc.ColumnBatch;
+import org.hibernate.resource.jdbc.ColumnarQueryOperationSpec;
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.Operation;
+import org.hibernate.resource.jdbc.ResourceRegistry;
+import org.hibernate.resource.jdbc.spi.FetchSizeTuner;
+import org.hibernate.resource.jdbc.spi.JdbcSessionContext;
+import org.hibernate.resource.jdbc.spi.LogicalConnectionImplementor;
+import org.hibernate.resource.jdbc.spi.SqlHandle;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * The Operation performing a {@link ColumnarQueryOperationSpec}
+ *
+ * @author Steve Ebersole
+ */
+class ColumnarQueryOperation<R> implements Operation<R> {
+	private final ColumnarQueryOperationSpec<R> spec;
+	private final StatementInspector statementInspector;
+	private final FetchSizeTuner fetchSizeTuner;
+	private final int defaultFetchSize;
+
+	ColumnarQueryOperation(ColumnarQueryOperationSpec<R> spec, JdbcSessionContext context) {
+		this.spec = spec;
+		this.statementInspector = context.getStatementInspector();
+		this.fetchSizeTuner = context.getFetchSizeTuner();
+		this.defaultFetchSize = context.getFetchSize();
+	}
+
+	@Override
+	public R perform(JdbcSession jdbcSession) throws SQLException {
+		final LogicalConnectionImplementor logicalConnection = (LogicalConnectionImplementor) jdbcSession.getLogicalConnection();
+		final ResourceRegistry resourceRegistry = logicalConnection.getResourceRegistry();
+
+		final SqlHandle sqlHandle = spec.getSqlHandle();
+		final String sql = StatementPreparationSupport.resolveSql( statementInspector, sqlHandle, spec.getSql() );
+		final PreparedStatement statement = StatementPreparationSupport.prepareStatement(
+				logicalConnection.getPhysicalConnection(),
+				sqlHandle,
+				sql
+		);
+		resourceRegistry.register( statement, true );
+		try {
+			StatementPreparationSupport.applyFetchSize( statement, fetchSizeTuner, sqlHandle, sql, defaultFetchSize );
+			spec.bindParameters( statement );
+
+			final ResultSet resultSet = statement.executeQuery();
+			resourceRegistry.register( resultSet, statement );
+
+			final ColumnBatch batch = spec.getColumnBatch();
+			long rowCount = 0;
+			while ( true ) {
+				final int rows = batch.fill( resultSet );
+				if ( rows > 0 ) {
+					spec.processBatch( batch );
+					rowCount += rows;
+				}
+				if ( rows < batch.getCapacity() ) {
+					break;
+				}
+			}
+
+			if ( fetchSizeTuner != null ) {
+				StatementPreparationSupport.recordResults( fetchSizeTuner, sqlHandle, sql, resultSet, rowCount );
+			}
+			return spec.buildResult();
+		}
+		finally {
+			resourceRegistry.release( statement );
+			logicalConnection.afterStatement();
+		}
+	}
+}
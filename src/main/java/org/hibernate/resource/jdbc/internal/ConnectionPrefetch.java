@@ -0,0 +1,193 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.internal;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Acquires a Connection in the background on behalf of a LogicalConnection using
+ * {@link org.hibernate.resource.jdbc.spi.JdbcSessionContext.ConnectionAcquisitionMode#PREFETCH}.
+ * <p/>
+ * The state is only ever contended between the owning (session) thread and the single background task.  If the
+ * owner gets to the Connection before the task has started, it simply acquires the Connection itself.  If the owner
+ * abandons the prefetch while the task is still acquiring, the task releases the Connection once it is obtained.
+ *
+ * @author Steve Ebersole
+ */
+class ConnectionPrefetch implements Runnable {
+	private static final Logger log = Logger.getLogger( ConnectionPrefetch.class );
+
+	private static final int PENDING = 0;
+	private static final int ACQUIRING = 1;
+	private static final int READY = 2;
+	private static final int ABANDONED = 3;
+
+	private final JdbcConnectionAccess jdbcConnectionAccess;
+	private final AtomicInteger state = new AtomicInteger( PENDING );
+	private final CountDownLatch done = new CountDownLatch( 1 );
+
+	// written by the background task before the latch is released
+	private Connection connection;
+	private SQLException failure;
+	private RuntimeException runtimeFailure;
+
+	private ConnectionPrefetch(JdbcConnectionAccess jdbcConnectionAccess) {
+		this.jdbcConnectionAccess = jdbcConnectionAccess;
+	}
+
+	/**
+	 * Start prefetching a Connection.
+	 *
+	 * @param jdbcConnectionAccess The access to obtain the Connection from
+	 * @param executor The Executor to obtain the Connection on
+	 *
+	 * @return The prefetch, or {@code null} if no Executor is available or it rejected the task.
+	 */
+	static ConnectionPrefetch start(JdbcConnectionAccess jdbcConnectionAccess, Executor executor) {
+		if ( executor == null ) {
+			log.debug( "No async Executor available; Connection will be acquired as needed" );
+			return null;
+		}
+
+		final ConnectionPrefetch prefetch = new ConnectionPrefetch( jdbcConnectionAccess );
+		try {
+			executor.execute( prefetch );
+		}
+		catch (RejectedExecutionException e) {
+			log.debug( "Connection prefetch rejected by async Executor; Connection will be acquired as needed" );
+			return null;
+		}
+		return prefetch;
+	}
+
+	@Override
+	public void run() {
+		if ( !state.compareAndSet( PENDING, ACQUIRING ) ) {
+			// the owner already took over (or abandoned the prefetch)
+			return;
+		}
+
+		try {
+			connection = jdbcConnectionAccess.obtainConnection();
+		}
+		catch (SQLException e) {
+			failure = e;
+		}
+		catch (RuntimeException e) {
+			runtimeFailure = e;
+		}
+
+		if ( !state.compareAndSet( ACQUIRING, READY ) ) {
+			// abandoned while we were acquiring
+			releaseQuietly();
+		}
+		done.countDown();
+	}
+
+	/**
+	 * Take the prefetched Connection, waiting for the acquisition to finish if it is in progress.
+	 *
+	 * @return The Connection, or {@code null} if the prefetch had not started yet; the caller should then acquire
+	 * the Connection itself.
+	 *
+	 * @throws SQLException If the background acquisition failed
+	 */
+	Connection take() throws SQLException {
+		if ( state.compareAndSet( PENDING, ABANDONED ) ) {
+			log.trace( "Connection prefetch had not started; acquiring Connection directly" );
+			return null;
+		}
+
+		awaitUninterruptibly();
+		state.set( ABANDONED );
+
+		if ( failure != null ) {
+			throw failure;
+		}
+		if ( runtimeFailure != null ) {
+			throw runtimeFailure;
+		}
+		final Connection taken = connection;
+		connection = null;
+		return taken;
+	}
+
+	/**
+	 * Abandon the prefetch; any Connection it obtains is released.
+	 */
+	void abandon() {
+		if ( state.compareAndSet( PENDING, ABANDONED ) || state.compareAndSet( ACQUIRING, ABANDONED ) ) {
+			// in the ACQUIRING case the background task sees the change and releases the Connection itself
+			return;
+		}
+		if ( state.compareAndSet( READY, ABANDONED ) ) {
+			releaseQuietly();
+		}
+	}
+
+	private void awaitUninterruptibly() {
+		boolean interrupted = false;
+		try {
+			while ( true ) {
+				try {
+					done.await();
+					return;
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		finally {
+			if ( interrupted ) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void releaseQuietly() {
+		if ( connection == null ) {
+			return;
+		}
+		try {
+			log.debug( "Releasing abandoned prefetched JDBC Connection" );
+			jdbcConnectionAccess.releaseConnection( connection );
+		}
+		catch (SQLException e) {
+			log.debug( "Unable to release abandoned prefetched JDBC Connection", e );
+		}
+		finally {
+			connection = null;
+		}
+	}
+}
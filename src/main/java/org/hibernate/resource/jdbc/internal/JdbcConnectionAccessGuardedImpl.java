@@ -0,0 +1,255 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.internal;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
+
+import org.jboss.logging.Logger;
+
+/**
+ * A JdbcConnectionAccess decorator which guards Connection acquisition so that a degraded database (or exhausted
+ * pool) fails callers fast instead of piling threads up on acquisition:<ul>
+ *     <li>
+ *         At most {@code maxConcurrentAcquisitions} acquisitions are allowed to be in progress against the delegate
+ *         at once.  Further callers queue, waiting at most {@code acquisitionTimeout} for their turn, after which
+ *         they fail with a {@link SQLTimeoutException}.
+ *     </li>
+ *     <li>
+ *         At most {@code maxWaiters} callers are allowed to queue; beyond that callers are shed immediately with a
+ *         {@link SQLTransientConnectionException}.  The current {@link #getQueueDepth() queue depth} is exposed so
+ *         that callers can shed load themselves before it comes to that.
+ *     </li>
+ *     <li>
+ *         After {@code failureThreshold} consecutive failed (or timed out) acquisitions the circuit is opened and all
+ *         acquisitions fail immediately with a {@link SQLTransientConnectionException} for {@code openPeriod}.  After
+ *         that a single trial acquisition is let through; its success closes the circuit again, its failure re-opens
+ *         it.
+ *     </li>
+ * </ul>
+ * Note that the acquisition timeout applies to waiting for a turn; an acquisition which is already in progress
+ * against the delegate cannot be interrupted, but one which exceeds the timeout still counts as a failure towards
+ * opening the circuit.
+ *
+ * @author Steve Ebersole
+ */
+public class JdbcConnectionAccessGuardedImpl implements JdbcConnectionAccess {
+	private static final Logger log = Logger.getLogger( JdbcConnectionAccessGuardedImpl.class );
+
+	private static final int CLOSED = 0;
+	private static final int OPEN = 1;
+	private static final int HALF_OPEN = 2;
+
+	private final JdbcConnectionAccess delegate;
+	private final int maxWaiters;
+	private final long acquisitionTimeoutNanos;
+	private final int failureThreshold;
+	private final long openPeriodNanos;
+
+	private final Semaphore permits;
+	private final AtomicInteger waiters = new AtomicInteger();
+
+	private final AtomicInteger circuitState = new AtomicInteger( CLOSED );
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+	private final AtomicLong openedAt = new AtomicLong();
+
+	public JdbcConnectionAccessGuardedImpl(
+			JdbcConnectionAccess delegate,
+			int maxConcurrentAcquisitions,
+			int maxWaiters,
+			long acquisitionTimeout,
+			int failureThreshold,
+			long openPeriod,
+			TimeUnit timeUnit) {
+		if ( maxConcurrentAcquisitions < 1 ) {
+			throw new IllegalArgumentException( "maxConcurrentAcquisitions must be at least 1" );
+		}
+		if ( failureThreshold < 1 ) {
+			throw new IllegalArgumentException( "failureThreshold must be at least 1" );
+		}
+		this.delegate = delegate;
+		this.maxWaiters = maxWaiters;
+		this.acquisitionTimeoutNanos = timeUnit.toNanos( acquisitionTimeout );
+		this.failureThreshold = failureThreshold;
+		this.openPeriodNanos = timeUnit.toNanos( openPeriod );
+		this.permits = new Semaphore( maxConcurrentAcquisitions, true );
+	}
+
+	@Override
+	public Connection obtainConnection() throws SQLException {
+		final boolean trial = checkCircuit();
+
+		final long start = System.nanoTime();
+		acquirePermit( trial );
+
+		final Connection connection;
+		try {
+			connection = delegate.obtainConnection();
+		}
+		catch (SQLException e) {
+			recordFailure( trial );
+			throw e;
+		}
+		catch (RuntimeException e) {
+			recordFailure( trial );
+			throw e;
+		}
+		finally {
+			permits.release();
+		}
+
+		if ( System.nanoTime() - start > acquisitionTimeoutNanos ) {
+			log.debugf( "JDBC Connection acquisition exceeded timeout of %s ns", acquisitionTimeoutNanos );
+			recordFailure( trial );
+		}
+		else {
+			recordSuccess( trial );
+		}
+		return connection;
+	}
+
+	@Override
+	public void releaseConnection(Connection connection) throws SQLException {
+		delegate.releaseConnection( connection );
+	}
+
+	/**
+	 * The number of callers currently waiting for their turn to acquire a Connection.  A steadily non-zero value
+	 * indicates saturation, and is a good signal for shedding load upstream.
+	 *
+	 * @return The queue depth
+	 */
+	public int getQueueDepth() {
+		return waiters.get();
+	}
+
+	/**
+	 * Is the circuit currently open (or half-open, awaiting the outcome of a trial acquisition)?  While open,
+	 * acquisitions fail immediately.
+	 *
+	 * @return {@code true} if the circuit is open
+	 */
+	public boolean isCircuitOpen() {
+		return circuitState.get() != CLOSED;
+	}
+
+	/**
+	 * Checks the circuit, failing fast if it is open.
+	 *
+	 * @return {@code true} if this acquisition is the single trial allowed through a half-open circuit
+	 */
+	private boolean checkCircuit() throws SQLException {
+		final int state = circuitState.get();
+		if ( state == CLOSED ) {
+			return false;
+		}
+
+		if ( state == OPEN
+				&& System.nanoTime() - openedAt.get() >= openPeriodNanos
+				&& circuitState.compareAndSet( OPEN, HALF_OPEN ) ) {
+			log.debug( "Connection acquisition circuit half-open; allowing trial acquisition" );
+			return true;
+		}
+
+		throw new SQLTransientConnectionException( "Connection acquisition circuit is open; failing fast", "08001" );
+	}
+
+	private void acquirePermit(boolean trial) throws SQLException {
+		if ( permits.tryAcquire() ) {
+			return;
+		}
+
+		if ( waiters.incrementAndGet() > maxWaiters ) {
+			waiters.decrementAndGet();
+			if ( trial ) {
+				reopen();
+			}
+			throw new SQLTransientConnectionException(
+					"Too many threads waiting to acquire a Connection (" + maxWaiters + "); shedding load",
+					"08001"
+			);
+		}
+
+		boolean acquired = false;
+		try {
+			acquired = permits.tryAcquire( acquisitionTimeoutNanos, TimeUnit.NANOSECONDS );
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			if ( trial ) {
+				reopen();
+			}
+			throw new SQLTransientConnectionException( "Interrupted waiting to acquire a Connection", "08001", e );
+		}
+		finally {
+			waiters.decrementAndGet();
+		}
+
+		if ( !acquired ) {
+			recordFailure( trial );
+			throw new SQLTimeoutException(
+					"Timed out waiting to acquire a Connection (" + acquisitionTimeoutNanos + " ns)",
+					"08001"
+			);
+		}
+	}
+
+	private void recordSuccess(boolean trial) {
+		consecutiveFailures.set( 0 );
+		if ( trial ) {
+			log.debug( "Trial Connection acquisition succeeded; closing circuit" );
+			circuitState.set( CLOSED );
+		}
+	}
+
+	private void recordFailure(boolean trial) {
+		if ( trial ) {
+			reopen();
+		}
+		else if ( consecutiveFailures.incrementAndGet() >= failureThreshold
+				&& circuitState.get() == CLOSED ) {
+			openedAt.set( System.nanoTime() );
+			if ( circuitState.compareAndSet( CLOSED, OPEN ) ) {
+				log.warnf(
+						"Opening Connection acquisition circuit after %s consecutive failures",
+						consecutiveFailures.get()
+				);
+			}
+		}
+	}
+
+	private void reopen() {
+		log.debug( "Trial Connection acquisition failed; re-opening circuit" );
+		openedAt.set( System.nanoTime() );
+		circuitState.set( OPEN );
+	}
+}
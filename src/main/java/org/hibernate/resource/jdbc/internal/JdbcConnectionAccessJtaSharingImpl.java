@@ -0,0 +1,237 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.internal;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
+
+import org.jboss.logging.Logger;
+
+/**
+ * A JdbcConnectionAccess decorator which binds the physical Connection obtained within a JTA transaction to that
+ * transaction (via the {@link TransactionSynchronizationRegistry} resource map), so that all JdbcSessions using
+ * this same JdbcConnectionAccess instance within the transaction share a single Connection.  This cuts pool usage
+ * and keeps the transaction from being promoted to 2PC just because several components touched the same database.
+ * <p/>
+ * A shared Connection is returned to the delegate once the transaction has completed <b>and</b> every session which
+ * obtained it has released it.  Outside of a transaction, or when the transaction no longer accepts Synchronizations,
+ * Connections are simply obtained from and released to the delegate.
+ * <p/>
+ * Note that enlisting the Connection with the transaction remains the responsibility of the delegate (generally a
+ * JTA-aware DataSource).
+ * <p/>
+ * On serialization only the delegate, and the TransactionSynchronizationRegistry if it is itself Serializable, are
+ * kept; Connection bindings are not.  A deserialized instance without a TransactionSynchronizationRegistry simply
+ * obtains Connections from the delegate, without sharing them.
+ *
+ * @author Steve Ebersole
+ */
+public class JdbcConnectionAccessJtaSharingImpl implements JdbcConnectionAccess {
+	private static final Logger log = Logger.getLogger( JdbcConnectionAccessJtaSharingImpl.class );
+
+	private final JdbcConnectionAccess delegate;
+	private final transient TransactionSynchronizationRegistry synchronizationRegistry;
+
+	// the key under which our binding is stored in the transaction resource map; unique per instance
+	private final Object resourceKey = new ResourceKey();
+
+	private final transient ConcurrentHashMap<Connection,SharedConnection> sharedConnections
+			= new ConcurrentHashMap<Connection, SharedConnection>();
+
+	public JdbcConnectionAccessJtaSharingImpl(
+			JdbcConnectionAccess delegate,
+			TransactionSynchronizationRegistry synchronizationRegistry) {
+		this.delegate = delegate;
+		this.synchronizationRegistry = synchronizationRegistry;
+	}
+
+	@Override
+	public Connection obtainConnection() throws SQLException {
+		if ( synchronizationRegistry == null || !isTransactionActive() ) {
+			return delegate.obtainConnection();
+		}
+
+		final SharedConnection bound = (SharedConnection) synchronizationRegistry.getResource( resourceKey );
+		if ( bound != null && bound.acquire() ) {
+			log.trace( "Re-using JDBC Connection bound to current JTA transaction" );
+			return bound.connection;
+		}
+
+		final Connection connection = delegate.obtainConnection();
+		final SharedConnection sharedConnection = new SharedConnection( connection );
+		try {
+			synchronizationRegistry.registerInterposedSynchronization( new ReleaseOnCompletion( sharedConnection ) );
+		}
+		catch (IllegalStateException e) {
+			// the transaction is completing or marked for rollback; just hand out an unshared Connection
+			log.debugf( "Unable to bind JDBC Connection to JTA transaction [%s]; Connection will not be shared", e.getMessage() );
+			return connection;
+		}
+
+		sharedConnections.put( connection, sharedConnection );
+		synchronizationRegistry.putResource( resourceKey, sharedConnection );
+		return connection;
+	}
+
+	private boolean isTransactionActive() {
+		try {
+			return synchronizationRegistry.getTransactionKey() != null
+					&& synchronizationRegistry.getTransactionStatus() == Status.STATUS_ACTIVE;
+		}
+		catch (Exception e) {
+			log.debugf( "Unable to determine JTA transaction status [%s]; Connection will not be shared", e.getMessage() );
+			return false;
+		}
+	}
+
+	@Override
+	public void releaseConnection(Connection connection) throws SQLException {
+		final SharedConnection sharedConnection = sharedConnections.get( connection );
+		if ( sharedConnection == null ) {
+			delegate.releaseConnection( connection );
+			return;
+		}
+
+		if ( sharedConnection.release() ) {
+			sharedConnections.remove( connection );
+			delegate.releaseConnection( connection );
+		}
+	}
+
+	/**
+	 * Intended for test access
+	 *
+	 * @return The number of Connections currently shared (bound to a transaction or still held by a session)
+	 */
+	public int getNumberOfSharedConnections() {
+		return sharedConnections.size();
+	}
+
+	private Object writeReplace() throws ObjectStreamException {
+		return new SerialForm(
+				delegate,
+				synchronizationRegistry instanceof Serializable ? synchronizationRegistry : null
+		);
+	}
+
+	/**
+	 * The serialized form; deserializes to a new instance so that the transient state is set up again
+	 */
+	private static class SerialForm implements Serializable {
+		private final JdbcConnectionAccess delegate;
+		private final TransactionSynchronizationRegistry synchronizationRegistry;
+
+		private SerialForm(JdbcConnectionAccess delegate, TransactionSynchronizationRegistry synchronizationRegistry) {
+			this.delegate = delegate;
+			this.synchronizationRegistry = synchronizationRegistry;
+		}
+
+		private Object readResolve() throws ObjectStreamException {
+			if ( synchronizationRegistry == null ) {
+				log.debug( "TransactionSynchronizationRegistry was not serializable; JDBC Connections will not be shared" );
+			}
+			return new JdbcConnectionAccessJtaSharingImpl( delegate, synchronizationRegistry );
+		}
+	}
+
+	private static class ResourceKey implements Serializable {
+		@Override
+		public String toString() {
+			return JdbcConnectionAccessJtaSharingImpl.class.getName() + "#resourceKey";
+		}
+	}
+
+	/**
+	 * Accounting for a Connection bound to a transaction
+	 */
+	private static class SharedConnection {
+		private final Connection connection;
+		private int holders = 1;
+		private boolean transactionCompleted;
+
+		private SharedConnection(Connection connection) {
+			this.connection = connection;
+		}
+
+		synchronized boolean acquire() {
+			if ( transactionCompleted ) {
+				return false;
+			}
+			holders++;
+			return true;
+		}
+
+		/**
+		 * @return {@code true} if the Connection should now be returned to the delegate
+		 */
+		synchronized boolean release() {
+			holders--;
+			return holders <= 0 && transactionCompleted;
+		}
+
+		/**
+		 * @return {@code true} if the Connection should now be returned to the delegate
+		 */
+		synchronized boolean transactionCompleted() {
+			transactionCompleted = true;
+			return holders <= 0;
+		}
+	}
+
+	private class ReleaseOnCompletion implements Synchronization {
+		private final SharedConnection sharedConnection;
+
+		private ReleaseOnCompletion(SharedConnection sharedConnection) {
+			this.sharedConnection = sharedConnection;
+		}
+
+		@Override
+		public void beforeCompletion() {
+		}
+
+		@Override
+		public void afterCompletion(int status) {
+			if ( !sharedConnection.transactionCompleted() ) {
+				// still held by at least one session; the last release will return it
+				return;
+			}
+
+			sharedConnections.remove( sharedConnection.connection );
+			try {
+				delegate.releaseConnection( sharedConnection.connection );
+			}
+			catch (SQLException e) {
+				log.debugf( "Unable to release shared JDBC Connection after transaction completion [%s]", e.getMessage() );
+			}
+		}
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.internal;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+
+import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
+import org.hibernate.resource.jdbc.spi.JdbcSessionContext;
+import org.hibernate.resource.jdbc.spi.JdbcSessionContext.ConnectionAcquisitionPriority;
+import org.hibernate.resource.jdbc.spi.SessionAwareJdbcConnectionAccess;
+
+import org.jboss.logging.Logger;
+
+/**
+ * A JdbcConnectionAccess decorator which limits the number of Connections out at any one time and, once that
+ * limit is reached, hands Connections back out to waiting sessions by their
+ * {@link JdbcSessionContext#getConnectionAcquisitionPriority() priority} rather than first-come first-served.
+ * This lets interactive sessions jump ahead of batch sessions sharing the same pool.
+ * <p/>
+ * Starvation is bounded: a waiter at a lower priority is served ahead of higher priority waiters once it has been
+ * passed over {@code maxConsecutiveBypasses} times.
+ * <p/>
+ * The limit should be no more than the size of the underlying pool, so that waiting happens here (where priorities
+ * are honored) rather than inside the pool.  Acquisitions through this access directly, rather than through a
+ * {@link #resolveForSession resolved} access, are treated as {@link ConnectionAcquisitionPriority#NORMAL}.
+ *
+ * @author Steve Ebersole
+ */
+public class JdbcConnectionAccessPrioritizedImpl implements SessionAwareJdbcConnectionAccess {
+	private static final Logger log = Logger.getLogger( JdbcConnectionAccessPrioritizedImpl.class );
+
+	private static final ConnectionAcquisitionPriority[] PRIORITIES = ConnectionAcquisitionPriority.values();
+
+	private final JdbcConnectionAccess delegate;
+	private final int maxConsecutiveBypasses;
+
+	private final EnumMap<ConnectionAcquisitionPriority,JdbcConnectionAccess> prioritizedAccess
+			= new EnumMap<ConnectionAcquisitionPriority, JdbcConnectionAccess>( ConnectionAcquisitionPriority.class );
+
+	// all guarded by the waiters monitor
+	private final EnumMap<ConnectionAcquisitionPriority,ArrayDeque<Waiter>> waiters
+			= new EnumMap<ConnectionAcquisitionPriority, ArrayDeque<Waiter>>( ConnectionAcquisitionPriority.class );
+	private final int[] bypasses = new int[ PRIORITIES.length ];
+	private int available;
+
+	public JdbcConnectionAccessPrioritizedImpl(
+			JdbcConnectionAccess delegate,
+			int maxConnections,
+			int maxConsecutiveBypasses) {
+		if ( maxConnections < 1 ) {
+			throw new IllegalArgumentException( "maxConnections must be at least 1" );
+		}
+		this.delegate = delegate;
+		this.maxConsecutiveBypasses = maxConsecutiveBypasses;
+		this.available = maxConnections;
+
+		for ( ConnectionAcquisitionPriority priority : PRIORITIES ) {
+			prioritizedAccess.put( priority, new PrioritizedAccess( priority ) );
+			waiters.put( priority, new ArrayDeque<Waiter>() );
+		}
+	}
+
+	@Override
+	public JdbcConnectionAccess resolveForSession(JdbcSessionContext context) {
+		final ConnectionAcquisitionPriority priority = context.getConnectionAcquisitionPriority();
+		return prioritizedAccess.get( priority == null ? ConnectionAcquisitionPriority.NORMAL : priority );
+	}
+
+	@Override
+	public Connection obtainConnection() throws SQLException {
+		return obtainConnection( ConnectionAcquisitionPriority.NORMAL );
+	}
+
+	@Override
+	public void releaseConnection(Connection connection) throws SQLException {
+		try {
+			delegate.releaseConnection( connection );
+		}
+		finally {
+			releasePermit();
+		}
+	}
+
+	/**
+	 * The number of sessions currently waiting for a Connection at the given priority.
+	 *
+	 * @param priority The priority
+	 *
+	 * @return The number of waiters
+	 */
+	public int getNumberOfWaiters(ConnectionAcquisitionPriority priority) {
+		synchronized ( waiters ) {
+			return waiters.get( priority ).size();
+		}
+	}
+
+	private Connection obtainConnection(ConnectionAcquisitionPriority priority) throws SQLException {
+		acquirePermit( priority );
+		try {
+			return delegate.obtainConnection();
+		}
+		catch (SQLException e) {
+			releasePermit();
+			throw e;
+		}
+		catch (RuntimeException e) {
+			releasePermit();
+			throw e;
+		}
+	}
+
+	private void acquirePermit(ConnectionAcquisitionPriority priority) throws SQLException {
+		synchronized ( waiters ) {
+			if ( available > 0 && !hasWaiters() ) {
+				available--;
+				return;
+			}
+
+			log.tracef( "Waiting for a JDBC Connection at %s priority", priority );
+			final Waiter waiter = new Waiter();
+			waiters.get( priority ).add( waiter );
+			try {
+				while ( !waiter.granted ) {
+					waiters.wait();
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				if ( waiter.granted ) {
+					// too late to back out; keep the Connection and leave the interrupt for the caller
+					return;
+				}
+				waiters.get( priority ).remove( waiter );
+				throw new SQLException( "Interrupted waiting to acquire a Connection", "08001", e );
+			}
+		}
+	}
+
+	private void releasePermit() {
+		synchronized ( waiters ) {
+			available++;
+			while ( available > 0 ) {
+				final Waiter next = selectNextWaiter();
+				if ( next == null ) {
+					break;
+				}
+				next.granted = true;
+				available--;
+			}
+			waiters.notifyAll();
+		}
+	}
+
+	private Waiter selectNextWaiter() {
+		// lower priority waiters which have been passed over often enough go first, lowest first
+		for ( int i = PRIORITIES.length - 1; i > 0; i-- ) {
+			final ArrayDeque<Waiter> queue = waiters.get( PRIORITIES[i] );
+			if ( !queue.isEmpty() && bypasses[i] >= maxConsecutiveBypasses ) {
+				log.debugf( "Serving starved %s priority Connection request", PRIORITIES[i] );
+				bypasses[i] = 0;
+				return queue.poll();
+			}
+		}
+
+		for ( int i = 0; i < PRIORITIES.length; i++ ) {
+			final ArrayDeque<Waiter> queue = waiters.get( PRIORITIES[i] );
+			if ( queue.isEmpty() ) {
+				continue;
+			}
+			bypasses[i] = 0;
+			for ( int j = i + 1; j < PRIORITIES.length; j++ ) {
+				if ( !waiters.get( PRIORITIES[j] ).isEmpty() ) {
+					bypasses[j]++;
+				}
+			}
+			return queue.poll();
+		}
+
+		return null;
+	}
+
+	private boolean hasWaiters() {
+		for ( ArrayDeque<Waiter> queue : waiters.values() ) {
+			if ( !queue.isEmpty() ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static class Waiter {
+		private boolean granted;
+	}
+
+	private class PrioritizedAccess implements JdbcConnectionAccess {
+		private final ConnectionAcquisitionPriority priority;
+
+		private PrioritizedAccess(ConnectionAcquisitionPriority priority) {
+			this.priority = priority;
+		}
+
+		@Override
+		public Connection obtainConnection() throws SQLException {
+			return JdbcConnectionAccessPrioritizedImpl.this.obtainConnection( priority );
+		}
+
+		@Override
+		public void releaseConnection(Connection connection) throws SQLException {
+			JdbcConnectionAccessPrioritizedImpl.this.releaseConnection( connection );
+		}
+	}
+}
@@ -0,0 +1,323 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.internal;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
+import org.hibernate.resource.jdbc.spi.JdbcSessionContext;
+import org.hibernate.resource.jdbc.spi.SessionAwareJdbcConnectionAccess;
+
+import org.jboss.logging.Logger;
+
+/**
+ * A JdbcConnectionAccess decorator which bulkheads Connections per tenant, so that one busy tenant cannot take every
+ * Connection from the underlying pool.  Each tenant may be {@link #registerTenant registered} with a number of
+ * reserved Connections which only it may use.  Beyond that, tenants borrow from a shared burst capacity, but never
+ * more than {@code maxSharedPerTenant} of it at once.  Unregistered tenants (including sessions without a
+ * {@link JdbcSessionContext#getTenantIdentifier() tenant identifier}) only have the shared capacity.
+ * <p/>
+ * The underlying pool should be sized to cover all reservations plus the shared capacity, so that waiting happens
+ * here (where the bulkheads are enforced) rather than inside the pool.
+ * <p/>
+ * Acquisitions are counted per tenant; see {@link #getTenantStatistics}.
+ *
+ * @author Steve Ebersole
+ */
+public class JdbcConnectionAccessTenantPartitionedImpl implements SessionAwareJdbcConnectionAccess {
+	private static final Logger log = Logger.getLogger( JdbcConnectionAccessTenantPartitionedImpl.class );
+
+	private final JdbcConnectionAccess delegate;
+	private final int sharedCapacity;
+	private final int maxSharedPerTenant;
+	private final long acquisitionTimeoutNanos;
+
+	// all guarded by the partitions monitor
+	private final Map<String,TenantPartition> partitions = new HashMap<String, TenantPartition>();
+	private final TenantPartition untenantedPartition = new TenantPartition( null, 0 );
+	private int sharedInUse;
+
+	public JdbcConnectionAccessTenantPartitionedImpl(
+			JdbcConnectionAccess delegate,
+			int sharedCapacity,
+			int maxSharedPerTenant,
+			long acquisitionTimeout,
+			TimeUnit timeUnit) {
+		this.delegate = delegate;
+		this.sharedCapacity = sharedCapacity;
+		this.maxSharedPerTenant = maxSharedPerTenant;
+		this.acquisitionTimeoutNanos = timeUnit.toNanos( acquisitionTimeout );
+	}
+
+	/**
+	 * Reserve Connections for the given tenant.
+	 *
+	 * @param tenantIdentifier The tenant identifier
+	 * @param reservedConnections The number of Connections only that tenant may use
+	 */
+	public void registerTenant(String tenantIdentifier, int reservedConnections) {
+		if ( tenantIdentifier == null ) {
+			throw new IllegalArgumentException( "Tenant identifier cannot be null" );
+		}
+		synchronized ( partitions ) {
+			final TenantPartition existing = partitions.get( tenantIdentifier );
+			if ( existing != null ) {
+				existing.reserved = reservedConnections;
+				partitions.notifyAll();
+			}
+			else {
+				partitions.put( tenantIdentifier, new TenantPartition( tenantIdentifier, reservedConnections ) );
+			}
+		}
+	}
+
+	@Override
+	public JdbcConnectionAccess resolveForSession(JdbcSessionContext context) {
+		final String tenantIdentifier = context.getTenantIdentifier();
+		if ( tenantIdentifier == null ) {
+			return this;
+		}
+		return locatePartition( tenantIdentifier ).access;
+	}
+
+	@Override
+	public Connection obtainConnection() throws SQLException {
+		return obtainConnection( untenantedPartition );
+	}
+
+	@Override
+	public void releaseConnection(Connection connection) throws SQLException {
+		releaseConnection( untenantedPartition, connection );
+	}
+
+	/**
+	 * Obtain a snapshot of the acquisition statistics for the given tenant.
+	 *
+	 * @param tenantIdentifier The tenant identifier, or {@code null} for sessions without one
+	 *
+	 * @return The statistics, or {@code null} if nothing is known about the tenant
+	 */
+	public TenantStatistics getTenantStatistics(String tenantIdentifier) {
+		synchronized ( partitions ) {
+			final TenantPartition partition = tenantIdentifier == null
+					? untenantedPartition
+					: partitions.get( tenantIdentifier );
+			return partition == null ? null : new TenantStatistics( partition );
+		}
+	}
+
+	private TenantPartition locatePartition(String tenantIdentifier) {
+		synchronized ( partitions ) {
+			TenantPartition partition = partitions.get( tenantIdentifier );
+			if ( partition == null ) {
+				partition = new TenantPartition( tenantIdentifier, 0 );
+				partitions.put( tenantIdentifier, partition );
+			}
+			return partition;
+		}
+	}
+
+	private Connection obtainConnection(TenantPartition partition) throws SQLException {
+		acquireSlot( partition );
+		try {
+			return delegate.obtainConnection();
+		}
+		catch (SQLException e) {
+			releaseSlot( partition );
+			throw e;
+		}
+		catch (RuntimeException e) {
+			releaseSlot( partition );
+			throw e;
+		}
+	}
+
+	private void releaseConnection(TenantPartition partition, Connection connection) throws SQLException {
+		try {
+			delegate.releaseConnection( connection );
+		}
+		finally {
+			releaseSlot( partition );
+		}
+	}
+
+	private void acquireSlot(TenantPartition partition) throws SQLException {
+		synchronized ( partitions ) {
+			partition.acquisitionCount++;
+			if ( tryAcquireSlot( partition ) ) {
+				return;
+			}
+
+			log.tracef( "Waiting for a JDBC Connection for tenant [%s]", partition.tenantIdentifier );
+			partition.waitCount++;
+			final long start = System.nanoTime();
+			long remaining = acquisitionTimeoutNanos;
+			try {
+				while ( !tryAcquireSlot( partition ) ) {
+					if ( remaining <= 0 ) {
+						partition.timeoutCount++;
+						throw new SQLTimeoutException(
+								"Timed out waiting to acquire a Connection for tenant [" + partition.tenantIdentifier + "]",
+								"08001"
+						);
+					}
+					TimeUnit.NANOSECONDS.timedWait( partitions, remaining );
+					remaining = acquisitionTimeoutNanos - ( System.nanoTime() - start );
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException( "Interrupted waiting to acquire a Connection", "08001", e );
+			}
+			finally {
+				partition.totalWaitNanos += System.nanoTime() - start;
+			}
+		}
+	}
+
+	private boolean tryAcquireSlot(TenantPartition partition) {
+		if ( partition.reservedInUse < partition.reserved ) {
+			partition.reservedInUse++;
+		}
+		else if ( sharedInUse < sharedCapacity && partition.sharedInUse < maxSharedPerTenant ) {
+			partition.sharedInUse++;
+			sharedInUse++;
+		}
+		else {
+			return false;
+		}
+
+		final int inUse = partition.reservedInUse + partition.sharedInUse;
+		if ( inUse > partition.peakInUse ) {
+			partition.peakInUse = inUse;
+		}
+		return true;
+	}
+
+	private void releaseSlot(TenantPartition partition) {
+		synchronized ( partitions ) {
+			// slots are interchangeable; give back shared capacity first so other tenants can burst sooner
+			if ( partition.sharedInUse > 0 ) {
+				partition.sharedInUse--;
+				sharedInUse--;
+			}
+			else {
+				partition.reservedInUse--;
+			}
+			partitions.notifyAll();
+		}
+	}
+
+	private class TenantPartition {
+		private final String tenantIdentifier;
+		private final JdbcConnectionAccess access;
+		private int reserved;
+
+		private int reservedInUse;
+		private int sharedInUse;
+
+		private long acquisitionCount;
+		private long waitCount;
+		private long timeoutCount;
+		private long totalWaitNanos;
+		private int peakInUse;
+
+		private TenantPartition(String tenantIdentifier, int reserved) {
+			this.tenantIdentifier = tenantIdentifier;
+			this.reserved = reserved;
+			this.access = new TenantAccess( this );
+		}
+	}
+
+	private class TenantAccess implements JdbcConnectionAccess {
+		private final TenantPartition partition;
+
+		private TenantAccess(TenantPartition partition) {
+			this.partition = partition;
+		}
+
+		@Override
+		public Connection obtainConnection() throws SQLException {
+			return JdbcConnectionAccessTenantPartitionedImpl.this.obtainConnection( partition );
+		}
+
+		@Override
+		public void releaseConnection(Connection connection) throws SQLException {
+			JdbcConnectionAccessTenantPartitionedImpl.this.releaseConnection( partition, connection );
+		}
+	}
+
+	/**
+	 * Point-in-time acquisition statistics for a single tenant.
+	 */
+	public static class TenantStatistics {
+		private final int connectionsInUse;
+		private final int peakConnectionsInUse;
+		private final long acquisitionCount;
+		private final long waitCount;
+		private final long timeoutCount;
+		private final long totalWaitNanos;
+
+		private TenantStatistics(TenantPartition partition) {
+			this.connectionsInUse = partition.reservedInUse + partition.sharedInUse;
+			this.peakConnectionsInUse = partition.peakInUse;
+			this.acquisitionCount = partition.acquisitionCount;
+			this.waitCount = partition.waitCount;
+			this.timeoutCount = partition.timeoutCount;
+			this.totalWaitNanos = partition.totalWaitNanos;
+		}
+
+		public int getConnectionsInUse() {
+			return connectionsInUse;
+		}
+
+		public int getPeakConnectionsInUse() {
+			return peakConnectionsInUse;
+		}
+
+		public long getAcquisitionCount() {
+			return acquisitionCount;
+		}
+
+		/**
+		 * The number of acquisitions which had to wait for a Connection to become available.
+		 */
+		public long getWaitCount() {
+			return waitCount;
+		}
+
+		public long getTimeoutCount() {
+			return timeoutCount;
+		}
+
+		public long getTotalWaitNanos() {
+			return totalWaitNanos;
+		}
+	}
+}
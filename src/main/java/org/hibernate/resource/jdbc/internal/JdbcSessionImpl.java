@@ -1,18 +1,28 @@
 package org.hibernate.resource.jdbc.internal;
 
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.hibernate.HibernateException;
+import org.hibernate.resource.jdbc.BatchableUpdateOperation;
+import org.hibernate.resource.jdbc.CallableStatementOperationSpec;
+import org.hibernate.resource.jdbc.ColumnarQueryOperationSpec;
+import org.hibernate.resource.jdbc.JdbcSession;
 import org.hibernate.resource.jdbc.LogicalConnection;
 import org.hibernate.resource.jdbc.Operation;
 import org.hibernate.resource.jdbc.OperationSpec;
+import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
 import org.hibernate.resource.jdbc.spi.JdbcSessionContext;
 import org.hibernate.resource.jdbc.spi.JdbcSessionImplementor;
 import org.hibernate.resource.jdbc.spi.LogicalConnectionImplementor;
+import org.hibernate.resource.transaction.backend.store.internal.ResourceLocalTransactionCoordinatorImpl;
 import org.hibernate.resource.transaction.backend.store.spi.DataStoreTransaction;
 import org.hibernate.resource.transaction.TransactionCoordinator;
 import org.hibernate.resource.transaction.TransactionCoordinatorBuilder;
 import org.hibernate.resource.transaction.backend.store.spi.DataStoreTransactionAccess;
+import org.hibernate.resource.transaction.spi.TransactionCoordinatorImplementor;
 import org.hibernate.resource.transaction.spi.TransactionCoordinatorOwner;
 
 import org.jboss.logging.Logger;
@@ -28,9 +38,15 @@ public class JdbcSessionImpl
 
 	private final JdbcSessionContext context;
 	private final LogicalConnectionImplementor logicalConnection;
-	private final TransactionCoordinator transactionCoordinator;
+	private final TransactionCoordinatorBuilder transactionCoordinatorBuilder;
+	private TransactionCoordinator transactionCoordinator;
 
 	private boolean closed;
+	private JdbcSessionPool pool;
+	private int operationDepth;
+
+	// whether the driver supports JDBC batch updates (see acceptAll), determined on first need
+	private Boolean batchUpdatesSupported;
 
 	public JdbcSessionImpl(
 			JdbcSessionContext context,
@@ -38,7 +54,11 @@ public class JdbcSessionImpl
 			TransactionCoordinatorBuilder transactionCoordinatorBuilder) {
 		this.context = context;
 		this.logicalConnection = logicalConnection;
-		this.transactionCoordinator = transactionCoordinatorBuilder.buildTransactionCoordinator( this );
+		this.transactionCoordinatorBuilder = transactionCoordinatorBuilder;
+
+		if ( !context.isLazyTransactionCoordinatorEnabled() ) {
+			this.transactionCoordinator = transactionCoordinatorBuilder.buildTransactionCoordinator( this );
+		}
 	}
 
 	@Override
@@ -48,6 +68,9 @@ public class JdbcSessionImpl
 
 	@Override
 	public TransactionCoordinator getTransactionCoordinator() {
+		if ( transactionCoordinator == null ) {
+			transactionCoordinator = transactionCoordinatorBuilder.buildTransactionCoordinator( this );
+		}
 		return transactionCoordinator;
 	}
 
@@ -68,6 +91,70 @@ public class JdbcSessionImpl
 		finally {
 			closed = true;
 		}
+
+		if ( pool != null ) {
+			pool.recycle( this );
+		}
+	}
+
+
+	// recycling support ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Set the pool this session should be returned to when closed.
+	 *
+	 * @param pool The pool
+	 */
+	public void setPool(JdbcSessionPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Can this (closed) session be re-used for the given configuration?  Note that the configuration objects are
+	 * compared by identity.
+	 */
+	boolean isReusableFor(
+			JdbcSessionContext context,
+			JdbcConnectionAccess jdbcConnectionAccess,
+			TransactionCoordinatorBuilder transactionCoordinatorBuilder) {
+		return this.context == context
+				&& this.transactionCoordinatorBuilder == transactionCoordinatorBuilder
+				&& logicalConnection instanceof LogicalConnectionManagedImpl
+				&& ( (LogicalConnectionManagedImpl) logicalConnection ).getJdbcConnectionAccess() == jdbcConnectionAccess;
+	}
+
+	/**
+	 * Is this session closed and fully released, such that it could be re-used?
+	 */
+	boolean isReusable() {
+		return closed
+				&& logicalConnection instanceof LogicalConnectionManagedImpl
+				&& ( transactionCoordinator == null || transactionCoordinator instanceof TransactionCoordinatorImplementor )
+				&& !logicalConnection.isPhysicallyConnected()
+				&& !logicalConnection.getResourceRegistry().hasRegisteredResources();
+	}
+
+	/**
+	 * Reset this closed session to the state of a newly created one.  Strict in that all parts must be fully
+	 * released, otherwise nothing is re-opened.
+	 *
+	 * @return {@code true} if the session was reset; {@code false} if it cannot be re-used.
+	 */
+	boolean reset() {
+		if ( !isReusable() ) {
+			return false;
+		}
+
+		if ( transactionCoordinator != null
+				&& !( (TransactionCoordinatorImplementor) transactionCoordinator ).reset() ) {
+			return false;
+		}
+		if ( !( (LogicalConnectionManagedImpl) logicalConnection ).reopen() ) {
+			return false;
+		}
+
+		closed = false;
+		return true;
 	}
 
 	@Override
@@ -80,6 +167,49 @@ public class JdbcSessionImpl
 	@Override
 	@SuppressWarnings("unchecked")
 	public <R> R accept(Operation<R> operation) {
+		if ( transactionCoordinator == null ) {
+			return acceptAutoCommit( operation );
+		}
+
+		transactionCoordinator.beforeOwnerWork();
+		try {
+			return perform( operation );
+		}
+		finally {
+			transactionCoordinator.afterOwnerWork();
+			if ( operationDepth == 0 && logicalConnection.isOpen() && !isTransactionJoined() ) {
+				logicalConnection.afterOperation();
+			}
+		}
+	}
+
+	private boolean isTransactionJoined() {
+		// a resource-local coordinator is never joined, and logs as much on each call to isJoined
+		return !( transactionCoordinator instanceof ResourceLocalTransactionCoordinatorImpl )
+				&& transactionCoordinator.isJoined();
+	}
+
+	/**
+	 * The auto-commit fast path : no TransactionCoordinator has been built, so there is no transaction to account
+	 * for.  The Operation is its own unit of work and we release the Connection as soon as it is done.
+	 */
+	private <R> R acceptAutoCommit(Operation<R> operation) {
+		try {
+			return perform( operation );
+		}
+		finally {
+			// a failed Operation ends its unit of work just the same
+			if ( operationDepth == 0
+					&& logicalConnection.isOpen()
+					&& !logicalConnection.getResourceRegistry().hasRegisteredResources() ) {
+				logicalConnection.afterTransaction();
+				logicalConnection.afterOperation();
+			}
+		}
+	}
+
+	private <R> R perform(Operation<R> operation) {
+		operationDepth++;
 		try {
 			return operation.perform( this );
 		}
@@ -92,11 +222,122 @@ public class JdbcSessionImpl
 		catch (Exception e) {
 			throw new HibernateException( "Unexpected error performing JdbcOperation", e );
 		}
+		finally {
+			operationDepth--;
+		}
+	}
+
+	@Override
+	public List<Object> acceptAll(final List<? extends Operation<?>> operations) {
+		return accept(
+				new Operation<List<Object>>() {
+					@Override
+					public List<Object> perform(JdbcSession jdbcSession) throws SQLException {
+						logicalConnection.beginStatementBatch();
+						try {
+							return performAll( operations );
+						}
+						finally {
+							logicalConnection.endStatementBatch();
+						}
+					}
+				}
+		);
+	}
+
+	private List<Object> performAll(List<? extends Operation<?>> operations) throws SQLException {
+		final List<Object> results = new ArrayList<Object>( operations.size() );
+		int i = 0;
+		while ( i < operations.size() ) {
+			final Operation<?> operation = operations.get( i );
+
+			if ( operation instanceof BatchableUpdateOperation ) {
+				final String sql = ( (BatchableUpdateOperation) operation ).getSql();
+				int end = i + 1;
+				while ( end < operations.size()
+						&& operations.get( end ) instanceof BatchableUpdateOperation
+						&& sql.equals( ( (BatchableUpdateOperation) operations.get( end ) ).getSql() ) ) {
+					end++;
+				}
+				executeUpdates( sql, operations.subList( i, end ), results );
+				i = end;
+				continue;
+			}
+
+			results.add( operation.perform( this ) );
+			i++;
+		}
+		return results;
+	}
+
+	private boolean areBatchUpdatesSupported() throws SQLException {
+		if ( batchUpdatesSupported == null ) {
+			batchUpdatesSupported = logicalConnection.getPhysicalConnection().getMetaData().supportsBatchUpdates();
+		}
+		return batchUpdatesSupported;
+	}
+
+	/**
+	 * Execute a run of BatchableUpdateOperations sharing the same SQL.  The SQL is inspected and prepared once for
+	 * the whole run, which is executed as a single JDBC batch when it has more than one Operation and the driver
+	 * supports batch updates.
+	 */
+	private void executeUpdates(
+			String sql,
+			List<? extends Operation<?>> operations,
+			List<Object> results) throws SQLException {
+		final boolean batched = operations.size() > 1 && areBatchUpdatesSupported();
+		final String resolvedSql = StatementPreparationSupport.resolveSql( context.getStatementInspector(), null, sql );
+		final PreparedStatement statement = StatementPreparationSupport.prepareStatement(
+				logicalConnection.getPhysicalConnection(),
+				null,
+				resolvedSql
+		);
+		logicalConnection.getResourceRegistry().register( statement, true );
+		try {
+			if ( batched ) {
+				log.tracef( "Executing %s operations as a single JDBC batch", operations.size() );
+				for ( Operation<?> operation : operations ) {
+					( (BatchableUpdateOperation) operation ).bindParameters( statement );
+					statement.addBatch();
+				}
+				for ( int updateCount : statement.executeBatch() ) {
+					results.add( updateCount );
+				}
+			}
+			else {
+				for ( Operation<?> operation : operations ) {
+					( (BatchableUpdateOperation) operation ).bindParameters( statement );
+					results.add( statement.executeUpdate() );
+				}
+			}
+		}
+		finally {
+			logicalConnection.getResourceRegistry().release( statement );
+			logicalConnection.afterStatement();
+		}
 	}
 
 	@Override
 	public <R> R accept(OperationSpec<R> operation) {
-		return null;
+		if ( operation instanceof CallableStatementOperationSpec ) {
+			return accept(
+					new CallableStatementOperation<R>(
+							(CallableStatementOperationSpec<R>) operation,
+							context
+					)
+			);
+		}
+		if ( operation instanceof ColumnarQueryOperationSpec ) {
+			return accept(
+					new ColumnarQueryOperation<R>(
+							(ColumnarQueryOperationSpec<R>) operation,
+							context
+					)
+			);
+		}
+
+		throw new HibernateException( "Unsupported OperationSpec type : " + operation.getClass().getName() );
 	}
 
 
@@ -121,8 +362,13 @@ public class JdbcSessionImpl
 
 	@Override
 	public void afterTransactionCompletion(boolean successful) {
-		// todo : implement
-		// for now, just log...
 		log.tracef( "JdbcSessionImpl#afterTransactionCompletion(%s)", successful );
+
+		// NOTE : may be called from a thread other than the owner's (JTA timeout rollbacks); the TransactionCoordinator
+		// defers that while the owner is inside accept(), but work done directly against getLogicalConnection() is
+		// only covered if the owner brackets it with beforeOwnerWork/afterOwnerWork itself
+		if ( logicalConnection.isOpen() ) {
+			logicalConnection.afterTransaction();
+		}
 	}
 }
@@ -0,0 +1,120 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.internal;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
+import org.hibernate.resource.jdbc.spi.JdbcSessionContext;
+import org.hibernate.resource.transaction.TransactionCoordinatorBuilder;
+
+import org.jboss.logging.Logger;
+
+/**
+ * A per-thread pool of closed JdbcSessionImpl instances (along with their LogicalConnection, ResourceRegistry and
+ * TransactionCoordinator) available for re-use.  Sessions are returned to the pool of the thread which closes them.
+ * <p/>
+ * A session is only recycled if it can be strictly reset, and is only handed out again for the same
+ * JdbcSessionContext, JdbcConnectionAccess and TransactionCoordinatorBuilder it was built with.  Callers must not use
+ * a JdbcSession reference after closing it.
+ *
+ * @author Steve Ebersole
+ */
+public class JdbcSessionPool {
+	private static final Logger log = Logger.getLogger( JdbcSessionPool.class );
+
+	private final int maxSessionsPerThread;
+
+	private final ThreadLocal<ArrayDeque<JdbcSessionImpl>> sessions = new ThreadLocal<ArrayDeque<JdbcSessionImpl>>() {
+		@Override
+		protected ArrayDeque<JdbcSessionImpl> initialValue() {
+			return new ArrayDeque<JdbcSessionImpl>( maxSessionsPerThread );
+		}
+	};
+
+	public JdbcSessionPool(int maxSessionsPerThread) {
+		if ( maxSessionsPerThread < 1 ) {
+			throw new IllegalArgumentException( "Max sessions per thread must be positive : " + maxSessionsPerThread );
+		}
+		this.maxSessionsPerThread = maxSessionsPerThread;
+	}
+
+	/**
+	 * Obtain a pooled session for the given configuration, if one is available.
+	 *
+	 * @param context The JdbcSessionContext the session is to use
+	 * @param jdbcConnectionAccess The JdbcConnectionAccess the session is to use
+	 * @param transactionCoordinatorBuilder The TransactionCoordinatorBuilder the session is to use
+	 *
+	 * @return The re-opened session, or {@code null} if none was available
+	 */
+	public JdbcSessionImpl acquire(
+			JdbcSessionContext context,
+			JdbcConnectionAccess jdbcConnectionAccess,
+			TransactionCoordinatorBuilder transactionCoordinatorBuilder) {
+		final Iterator<JdbcSessionImpl> itr = sessions.get().iterator();
+		while ( itr.hasNext() ) {
+			final JdbcSessionImpl session = itr.next();
+			if ( session.isReusableFor( context, jdbcConnectionAccess, transactionCoordinatorBuilder ) ) {
+				itr.remove();
+				if ( session.reset() ) {
+					log.trace( "Re-using pooled JdbcSession" );
+					return session;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Make the closed session available for re-use, if possible.
+	 *
+	 * @param session The closed session
+	 */
+	public void recycle(JdbcSessionImpl session) {
+		if ( session.isOpen() ) {
+			return;
+		}
+
+		final ArrayDeque<JdbcSessionImpl> pooled = sessions.get();
+		if ( pooled.size() >= maxSessionsPerThread || pooled.contains( session ) ) {
+			return;
+		}
+		if ( !session.isReusable() ) {
+			log.debug( "JdbcSession not in a re-usable state on close; discarding" );
+			return;
+		}
+		pooled.addFirst( session );
+	}
+
+	/**
+	 * Intended for test access
+	 *
+	 * @return The number of sessions pooled for the calling thread
+	 */
+	public int getNumberOfPooledSessions() {
+		return sessions.get().size();
+	}
+}
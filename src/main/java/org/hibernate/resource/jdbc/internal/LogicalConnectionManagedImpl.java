@@ -2,14 +2,18 @@ package org.hibernate.resource.jdbc.internal;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.Executor;
 
 import org.hibernate.ConnectionReleaseMode;
+import org.hibernate.HibernateException;
 import org.hibernate.ResourceClosedException;
 import org.hibernate.engine.jdbc.spi.SqlExceptionHelper;
+import org.hibernate.resource.jdbc.spi.AdaptiveConnectionReleasePolicy;
 import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
 import org.hibernate.resource.jdbc.spi.JdbcObserver;
 import org.hibernate.resource.jdbc.spi.JdbcSessionContext;
 import org.hibernate.resource.jdbc.spi.LogicalConnectionImplementor;
+import org.hibernate.resource.jdbc.spi.TenantSchemaSwitcher;
 
 import org.jboss.logging.Logger;
 
@@ -25,19 +29,59 @@ public class LogicalConnectionManagedImpl extends AbstractLogicalConnectionImple
 	private final JdbcObserver observer;
 	private final SqlExceptionHelper sqlExceptionHelper;
 	private final ConnectionReleaseMode connectionReleaseMode;
+	private final boolean acquireImmediately;
+	private final Executor prefetchExecutor;
+	private final AdaptiveConnectionReleasePolicy adaptiveReleasePolicy;
+	private final boolean operationScopedRelease;
+	private final TenantSchemaSwitcher tenantSchemaSwitcher;
+	private final String tenantIdentifier;
 
 	private Connection physicalConnection;
+	private ConnectionPrefetch connectionPrefetch;
 	private boolean closed;
 
+	// adaptive release accounting; see AdaptiveConnectionReleasePolicy
+	private long lastStatementEndNanos;
+	private long statementGapNanos = -1;
+
 	public LogicalConnectionManagedImpl(
 			JdbcConnectionAccess jdbcConnectionAccess,
 			JdbcSessionContext jdbcSessionContext) {
+		this( jdbcConnectionAccess, jdbcSessionContext, true );
+	}
+
+	/**
+	 * Constructs a LogicalConnectionManagedImpl.
+	 *
+	 * @param jdbcConnectionAccess Access to Connections
+	 * @param jdbcSessionContext The JdbcSessionContext
+	 * @param connectionPrefetchAllowed Whether the Connection may be obtained on another thread, for
+	 * {@link JdbcSessionContext.ConnectionAcquisitionMode#PREFETCH}.  Must be {@code false} whenever obtaining the
+	 * Connection depends on the calling thread, such as in JTA environments where the Connection is enlisted with
+	 * the transaction associated with the obtaining thread.
+	 */
+	public LogicalConnectionManagedImpl(
+			JdbcConnectionAccess jdbcConnectionAccess,
+			JdbcSessionContext jdbcSessionContext,
+			boolean connectionPrefetchAllowed) {
 		this.jdbcConnectionAccess = jdbcConnectionAccess;
 		this.observer = jdbcSessionContext.getObserver();
 		this.sqlExceptionHelper = jdbcSessionContext.getSqlExceptionHelper();
 		this.connectionReleaseMode = jdbcSessionContext.getConnectionReleaseMode();
-
-		if ( jdbcSessionContext.getConnectionAcquisitionMode() == JdbcSessionContext.ConnectionAcquisitionMode.IMMEDIATELY ) {
+		this.acquireImmediately = jdbcSessionContext.getConnectionAcquisitionMode()
+				== JdbcSessionContext.ConnectionAcquisitionMode.IMMEDIATELY;
+		this.prefetchExecutor = jdbcSessionContext.getConnectionAcquisitionMode()
+				== JdbcSessionContext.ConnectionAcquisitionMode.PREFETCH
+				? resolvePrefetchExecutor( jdbcConnectionAccess, jdbcSessionContext, connectionPrefetchAllowed )
+				: null;
+		this.operationScopedRelease = jdbcSessionContext.isOperationScopedConnectionReleaseEnabled();
+		this.tenantSchemaSwitcher = jdbcSessionContext.getTenantSchemaSwitcher();
+		this.tenantIdentifier = jdbcSessionContext.getTenantIdentifier();
+		this.adaptiveReleasePolicy = connectionReleaseMode == ConnectionReleaseMode.ON_CLOSE
+				? null
+				: jdbcSessionContext.getAdaptiveConnectionReleasePolicy();
+
+		if ( acquireImmediately ) {
 			if ( jdbcSessionContext.getConnectionReleaseMode() != ConnectionReleaseMode.ON_CLOSE ) {
 				throw new IllegalStateException(
 						"Illegal combination of ConnectionAcquisitionMode#IMMEDIATELY with !ConnectionReleaseMode.ON_CLOSE"
@@ -45,14 +89,41 @@ public class LogicalConnectionManagedImpl extends AbstractLogicalConnectionImple
 			}
 			acquireConnectionIfNeeded();
 		}
+		else if ( prefetchExecutor != null ) {
+			connectionPrefetch = ConnectionPrefetch.start( jdbcConnectionAccess, prefetchExecutor );
+		}
+	}
+
+	private static Executor resolvePrefetchExecutor(
+			JdbcConnectionAccess jdbcConnectionAccess,
+			JdbcSessionContext jdbcSessionContext,
+			boolean connectionPrefetchAllowed) {
+		// the JTA-sharing access binds the Connection to the transaction of the obtaining thread
+		if ( !connectionPrefetchAllowed || jdbcConnectionAccess instanceof JdbcConnectionAccessJtaSharingImpl ) {
+			log.debug( "Connection prefetch not supported for thread-bound Connection access; Connection will be acquired as needed" );
+			return null;
+		}
+		return jdbcSessionContext.getAsyncExecutor();
 	}
 
 	private Connection acquireConnectionIfNeeded() {
 		if ( physicalConnection == null ) {
 			// todo : is this the right place for these observer calls?
 			observer.jdbcConnectionAcquisitionStart();
+			final long start = adaptiveReleasePolicy == null ? 0 : System.nanoTime();
 			try {
-				physicalConnection = jdbcConnectionAccess.obtainConnection();
+				if ( connectionPrefetch != null ) {
+					final ConnectionPrefetch prefetch = connectionPrefetch;
+					connectionPrefetch = null;
+					// NOTE : the acquisition time was (at least partly) hidden, so it says nothing about the pool
+					physicalConnection = prefetch.take();
+				}
+				if ( physicalConnection == null ) {
+					physicalConnection = jdbcConnectionAccess.obtainConnection();
+					if ( adaptiveReleasePolicy != null ) {
+						adaptiveReleasePolicy.recordAcquisitionTime( System.nanoTime() - start );
+					}
+				}
 			}
 			catch (SQLException e) {
 				throw sqlExceptionHelper.convert( e, "Unable to acquire JDBC Connection" );
@@ -60,10 +131,56 @@ public class LogicalConnectionManagedImpl extends AbstractLogicalConnectionImple
 			finally {
 				observer.jdbcConnectionAcquisitionEnd();
 			}
+
+			if ( tenantSchemaSwitcher != null ) {
+				applyTenantSchema();
+			}
 		}
 		return physicalConnection;
 	}
 
+	private void applyTenantSchema() {
+		String schema = tenantSchemaSwitcher.resolveSchema( tenantIdentifier );
+		if ( schema == null ) {
+			// never leave the Connection in whatever schema its previous user left it in
+			schema = tenantSchemaSwitcher.getDefaultSchema();
+		}
+		if ( schema == null ) {
+			releaseConnectionQuietly();
+			throw new HibernateException( "TenantSchemaSwitcher did not supply a default schema" );
+		}
+
+		try {
+			switchSchema( schema );
+		}
+		catch (SQLException e) {
+			// the Connection is in an unknown state, so do not hold on to it
+			releaseConnectionQuietly();
+			throw sqlExceptionHelper.convert( e, "Unable to switch JDBC Connection to schema [" + schema + "]" );
+		}
+	}
+
+	private void switchSchema(String schema) throws SQLException {
+		// checked against the Connection itself every time : pools may hand out a new proxy for the same
+		// Connection, or reset its state on check-in, so nothing remembered about a Connection can be trusted
+		if ( schema.equals( tenantSchemaSwitcher.readCurrentSchema( physicalConnection ) ) ) {
+			log.tracef( "JDBC Connection already using schema [%s]", schema );
+			return;
+		}
+
+		log.debugf( "Switching JDBC Connection to schema [%s]", schema );
+		tenantSchemaSwitcher.applySchema( physicalConnection, schema );
+	}
+
+	private void releaseConnectionQuietly() {
+		try {
+			releaseConnection();
+		}
+		catch (RuntimeException re) {
+			log.debug( "Unable to release JDBC Connection after failed schema switch", re );
+		}
+	}
+
 	@Override
 	public boolean isOpen() {
 		return !closed;
@@ -77,6 +194,13 @@ public class LogicalConnectionManagedImpl extends AbstractLogicalConnectionImple
 	@Override
 	public Connection getPhysicalConnection() {
 		errorIfClosed();
+		if ( lastStatementEndNanos != 0 ) {
+			statementGapNanos = MovingAverageHelper.average(
+					statementGapNanos,
+					System.nanoTime() - lastStatementEndNanos
+			);
+			lastStatementEndNanos = 0;
+		}
 		return acquireConnectionIfNeeded();
 	}
 
@@ -84,6 +208,16 @@ public class LogicalConnectionManagedImpl extends AbstractLogicalConnectionImple
 	public void afterStatement() {
 		super.afterStatement();
 
+		if ( deferAfterStatement() ) {
+			log.trace( "Deferring after-statement handling until end of statement batch" );
+			return;
+		}
+
+		if ( adaptiveReleasePolicy != null ) {
+			adaptiveAfterStatement();
+			return;
+		}
+
 		if ( connectionReleaseMode == ConnectionReleaseMode.AFTER_STATEMENT ) {
 			if ( getResourceRegistry().hasRegisteredResources() ) {
 				log.debug( "Skipping aggressive release of JDBC Connection after-statement due to held resources" );
@@ -95,6 +229,44 @@ public class LogicalConnectionManagedImpl extends AbstractLogicalConnectionImple
 		}
 	}
 
+	private void adaptiveAfterStatement() {
+		lastStatementEndNanos = System.nanoTime();
+
+		if ( physicalConnection == null || jdbcTransactionInProgress ) {
+			return;
+		}
+
+		if ( getResourceRegistry().hasRegisteredResources() ) {
+			log.debug( "Skipping adaptive release of JDBC Connection after-statement due to held resources" );
+			return;
+		}
+
+		if ( adaptiveReleasePolicy.shouldRelease( statementGapNanos ) ) {
+			log.debug( "Initiating JDBC connection release from afterStatement (adaptive)" );
+			releaseConnection();
+		}
+	}
+
+	@Override
+	public void afterOperation() {
+		super.afterOperation();
+
+		if ( !operationScopedRelease || physicalConnection == null ) {
+			return;
+		}
+
+		if ( jdbcTransactionInProgress ) {
+			log.debug( "Skipping operation-scoped release of JDBC Connection due to JDBC transaction in progress" );
+		}
+		else if ( getResourceRegistry().hasRegisteredResources() ) {
+			log.debug( "Skipping operation-scoped release of JDBC Connection due to held resources" );
+		}
+		else {
+			log.debug( "Initiating JDBC connection release from afterOperation" );
+			releaseConnection();
+		}
+	}
+
 	@Override
 	public void afterTransaction() {
 		super.afterTransaction();
@@ -132,6 +304,9 @@ public class LogicalConnectionManagedImpl extends AbstractLogicalConnectionImple
 
 		// todo : is this the right place for these observer calls?
 		observer.jdbcConnectionReleaseStart();
+		if ( tenantSchemaSwitcher != null ) {
+			resetTenantSchema();
+		}
 		try {
 			if ( !physicalConnection.isClosed() ) {
 				sqlExceptionHelper.logAndClearWarnings( physicalConnection );
@@ -142,10 +317,25 @@ public class LogicalConnectionManagedImpl extends AbstractLogicalConnectionImple
 			throw sqlExceptionHelper.convert( e, "Unable to release JDBC Connection" );
 		}
 		finally {
+			physicalConnection = null;
 			observer.jdbcConnectionReleaseEnd();
 		}
 	}
 
+	private void resetTenantSchema() {
+		final String releaseSchema = tenantSchemaSwitcher.getReleaseSchema();
+		if ( releaseSchema == null ) {
+			return;
+		}
+		try {
+			switchSchema( releaseSchema );
+		}
+		catch (SQLException e) {
+			// still release the Connection; the next user switches it as needed anyway
+			log.debug( "Unable to reset schema of JDBC Connection on release", e );
+		}
+	}
+
 	@Override
 	public LogicalConnectionImplementor makeShareableCopy() {
 		errorIfClosed();
@@ -164,6 +354,7 @@ public class LogicalConnectionManagedImpl extends AbstractLogicalConnectionImple
 		getResourceRegistry().releaseResources();
 
 		log.trace( "Closing logical connection" );
+		abandonConnectionPrefetch();
 		try {
 			releaseConnection();
 		}
@@ -176,6 +367,45 @@ public class LogicalConnectionManagedImpl extends AbstractLogicalConnectionImple
 	}
 
 
+	private void abandonConnectionPrefetch() {
+		if ( connectionPrefetch != null ) {
+			final ConnectionPrefetch prefetch = connectionPrefetch;
+			connectionPrefetch = null;
+			prefetch.abandon();
+		}
+	}
+
+	/**
+	 * Re-open this (closed) logical connection for re-use.  Strict in that the logical connection must be fully
+	 * released.
+	 *
+	 * @return {@code true} if re-opened; {@code false} if it is in a state that does not allow re-use.
+	 */
+	boolean reopen() {
+		if ( !closed || physicalConnection != null || getResourceRegistry().hasRegisteredResources() ) {
+			return false;
+		}
+
+		initiallyAutoCommit = false;
+		jdbcTransactionInProgress = false;
+		lastStatementEndNanos = 0;
+		statementGapNanos = -1;
+		closed = false;
+
+		if ( acquireImmediately ) {
+			acquireConnectionIfNeeded();
+		}
+		else if ( prefetchExecutor != null ) {
+			connectionPrefetch = ConnectionPrefetch.start( jdbcConnectionAccess, prefetchExecutor );
+		}
+		return true;
+	}
+
+	JdbcConnectionAccess getJdbcConnectionAccess() {
+		return jdbcConnectionAccess;
+	}
+
+
 	// PhysicalJdbcTransaction impl ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
 
 	@Override
@@ -184,18 +414,23 @@ public class LogicalConnectionManagedImpl extends AbstractLogicalConnectionImple
 	}
 
 	boolean initiallyAutoCommit;
+	private boolean jdbcTransactionInProgress;
 
 	@Override
 	public void begin() {
 		initiallyAutoCommit = determineInitialAutoCommitMode( getConnectionForTransactionManagement() );
 		super.begin();
+		jdbcTransactionInProgress = true;
 	}
 
 	@Override
 	protected void afterCompletion() {
-		afterTransaction();
+		jdbcTransactionInProgress = false;
 
+		// reset the Connection before afterTransaction possibly releases it
 		resetConnection( initiallyAutoCommit );
 		initiallyAutoCommit = false;
+
+		afterTransaction();
 	}
 }
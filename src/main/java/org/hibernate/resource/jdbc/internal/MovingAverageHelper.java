@@ -0,0 +1,71 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exponentially weighted moving averages, as used for the adaptive (self-tuning) parts of the JdbcSession.
+ *
+ * @author Steve Ebersole
+ */
+public final class MovingAverageHelper {
+	/**
+	 * Weight given to a new sample, as a right shift (1/8) - same as TCP round-trip time estimation
+	 */
+	private static final int WEIGHT_SHIFT = 3;
+
+	private MovingAverageHelper() {
+	}
+
+	/**
+	 * Fold a sample into an exponentially weighted moving average.
+	 *
+	 * @param average The current average; negative if there is none yet
+	 * @param sample The new sample
+	 *
+	 * @return The new average
+	 */
+	public static long average(long average, long sample) {
+		if ( average < 0 ) {
+			return sample;
+		}
+		return average + ( ( sample - average ) >> WEIGHT_SHIFT );
+	}
+
+	/**
+	 * Atomically fold a sample into the exponentially weighted moving average held by the given AtomicLong.
+	 *
+	 * @param average The current average; negative if there is none yet
+	 * @param sample The new sample
+	 */
+	public static void average(AtomicLong average, long sample) {
+		while ( true ) {
+			final long current = average.get();
+			if ( average.compareAndSet( current, average( current, sample ) ) ) {
+				return;
+			}
+		}
+	}
+}
@@ -32,12 +32,16 @@ public class ResourceRegistryStandardImpl implements ResourceRegistry {
 	private List<Clob> clobs;
 	private List<NClob> nclobs;
 
-	private Statement lastQuery;
+	// volatile as cancelLastQuery may be called from a different thread
+	private volatile Statement lastQuery;
 
 	@Override
 	public boolean hasRegisteredResources() {
-		// todo : implement
-		return false;
+		return !xref.isEmpty()
+				|| !unassociatedResultSets.isEmpty()
+				|| ( blobs != null && !blobs.isEmpty() )
+				|| ( clobs != null && !clobs.isEmpty() )
+				|| ( nclobs != null && !nclobs.isEmpty() );
 	}
 
 	@Override
@@ -256,8 +260,9 @@ public class ResourceRegistryStandardImpl implements ResourceRegistry {
 	@Override
 	public void cancelLastQuery() {
 		try {
-			if (lastQuery != null) {
-				lastQuery.cancel();
+			final Statement query = lastQuery;
+			if ( query != null ) {
+				query.cancel();
 			}
 		}
 		catch (SQLException e) {
@@ -272,6 +277,8 @@ public class ResourceRegistryStandardImpl implements ResourceRegistry {
 	public void releaseResources() {
 		log.trace( "Releasing JDBC resources" );
 
+		lastQuery = null;
+
 		for ( Map.Entry<Statement,Set<ResultSet>> entry : xref.entrySet() ) {
 			if ( entry.getValue() != null ) {
 				closeAll( entry.getValue() );
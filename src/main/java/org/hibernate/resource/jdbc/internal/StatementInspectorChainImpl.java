@@ -0,0 +1,125 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.resource.jdbc.spi.UncacheableStatementInspector;
+
+/**
+ * A StatementInspector which applies a chain of StatementInspectors in order, each seeing the SQL as rewritten by
+ * the ones before it.  The outcome of the leading run of cacheable inspectors is cached, keyed by the original SQL,
+ * so that repeated SQL costs a single lookup.  The chain is cut at the first
+ * {@link UncacheableStatementInspector}: it, and every inspector after it, is applied on every call.
+ * <p/>
+ * The cache is bounded.  It is kept as two generations: once the young generation fills half the capacity, it
+ * becomes the old generation and the previous old generation is dropped.  Hits in the old generation are promoted,
+ * so SQL which is used steadily stays cached while one-off SQL ages out, without any locking on lookups.
+ *
+ * @author Steve Ebersole
+ */
+public class StatementInspectorChainImpl implements StatementInspector {
+	private final StatementInspector[] cacheableInspectors;
+	private final StatementInspector[] uncacheableInspectors;
+	private final int generationSize;
+
+	private volatile ConcurrentHashMap<String,String> youngGeneration;
+	private volatile ConcurrentHashMap<String,String> oldGeneration;
+
+	public StatementInspectorChainImpl(int maxCacheSize, StatementInspector... inspectors) {
+		int cut = 0;
+		while ( cut < inspectors.length && !( inspectors[cut] instanceof UncacheableStatementInspector ) ) {
+			cut++;
+		}
+		this.cacheableInspectors = new StatementInspector[cut];
+		System.arraycopy( inspectors, 0, cacheableInspectors, 0, cut );
+		this.uncacheableInspectors = new StatementInspector[inspectors.length - cut];
+		System.arraycopy( inspectors, cut, uncacheableInspectors, 0, uncacheableInspectors.length );
+
+		this.generationSize = Math.max( 1, maxCacheSize / 2 );
+		this.youngGeneration = new ConcurrentHashMap<String, String>();
+		this.oldGeneration = new ConcurrentHashMap<String, String>();
+	}
+
+	@Override
+	public String inspect(String sql) {
+		if ( sql == null ) {
+			return null;
+		}
+		return apply( uncacheableInspectors, cacheableInspectors.length == 0 ? sql : inspectCacheable( sql ) );
+	}
+
+	/**
+	 * The number of SQL strings currently cached.
+	 *
+	 * @return The (approximate, under concurrent use) number of cached entries
+	 */
+	public int getCacheSize() {
+		return youngGeneration.size() + oldGeneration.size();
+	}
+
+	private String inspectCacheable(String sql) {
+		final ConcurrentHashMap<String,String> young = youngGeneration;
+		String inspected = young.get( sql );
+		if ( inspected != null ) {
+			return inspected;
+		}
+
+		inspected = oldGeneration.get( sql );
+		if ( inspected == null ) {
+			inspected = apply( cacheableInspectors, sql );
+			if ( inspected.equals( sql ) ) {
+				// do not keep two copies of the same String around
+				inspected = sql;
+			}
+		}
+
+		young.put( sql, inspected );
+		if ( young.size() >= generationSize ) {
+			rotate( young );
+		}
+		return inspected;
+	}
+
+	private synchronized void rotate(ConcurrentHashMap<String,String> young) {
+		if ( youngGeneration != young ) {
+			// another thread already rotated
+			return;
+		}
+		oldGeneration = young;
+		youngGeneration = new ConcurrentHashMap<String, String>();
+	}
+
+	private static String apply(StatementInspector[] inspectors, String sql) {
+		String current = sql;
+		for ( StatementInspector inspector : inspectors ) {
+			final String inspected = inspector.inspect( current );
+			if ( inspected != null ) {
+				current = inspected;
+			}
+		}
+		return current;
+	}
+}
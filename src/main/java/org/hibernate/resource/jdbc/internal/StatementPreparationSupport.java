@@ -0,0 +1,179 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.internal;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.hibernate.resource.jdbc.spi.FetchSizeTuner;
+import org.hibernate.resource.jdbc.spi.SqlHandle;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Statement preparation steps shared by the Operations performing OperationSpecs and the executors built on
+ * JdbcSession.
+ *
+ * @author Steve Ebersole
+ */
+public final class StatementPreparationSupport {
+	private StatementPreparationSupport() {
+	}
+
+	/**
+	 * Apply the StatementInspector, if any, to the SQL.
+	 *
+	 * @param statementInspector The StatementInspector; may be {@code null}
+	 * @param sql The SQL
+	 *
+	 * @return The SQL to execute
+	 */
+	public static String inspect(StatementInspector statementInspector, String sql) {
+		if ( statementInspector == null ) {
+			return sql;
+		}
+		final String inspected = statementInspector.inspect( sql );
+		return inspected == null ? sql : inspected;
+	}
+
+	/**
+	 * Resolve the SQL to execute for an OperationSpec, preferring its registered SqlHandle.
+	 *
+	 * @param statementInspector The StatementInspector of the session; may be {@code null}
+	 * @param sqlHandle The handle of the spec; may be {@code null}
+	 * @param sql The SQL of the spec, used when there is no handle
+	 *
+	 * @return The SQL to execute
+	 */
+	public static String resolveSql(StatementInspector statementInspector, SqlHandle sqlHandle, String sql) {
+		if ( sqlHandle != null ) {
+			return sqlHandle.resolveSql( statementInspector );
+		}
+		return inspect( statementInspector, sql );
+	}
+
+	/**
+	 * Prepare the (resolved) SQL, with the result set characteristics of the SqlHandle if there is one.
+	 *
+	 * @param connection The Connection
+	 * @param sqlHandle The handle; may be {@code null}
+	 * @param sql The SQL, as {@link #resolveSql resolved}
+	 *
+	 * @return The prepared statement
+	 *
+	 * @throws SQLException Indicates a problem preparing the statement
+	 */
+	public static PreparedStatement prepareStatement(Connection connection, SqlHandle sqlHandle, String sql)
+			throws SQLException {
+		if ( isDefaultResultSet( sqlHandle ) ) {
+			return connection.prepareStatement( sql );
+		}
+		return connection.prepareStatement( sql, sqlHandle.getResultSetType(), sqlHandle.getResultSetConcurrency() );
+	}
+
+	/**
+	 * Prepare the (resolved) call, with the result set characteristics of the SqlHandle if there is one.
+	 *
+	 * @param connection The Connection
+	 * @param sqlHandle The handle; may be {@code null}
+	 * @param sql The SQL, as {@link #resolveSql resolved}
+	 *
+	 * @return The prepared call
+	 *
+	 * @throws SQLException Indicates a problem preparing the call
+	 */
+	public static CallableStatement prepareCall(Connection connection, SqlHandle sqlHandle, String sql) throws SQLException {
+		if ( isDefaultResultSet( sqlHandle ) ) {
+			return connection.prepareCall( sql );
+		}
+		return connection.prepareCall( sql, sqlHandle.getResultSetType(), sqlHandle.getResultSetConcurrency() );
+	}
+
+	private static boolean isDefaultResultSet(SqlHandle sqlHandle) {
+		return sqlHandle == null
+				|| ( sqlHandle.getResultSetType() == ResultSet.TYPE_FORWARD_ONLY
+						&& sqlHandle.getResultSetConcurrency() == ResultSet.CONCUR_READ_ONLY );
+	}
+
+	/**
+	 * Apply the fetch size for the SQL to the statement, as determined by the FetchSizeTuner if there is one.
+	 *
+	 * @param statement The statement
+	 * @param fetchSizeTuner The FetchSizeTuner; may be {@code null}
+	 * @param sqlHandle The handle of the statement, which keys the tuner's statistics if there is one; may be
+	 * {@code null}
+	 * @param sql The (inspected) SQL of the statement, which keys the tuner's statistics otherwise
+	 * @param defaultFetchSize The configured fetch size
+	 *
+	 * @throws SQLException Indicates a problem setting the fetch size
+	 */
+	public static void applyFetchSize(
+			Statement statement,
+			FetchSizeTuner fetchSizeTuner,
+			SqlHandle sqlHandle,
+			String sql,
+			int defaultFetchSize) throws SQLException {
+		final int fetchSize;
+		if ( fetchSizeTuner == null ) {
+			fetchSize = defaultFetchSize;
+		}
+		else if ( sqlHandle != null ) {
+			fetchSize = fetchSizeTuner.determineFetchSize( sqlHandle, defaultFetchSize );
+		}
+		else {
+			fetchSize = fetchSizeTuner.determineFetchSize( sql, defaultFetchSize );
+		}
+		if ( fetchSize > 0 ) {
+			statement.setFetchSize( fetchSize );
+		}
+	}
+
+	/**
+	 * Report the results consumed to the FetchSizeTuner, keyed the same way as {@link #applyFetchSize}.
+	 *
+	 * @param fetchSizeTuner The FetchSizeTuner
+	 * @param sqlHandle The handle of the statement; may be {@code null}
+	 * @param sql The (inspected) SQL of the statement
+	 * @param resultSet The ResultSet
+	 * @param rowCount The number of rows consumed
+	 *
+	 * @throws SQLException Indicates a problem accessing the ResultSet metadata
+	 */
+	public static void recordResults(
+			FetchSizeTuner fetchSizeTuner,
+			SqlHandle sqlHandle,
+			String sql,
+			ResultSet resultSet,
+			long rowCount) throws SQLException {
+		if ( sqlHandle != null ) {
+			fetchSizeTuner.recordResults( sqlHandle, resultSet, rowCount );
+		}
+		else {
+			fetchSizeTuner.recordResults( sql, resultSet, rowCount );
+		}
+	}
+}
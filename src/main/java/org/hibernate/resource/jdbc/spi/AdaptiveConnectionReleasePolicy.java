@@ -0,0 +1,116 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.spi;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.resource.jdbc.internal.MovingAverageHelper;
+
+/**
+ * Drives adaptive release of JDBC Connections between statements.  A session keeps its Connection across a gap
+ * between statements when that gap is expected to be short compared to the cost of getting a Connection back from
+ * the pool, and releases it otherwise.
+ * <p/>
+ * The cost of getting a Connection is learned from the acquisition times reported by all sessions sharing this
+ * policy (generally one instance per pool), as an exponentially weighted moving average.  Sessions track their own
+ * moving average of the gaps between statements.  A Connection is released after a statement when the session's
+ * expected gap exceeds the {@link #getReleaseThresholdNanos() release threshold}, which is the average acquisition
+ * time multiplied by a factor and clamped to configured bounds.
+ *
+ * @author Steve Ebersole
+ */
+public class AdaptiveConnectionReleasePolicy {
+	private final double acquisitionTimeFactor;
+	private final long minimumThresholdNanos;
+	private final long maximumThresholdNanos;
+
+	private final AtomicLong acquisitionTimeNanos = new AtomicLong( -1 );
+
+	/**
+	 * Constructs a policy releasing when the expected gap exceeds 4 times the average acquisition time, bounded
+	 * between 50 microseconds and 100 milliseconds.
+	 */
+	public AdaptiveConnectionReleasePolicy() {
+		this( 4, 50, 100000, TimeUnit.MICROSECONDS );
+	}
+
+	/**
+	 * Constructs a policy.
+	 *
+	 * @param acquisitionTimeFactor The multiple of the average acquisition time an expected gap needs to exceed for
+	 * the Connection to be released
+	 * @param minimumThreshold The lower bound of the release threshold
+	 * @param maximumThreshold The upper bound of the release threshold
+	 * @param unit The unit of the bounds
+	 */
+	public AdaptiveConnectionReleasePolicy(
+			double acquisitionTimeFactor,
+			long minimumThreshold,
+			long maximumThreshold,
+			TimeUnit unit) {
+		if ( minimumThreshold > maximumThreshold ) {
+			throw new IllegalArgumentException( "Minimum threshold cannot exceed maximum threshold" );
+		}
+		this.acquisitionTimeFactor = acquisitionTimeFactor;
+		this.minimumThresholdNanos = unit.toNanos( minimumThreshold );
+		this.maximumThresholdNanos = unit.toNanos( maximumThreshold );
+	}
+
+	/**
+	 * Report the time it took to obtain a Connection.
+	 *
+	 * @param nanos The acquisition time, in nanoseconds
+	 */
+	public void recordAcquisitionTime(long nanos) {
+		MovingAverageHelper.average( acquisitionTimeNanos, nanos );
+	}
+
+	/**
+	 * The current release threshold.  Gaps expected to be longer than this warrant releasing the Connection.
+	 *
+	 * @return The threshold, in nanoseconds
+	 */
+	public long getReleaseThresholdNanos() {
+		final long acquisitionTime = acquisitionTimeNanos.get();
+		if ( acquisitionTime < 0 ) {
+			// nothing learned yet
+			return minimumThresholdNanos;
+		}
+
+		final long threshold = (long) ( acquisitionTime * acquisitionTimeFactor );
+		return Math.min( maximumThresholdNanos, Math.max( minimumThresholdNanos, threshold ) );
+	}
+
+	/**
+	 * Should the Connection be released given the expected gap until it is needed again?
+	 *
+	 * @param expectedGapNanos The expected gap, in nanoseconds; negative if unknown
+	 *
+	 * @return {@code true} if the Connection should be released.
+	 */
+	public boolean shouldRelease(long expectedGapNanos) {
+		return expectedGapNanos < 0 || expectedGapNanos > getReleaseThresholdNanos();
+	}
+}
@@ -0,0 +1,299 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.spi;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.resource.jdbc.internal.MovingAverageHelper;
+
+/**
+ * Tunes the JDBC fetch size per statement.  For each SqlHandle or SQL string (statement shape) it learns the number of rows
+ * consumed per execution, as an exponentially weighted moving average, and the row width, estimated from the
+ * ResultSet metadata.  The fetch size chosen is large enough to read the expected rows in a single round trip,
+ * bounded by configured minimum and maximum fetch sizes and by a memory budget for the rows of a single fetch.
+ * <p/>
+ * Statements are keyed by their {@link SqlHandle} where there is one, which is cheaper to look up than the SQL;
+ * the statistics for a handle and for its SQL string are tracked separately.
+ * <p/>
+ * Statements without (enough) history use the {@link JdbcSessionContext#getFetchSize() configured} fetch size.
+ * Only a bounded number of statements is tracked.  As in
+ * {@link org.hibernate.resource.jdbc.internal.StatementInspectorChainImpl}, the statistics are kept as two
+ * generations, so that steadily used statements stay tracked while one-off statements age out, without any locking.
+ * Generally one instance is shared by all sessions using the same database.
+ *
+ * @author Steve Ebersole
+ */
+public class FetchSizeTuner {
+	/**
+	 * Width assumed for columns of unknown or unbounded size (LOBs, unbounded VARCHAR, etc)
+	 */
+	private static final int MAXIMUM_COLUMN_WIDTH = 4000;
+
+	/**
+	 * Per-column overhead, for the driver's bookkeeping of each value
+	 */
+	private static final int COLUMN_OVERHEAD = 8;
+
+	private final long memoryBudgetBytes;
+	private final int minimumFetchSize;
+	private final int maximumFetchSize;
+	private final int generationSize;
+
+	private volatile ConcurrentHashMap<Object,StatementStatistics> youngGeneration;
+	private volatile ConcurrentHashMap<Object,StatementStatistics> oldGeneration;
+
+	/**
+	 * Constructs a tuner with a 1MB memory budget, fetch sizes between 10 and 5000 and tracking at most 1000
+	 * statements.
+	 */
+	public FetchSizeTuner() {
+		this( 1024 * 1024, 10, 5000, 1000 );
+	}
+
+	/**
+	 * Constructs a tuner.
+	 *
+	 * @param memoryBudgetBytes The (estimated) memory the rows of a single fetch may take
+	 * @param minimumFetchSize The lower bound of tuned fetch sizes (unless the memory budget does not allow it)
+	 * @param maximumFetchSize The upper bound of tuned fetch sizes
+	 * @param maximumTrackedStatements The maximum number of statements to learn about; statements not used recently
+	 * are forgotten to make room for others
+	 */
+	public FetchSizeTuner(
+			long memoryBudgetBytes,
+			int minimumFetchSize,
+			int maximumFetchSize,
+			int maximumTrackedStatements) {
+		if ( minimumFetchSize < 1 || minimumFetchSize > maximumFetchSize ) {
+			throw new IllegalArgumentException( "Minimum fetch size must be positive and cannot exceed maximum fetch size" );
+		}
+		this.memoryBudgetBytes = memoryBudgetBytes;
+		this.minimumFetchSize = minimumFetchSize;
+		this.maximumFetchSize = maximumFetchSize;
+		this.generationSize = Math.max( 1, maximumTrackedStatements / 2 );
+		this.youngGeneration = new ConcurrentHashMap<Object, StatementStatistics>();
+		this.oldGeneration = new ConcurrentHashMap<Object, StatementStatistics>();
+	}
+
+	/**
+	 * Determine the fetch size to use for executing the given SQL.
+	 *
+	 * @param sql The SQL
+	 * @param defaultFetchSize The fetch size to use for statements without history
+	 *
+	 * @return The fetch size; non-positive to leave the driver default in place.
+	 */
+	public int determineFetchSize(String sql, int defaultFetchSize) {
+		return determineFetchSize( (Object) sql, defaultFetchSize );
+	}
+
+	/**
+	 * Determine the fetch size to use for executing the SQL of the given handle.
+	 *
+	 * @param sqlHandle The handle
+	 * @param defaultFetchSize The fetch size to use for statements without history
+	 *
+	 * @return The fetch size; non-positive to leave the driver default in place.
+	 */
+	public int determineFetchSize(SqlHandle sqlHandle, int defaultFetchSize) {
+		return determineFetchSize( (Object) sqlHandle, defaultFetchSize );
+	}
+
+	private int determineFetchSize(Object statementKey, int defaultFetchSize) {
+		final StatementStatistics statistics = findStatistics( statementKey );
+		final long rowsPerExecution = statistics == null ? -1 : statistics.rowsPerExecution.get();
+		if ( rowsPerExecution < 0 ) {
+			return defaultFetchSize;
+		}
+
+		// one more than expected, so the driver can detect the end of the results within the same round trip
+		final long expectedRows = rowsPerExecution + 1;
+		final int fetchSize = (int) Math.min( maximumFetchSize, Math.max( minimumFetchSize, expectedRows ) );
+		final long budgetedRows = Math.max( 1, memoryBudgetBytes / statistics.rowWidth );
+		return (int) Math.min( fetchSize, budgetedRows );
+	}
+
+	/**
+	 * Report the results consumed from executing the given SQL.  Should be called once the rows have been consumed,
+	 * but before the ResultSet is closed.
+	 *
+	 * @param sql The SQL, as passed to {@link #determineFetchSize(String, int)}
+	 * @param resultSet The ResultSet; only its metadata is accessed, and only for statements not seen before
+	 * @param rowCount The number of rows consumed
+	 *
+	 * @throws SQLException Indicates a problem accessing the ResultSet metadata
+	 */
+	public void recordResults(String sql, ResultSet resultSet, long rowCount) throws SQLException {
+		recordResults( (Object) sql, resultSet, rowCount );
+	}
+
+	/**
+	 * Report the results consumed from executing the SQL of the given handle.  Should be called once the rows have
+	 * been consumed, but before the ResultSet is closed.
+	 *
+	 * @param sqlHandle The handle, as passed to {@link #determineFetchSize(SqlHandle, int)}
+	 * @param resultSet The ResultSet; only its metadata is accessed, and only for statements not seen before
+	 * @param rowCount The number of rows consumed
+	 *
+	 * @throws SQLException Indicates a problem accessing the ResultSet metadata
+	 */
+	public void recordResults(SqlHandle sqlHandle, ResultSet resultSet, long rowCount) throws SQLException {
+		recordResults( (Object) sqlHandle, resultSet, rowCount );
+	}
+
+	private void recordResults(Object statementKey, ResultSet resultSet, long rowCount) throws SQLException {
+		StatementStatistics statistics = findStatistics( statementKey );
+		if ( statistics == null ) {
+			statistics = new StatementStatistics( estimateRowWidth( resultSet.getMetaData() ) );
+			final ConcurrentHashMap<Object,StatementStatistics> young = youngGeneration;
+			final StatementStatistics existing = young.putIfAbsent( statementKey, statistics );
+			if ( existing != null ) {
+				statistics = existing;
+			}
+			else if ( young.size() >= generationSize ) {
+				rotate( young );
+			}
+		}
+		statistics.recordExecution( rowCount );
+	}
+
+	/**
+	 * The number of statements currently tracked.
+	 *
+	 * @return The (approximate, under concurrent use) number of statements
+	 */
+	public int getTrackedStatementCount() {
+		return youngGeneration.size() + oldGeneration.size();
+	}
+
+	private StatementStatistics findStatistics(Object statementKey) {
+		final ConcurrentHashMap<Object,StatementStatistics> young = youngGeneration;
+		final StatementStatistics statistics = young.get( statementKey );
+		if ( statistics != null ) {
+			return statistics;
+		}
+
+		final StatementStatistics old = oldGeneration.get( statementKey );
+		if ( old != null ) {
+			// promote, so it survives the next rotation
+			young.put( statementKey, old );
+			if ( young.size() >= generationSize ) {
+				rotate( young );
+			}
+		}
+		return old;
+	}
+
+	private synchronized void rotate(ConcurrentHashMap<Object,StatementStatistics> young) {
+		if ( youngGeneration != young ) {
+			// another thread already rotated
+			return;
+		}
+		oldGeneration = young;
+		youngGeneration = new ConcurrentHashMap<Object, StatementStatistics>();
+	}
+
+	/**
+	 * Estimate the in-memory width of a row from the declared column types and sizes.
+	 *
+	 * @param metaData The ResultSet metadata
+	 *
+	 * @return The estimated width, in bytes
+	 *
+	 * @throws SQLException Indicates a problem accessing the metadata
+	 */
+	public static int estimateRowWidth(ResultSetMetaData metaData) throws SQLException {
+		int width = 0;
+		for ( int i = 1; i <= metaData.getColumnCount(); i++ ) {
+			width += COLUMN_OVERHEAD + estimateColumnWidth( metaData.getColumnType( i ), metaData.getPrecision( i ) );
+		}
+		return Math.max( 1, width );
+	}
+
+	private static int estimateColumnWidth(int sqlType, int precision) {
+		switch ( sqlType ) {
+			case Types.BIT:
+			case Types.BOOLEAN:
+			case Types.TINYINT: {
+				return 1;
+			}
+			case Types.SMALLINT: {
+				return 2;
+			}
+			case Types.INTEGER:
+			case Types.REAL: {
+				return 4;
+			}
+			case Types.BIGINT:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+			case Types.DATE:
+			case Types.TIME:
+			case Types.TIMESTAMP: {
+				return 8;
+			}
+			case Types.DECIMAL:
+			case Types.NUMERIC: {
+				return precision > 0 ? Math.min( MAXIMUM_COLUMN_WIDTH, precision / 2 + 2 ) : 16;
+			}
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.NCHAR:
+			case Types.NVARCHAR:
+			case Types.BINARY:
+			case Types.VARBINARY: {
+				return precision > 0 ? Math.min( MAXIMUM_COLUMN_WIDTH, precision ) : MAXIMUM_COLUMN_WIDTH;
+			}
+			case Types.LONGVARCHAR:
+			case Types.LONGNVARCHAR:
+			case Types.LONGVARBINARY:
+			case Types.BLOB:
+			case Types.CLOB:
+			case Types.NCLOB: {
+				return MAXIMUM_COLUMN_WIDTH;
+			}
+			default: {
+				return 16;
+			}
+		}
+	}
+
+	private static class StatementStatistics {
+		private final int rowWidth;
+		private final AtomicLong rowsPerExecution = new AtomicLong( -1 );
+
+		private StatementStatistics(int rowWidth) {
+			this.rowWidth = rowWidth;
+		}
+
+		private void recordExecution(long rowCount) {
+			MovingAverageHelper.average( rowsPerExecution, rowCount );
+		}
+	}
+}
@@ -23,6 +23,8 @@
  */
 package org.hibernate.resource.jdbc.spi;
 
+import java.util.concurrent.Executor;
+
 import org.hibernate.ConnectionReleaseMode;
 import org.hibernate.engine.jdbc.spi.SqlExceptionHelper;
 import org.hibernate.engine.jdbc.spi.SqlStatementLogger;
@@ -37,9 +39,84 @@ public interface JdbcSessionContext {
 	public boolean isGetGeneratedKeysEnabled();
 	public int getFetchSize();
 
+	/**
+	 * The tuner for per-statement fetch sizes, based on the results of previous executions of the same SQL.
+	 *
+	 * @return The tuner, or {@code null} to always use the configured {@link #getFetchSize() fetch size}.
+	 */
+	public FetchSizeTuner getFetchSizeTuner();
+
 	public ConnectionReleaseMode getConnectionReleaseMode();
 	public ConnectionAcquisitionMode getConnectionAcquisitionMode();
 
+	/**
+	 * The priority of this JdbcSession's Connection acquisitions, relative to other sessions sharing the same
+	 * Connection source.  Only honored when the JdbcConnectionAccess is a {@link SessionAwareJdbcConnectionAccess}
+	 * which understands priorities.
+	 *
+	 * @return The acquisition priority
+	 */
+	public ConnectionAcquisitionPriority getConnectionAcquisitionPriority();
+
+	/**
+	 * The identifier of the tenant this JdbcSession works on behalf of, if any.  Only honored when the
+	 * JdbcConnectionAccess is a {@link SessionAwareJdbcConnectionAccess} which understands tenants.
+	 *
+	 * @return The tenant identifier, or {@code null} if not multi-tenant
+	 */
+	public String getTenantIdentifier();
+
+	/**
+	 * The strategy for switching Connections to the schema of the {@link #getTenantIdentifier() tenant}, for
+	 * schema-per-tenant multi-tenancy.
+	 *
+	 * @return The switcher, or {@code null} if Connections need no tenant-specific preparation.
+	 */
+	public TenantSchemaSwitcher getTenantSchemaSwitcher();
+
+	/**
+	 * The Executor to use for work done asynchronously on behalf of the JdbcSession, such as acquiring the
+	 * Connection for {@link ConnectionAcquisitionMode#PREFETCH}.
+	 *
+	 * @return The Executor, or {@code null} if asynchronous work is not supported; in that case any asynchronous
+	 * work is instead performed as needed, synchronously.
+	 */
+	public Executor getAsyncExecutor();
+
+	/**
+	 * Should the TransactionCoordinator be built lazily, on first call to
+	 * {@link org.hibernate.resource.jdbc.JdbcSession#getTransactionCoordinator()}?  Until then the session works in
+	 * an auto-commit mode: each {@link org.hibernate.resource.jdbc.JdbcSession#accept(org.hibernate.resource.jdbc.Operation)}
+	 * call is treated as its own transaction and, unless {@link ConnectionReleaseMode#ON_CLOSE} is used, the
+	 * Connection is released as soon as the Operation has finished (provided no JDBC resources are still held).
+	 * <p/>
+	 * Note that in JTA environments this also means that an active JTA transaction is not auto-joined until the
+	 * TransactionCoordinator is built.
+	 *
+	 * @return {@code true} to build the TransactionCoordinator lazily; {@code false} to build it up front.
+	 */
+	public boolean isLazyTransactionCoordinatorEnabled();
+
+	/**
+	 * The policy to use for adaptively releasing Connections between statements.  Only applies when the
+	 * ConnectionReleaseMode is not {@link ConnectionReleaseMode#ON_CLOSE}, in which case it takes over the
+	 * after-statement release decision.  Connections are still released after transactions as usual, and never in
+	 * the middle of a JDBC transaction.
+	 *
+	 * @return The policy, or {@code null} to disable adaptive release.
+	 */
+	public AdaptiveConnectionReleasePolicy getAdaptiveConnectionReleasePolicy();
+
+	/**
+	 * Should the Connection be held only for the duration of each
+	 * {@link org.hibernate.resource.jdbc.JdbcSession#accept} call?  When enabled, the Connection is released after
+	 * the outermost accept call regardless of the ConnectionReleaseMode, except while JDBC resources are still
+	 * registered or a transaction is in progress.
+	 *
+	 * @return {@code true} to release the Connection after each Operation; {@code false} otherwise.
+	 */
+	public boolean isOperationScopedConnectionReleaseEnabled();
+
 	public StatementInspector getStatementInspector();
 
 	public SqlExceptionHelper getSqlExceptionHelper();
@@ -49,6 +126,26 @@ public interface JdbcSessionContext {
 	public static enum ConnectionAcquisitionMode {
 		IMMEDIATELY,
 		AS_NEEDED,
+		/**
+		 * Start acquiring the Connection in the background (using the {@link JdbcSessionContext#getAsyncExecutor() async Executor})
+		 * as soon as the JdbcSession is created, so that pool wait and Connection validation overlap with whatever
+		 * the caller does before its first statement.  The first request for the Connection then waits only for
+		 * whatever part of the acquisition is still outstanding.  If the JdbcSession is closed without ever using
+		 * the Connection, it is released as soon as it is obtained.  Behaves as {@link #AS_NEEDED} when no Executor
+		 * is available, and for JTA sessions (JTA transaction coordination or JTA Connection sharing) since those
+		 * need the Connection to be obtained on the thread associated with the transaction.
+		 */
+		PREFETCH,
 		DEFAULT
 	}
+
+	/**
+	 * Relative priority of Connection acquisitions.  Generally {@link #HIGH} for interactive work and {@link #LOW}
+	 * for background (batch) work.
+	 */
+	public static enum ConnectionAcquisitionPriority {
+		HIGH,
+		NORMAL,
+		LOW
+	}
 }
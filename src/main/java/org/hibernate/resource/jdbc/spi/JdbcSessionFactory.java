@@ -24,25 +24,107 @@
 package org.hibernate.resource.jdbc.spi;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.hibernate.resource.jdbc.JdbcSession;
 import org.hibernate.resource.jdbc.internal.JdbcSessionImpl;
+import org.hibernate.resource.jdbc.internal.JdbcSessionPool;
 import org.hibernate.resource.jdbc.internal.LogicalConnectionManagedImpl;
 import org.hibernate.resource.jdbc.internal.LogicalConnectionProvidedImpl;
+import org.hibernate.resource.jdbc.internal.StatementPreparationSupport;
+import org.hibernate.resource.transaction.TransactionCoordinatorJtaBuilder;
+
+import org.jboss.logging.Logger;
 
 /**
  * @author Steve Ebersole
  */
 public class JdbcSessionFactory {
+	private static final Logger log = Logger.getLogger( JdbcSessionFactory.class );
+
+	/**
+	 * The number of seconds to allow for validating each Connection during {@link #warmUp}
+	 */
+	public static final int WARM_UP_VALIDATION_TIMEOUT = 5;
+
 	/**
 	 * Singleton access
 	 */
 	public static final JdbcSessionFactory INSTANCE = new JdbcSessionFactory();
 
+	private final JdbcSessionPool pool;
+
+	private final Set<String> warmUpStatements = new CopyOnWriteArraySet<String>();
+	private final Set<SqlHandle> warmUpSqlHandles = new CopyOnWriteArraySet<SqlHandle>();
+	// keyed by the owners' (unresolved) JdbcConnectionAccess, weakly so that discarded ones are not retained
+	private final Set<JdbcConnectionAccess> warmedUpConnectionAccesses = Collections.synchronizedSet(
+			Collections.newSetFromMap( new WeakHashMap<JdbcConnectionAccess, Boolean>() )
+	);
+
+	private final ConcurrentHashMap<SqlHandleKey,SqlHandle> sqlHandles = new ConcurrentHashMap<SqlHandleKey, SqlHandle>();
+
+	/**
+	 * Constructs a JdbcSessionFactory which creates a new session for each call to {@link #create(JdbcSessionOwner)}
+	 */
+	public JdbcSessionFactory() {
+		this.pool = null;
+	}
+
+	/**
+	 * Constructs a JdbcSessionFactory which recycles closed sessions (and their LogicalConnection, ResourceRegistry
+	 * and TransactionCoordinator) through a per-thread pool.  Intended for short-lived sessions; note that callers
+	 * must not use a JdbcSession after closing it in this mode.
+	 *
+	 * @param maxPooledSessionsPerThread The maximum number of closed sessions kept for re-use per thread
+	 */
+	public JdbcSessionFactory(int maxPooledSessionsPerThread) {
+		this.pool = new JdbcSessionPool( maxPooledSessionsPerThread );
+	}
+
 	public JdbcSession create(JdbcSessionOwner owner) {
+		final JdbcConnectionAccess jdbcConnectionAccess = resolveJdbcConnectionAccess( owner );
+
+		if ( pool != null ) {
+			JdbcSessionImpl jdbcSession = pool.acquire(
+					owner.getJdbcSessionContext(),
+					jdbcConnectionAccess,
+					owner.getTransactionCoordinatorBuilder()
+			);
+			if ( jdbcSession == null ) {
+				jdbcSession = buildJdbcSession( owner, jdbcConnectionAccess );
+				jdbcSession.setPool( pool );
+			}
+			return jdbcSession;
+		}
+
+		return buildJdbcSession( owner, jdbcConnectionAccess );
+	}
+
+	private static JdbcConnectionAccess resolveJdbcConnectionAccess(JdbcSessionOwner owner) {
+		final JdbcConnectionAccess jdbcConnectionAccess = owner.getJdbcConnectionAccess();
+		if ( jdbcConnectionAccess instanceof SessionAwareJdbcConnectionAccess ) {
+			return ( (SessionAwareJdbcConnectionAccess) jdbcConnectionAccess ).resolveForSession(
+					owner.getJdbcSessionContext()
+			);
+		}
+		return jdbcConnectionAccess;
+	}
+
+	private JdbcSessionImpl buildJdbcSession(JdbcSessionOwner owner, JdbcConnectionAccess jdbcConnectionAccess) {
+		// JTA enlists the Connection with the transaction of the obtaining thread, so never obtain it on another
 		final LogicalConnectionManagedImpl logicalConnection = new LogicalConnectionManagedImpl(
-				owner.getJdbcConnectionAccess(),
-				owner.getJdbcSessionContext()
+				jdbcConnectionAccess,
+				owner.getJdbcSessionContext(),
+				!( owner.getTransactionCoordinatorBuilder() instanceof TransactionCoordinatorJtaBuilder )
 		);
 		return new JdbcSessionImpl(
 				owner.getJdbcSessionContext(),
@@ -59,4 +141,212 @@ public class JdbcSessionFactory {
 				owner.getTransactionCoordinatorBuilder()
 		);
 	}
+
+	/**
+	 * Register SQL to be executed with forward-only, read-only result sets.
+	 *
+	 * @see #registerSql(JdbcSessionContext, String, int, int)
+	 */
+	public SqlHandle registerSql(JdbcSessionContext context, String sql) {
+		return registerSql( context, sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY );
+	}
+
+	/**
+	 * Register SQL up front (generally at startup), obtaining an immutable handle for Operations to use in place of
+	 * the SQL String.  The SQL is passed through the context's {@link StatementInspector} once, here; sessions using
+	 * a different StatementInspector still get their own inspection, see {@link SqlHandle#resolveSql}.
+	 *
+	 * @param context The context whose StatementInspector to apply
+	 * @param sql The SQL
+	 * @param resultSetType The result set type, see {@link ResultSet#TYPE_FORWARD_ONLY} etc
+	 * @param resultSetConcurrency The result set concurrency, see {@link ResultSet#CONCUR_READ_ONLY} etc
+	 *
+	 * @return The handle; the same handle as before if this same SQL was already registered with the same
+	 * characteristics and StatementInspector
+	 */
+	public SqlHandle registerSql(JdbcSessionContext context, String sql, int resultSetType, int resultSetConcurrency) {
+		final StatementInspector statementInspector = context.getStatementInspector();
+		final SqlHandleKey key = new SqlHandleKey( sql, resultSetType, resultSetConcurrency, statementInspector );
+		final SqlHandle existing = sqlHandles.get( key );
+		if ( existing != null ) {
+			return existing;
+		}
+
+		final String inspected = statementInspector == null ? null : statementInspector.inspect( sql );
+		final SqlHandle handle = new SqlHandle(
+				sql,
+				inspected == null ? sql : inspected,
+				resultSetType,
+				resultSetConcurrency,
+				statementInspector
+		);
+		final SqlHandle raced = sqlHandles.putIfAbsent( key, handle );
+		return raced == null ? handle : raced;
+	}
+
+	/**
+	 * Register SQL which should be prepared on each Connection during {@link #warmUp}; generally the "hot" SQL of the
+	 * application, so that any statement caching (in the pool or the driver) is already filled by the time the
+	 * first real requests arrive.
+	 *
+	 * @param sql The SQL, before {@link StatementInspector} rewriting
+	 */
+	public void registerWarmUpStatement(String sql) {
+		warmUpStatements.add( sql );
+	}
+
+	/**
+	 * Register a SqlHandle whose SQL should be prepared, with the handle's result set characteristics, on each
+	 * Connection during {@link #warmUp}.
+	 *
+	 * @param sqlHandle The handle
+	 *
+	 * @see #registerWarmUpStatement(String)
+	 */
+	public void registerWarmUpStatement(SqlHandle sqlHandle) {
+		warmUpSqlHandles.add( sqlHandle );
+	}
+
+	/**
+	 * Warm up the Connection source of the given owner ahead of real load: the given number of Connections are
+	 * opened (and held at the same time, so that a pool really does grow to that size), validated, and all
+	 * {@link #registerWarmUpStatement registered SQL} is prepared on each of them.  The SQL is passed through the
+	 * owner's {@link StatementInspector} first, so that the statements prepared are the ones later used.
+	 * <p/>
+	 * Once this completes successfully {@link #isWarmedUp} reports {@code true} for the owner's JdbcConnectionAccess.
+	 *
+	 * @param owner The owner whose JdbcSessionContext and JdbcConnectionAccess to warm up
+	 * @param connectionCount The number of Connections to open
+	 *
+	 * @throws org.hibernate.JDBCException If a Connection could not be obtained or validated, or the SQL could
+	 * not be prepared.
+	 */
+	public void warmUp(JdbcSessionOwner owner, int connectionCount) {
+		final JdbcSessionContext context = owner.getJdbcSessionContext();
+		final JdbcConnectionAccess jdbcConnectionAccess = resolveJdbcConnectionAccess( owner );
+		final List<SqlHandle> sqlHandles = resolveWarmUpSqlHandles( context );
+		final List<String> statements = resolveWarmUpStatements( sqlHandles, context.getStatementInspector() );
+
+		log.debugf(
+				"Warming up %s JDBC Connections with %s statements",
+				connectionCount,
+				statements.size()
+		);
+
+		final List<Connection> connections = new ArrayList<Connection>( connectionCount );
+		try {
+			for ( int i = 0; i < connectionCount; i++ ) {
+				final Connection connection = jdbcConnectionAccess.obtainConnection();
+				connections.add( connection );
+				warmUpConnection( connection, sqlHandles, statements );
+			}
+		}
+		catch (SQLException e) {
+			throw context.getSqlExceptionHelper().convert( e, "Unable to warm up JDBC Connections" );
+		}
+		finally {
+			for ( Connection connection : connections ) {
+				try {
+					jdbcConnectionAccess.releaseConnection( connection );
+				}
+				catch (SQLException e) {
+					log.debug( "Unable to release JDBC Connection after warm-up", e );
+				}
+			}
+		}
+
+		warmedUpConnectionAccesses.add( owner.getJdbcConnectionAccess() );
+	}
+
+	/**
+	 * Has {@link #warmUp} completed successfully for an owner with the given JdbcConnectionAccess?  Intended as a
+	 * readiness check.
+	 *
+	 * @param jdbcConnectionAccess The JdbcConnectionAccess, as returned by {@link JdbcSessionOwner#getJdbcConnectionAccess()}
+	 *
+	 * @return {@code true} if warmed up
+	 */
+	public boolean isWarmedUp(JdbcConnectionAccess jdbcConnectionAccess) {
+		return warmedUpConnectionAccesses.contains( jdbcConnectionAccess );
+	}
+
+	private List<SqlHandle> resolveWarmUpSqlHandles(JdbcSessionContext context) {
+		final List<SqlHandle> sqlHandles = new ArrayList<SqlHandle>( warmUpSqlHandles );
+		for ( String sql : warmUpStatements ) {
+			final SqlHandle sqlHandle = registerSql( context, sql );
+			if ( !sqlHandles.contains( sqlHandle ) ) {
+				sqlHandles.add( sqlHandle );
+			}
+		}
+		return sqlHandles;
+	}
+
+	private static List<String> resolveWarmUpStatements(List<SqlHandle> sqlHandles, StatementInspector statementInspector) {
+		final List<String> statements = new ArrayList<String>( sqlHandles.size() );
+		for ( SqlHandle sqlHandle : sqlHandles ) {
+			statements.add( sqlHandle.resolveSql( statementInspector ) );
+		}
+		return statements;
+	}
+
+	private static class SqlHandleKey {
+		private final String sql;
+		private final int resultSetType;
+		private final int resultSetConcurrency;
+		// compared by identity
+		private final StatementInspector statementInspector;
+
+		private SqlHandleKey(
+				String sql,
+				int resultSetType,
+				int resultSetConcurrency,
+				StatementInspector statementInspector) {
+			this.sql = sql;
+			this.resultSetType = resultSetType;
+			this.resultSetConcurrency = resultSetConcurrency;
+			this.statementInspector = statementInspector;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if ( this == o ) {
+				return true;
+			}
+			if ( !( o instanceof SqlHandleKey ) ) {
+				return false;
+			}
+			final SqlHandleKey that = (SqlHandleKey) o;
+			return resultSetType == that.resultSetType
+					&& resultSetConcurrency == that.resultSetConcurrency
+					&& statementInspector == that.statementInspector
+					&& sql.equals( that.sql );
+		}
+
+		@Override
+		public int hashCode() {
+			int result = sql.hashCode();
+			result = 31 * result + resultSetType;
+			result = 31 * result + resultSetConcurrency;
+			result = 31 * result + System.identityHashCode( statementInspector );
+			return result;
+		}
+	}
+
+	private static void warmUpConnection(
+			Connection connection,
+			List<SqlHandle> sqlHandles,
+			List<String> statements) throws SQLException {
+		if ( !connection.isValid( WARM_UP_VALIDATION_TIMEOUT ) ) {
+			throw new SQLException( "JDBC Connection failed validation during warm-up", "08003" );
+		}
+
+		for ( int i = 0; i < sqlHandles.size(); i++ ) {
+			final PreparedStatement statement = StatementPreparationSupport.prepareStatement(
+					connection,
+					sqlHandles.get( i ),
+					statements.get( i )
+			);
+			statement.close();
+		}
+	}
 }
@@ -0,0 +1,217 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.spi;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.hibernate.HibernateException;
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.KeysetPaginationSpec;
+import org.hibernate.resource.jdbc.Operation;
+import org.hibernate.resource.jdbc.ResourceRegistry;
+import org.hibernate.resource.jdbc.RowConsumer;
+import org.hibernate.resource.jdbc.internal.StatementPreparationSupport;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Reads a (potentially very large) keyed table in chunks using keyset pagination, rather than through a single
+ * long-running cursor.  Each chunk is read in its own short-lived JdbcSession, so the Connection goes back to the
+ * pool (and any snapshot the database keeps for the read ends) between chunks; memory use is bounded by the chunk
+ * size.
+ * <p/>
+ * While the rows of one chunk are being consumed (on the thread calling {@link #read}) the next chunk is read
+ * ahead on the Executor, so at most one Connection is in use at a time and the consumer rarely waits on the
+ * database.
+ *
+ * @author Steve Ebersole
+ */
+public class KeysetPaginatedReader {
+	private static final Logger log = Logger.getLogger( KeysetPaginatedReader.class );
+
+	private final JdbcSessionFactory jdbcSessionFactory;
+	private final Executor executor;
+	private final int chunkSize;
+
+	public KeysetPaginatedReader(JdbcSessionFactory jdbcSessionFactory, Executor executor, int chunkSize) {
+		if ( chunkSize < 1 ) {
+			throw new IllegalArgumentException( "chunkSize must be at least 1" );
+		}
+		this.jdbcSessionFactory = jdbcSessionFactory;
+		this.executor = executor;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Read all rows after the given key.
+	 *
+	 * @param owner The owner for the per-chunk JdbcSessions
+	 * @param spec The read specification
+	 * @param afterKey The key to start reading after (exclusive)
+	 * @param consumer The consumer of the rows
+	 * @param <T> The row type
+	 *
+	 * @return The number of rows consumed
+	 */
+	public <T> long read(
+			JdbcSessionOwner owner,
+			KeysetPaginationSpec<T> spec,
+			long afterKey,
+			RowConsumer<T> consumer) {
+		long count = 0;
+		FutureTask<List<T>> pending = readAhead( owner, spec, afterKey );
+		try {
+			while ( pending != null ) {
+				final List<T> chunk = await( pending );
+				pending = null;
+				if ( chunk.isEmpty() ) {
+					break;
+				}
+
+				// a short chunk is the last one
+				if ( chunk.size() == chunkSize ) {
+					pending = readAhead( owner, spec, spec.getKey( chunk.get( chunk.size() - 1 ) ) );
+				}
+
+				for ( T row : chunk ) {
+					consumer.consume( row );
+					count++;
+				}
+			}
+			return count;
+		}
+		finally {
+			if ( pending != null ) {
+				// a read ahead still running simply completes; its chunk is discarded
+				pending.cancel( false );
+			}
+		}
+	}
+
+	private <T> FutureTask<List<T>> readAhead(
+			final JdbcSessionOwner owner,
+			final KeysetPaginationSpec<T> spec,
+			final long afterKey) {
+		final FutureTask<List<T>> task = new FutureTask<List<T>>(
+				new Callable<List<T>>() {
+					@Override
+					public List<T> call() {
+						return readChunk( owner, spec, afterKey );
+					}
+				}
+		);
+		try {
+			executor.execute( task );
+		}
+		catch (RejectedExecutionException e) {
+			log.debugf( "Read ahead of chunk after key %s rejected by Executor; reading on calling thread", afterKey );
+			task.run();
+		}
+		return task;
+	}
+
+	private <T> List<T> await(FutureTask<List<T>> pending) {
+		try {
+			return pending.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new HibernateException( "Interrupted waiting for chunk read", e );
+		}
+		catch (ExecutionException e) {
+			if ( e.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new HibernateException( "Unexpected error reading chunk", e.getCause() );
+		}
+	}
+
+	private <T> List<T> readChunk(
+			final JdbcSessionOwner owner,
+			final KeysetPaginationSpec<T> spec,
+			final long afterKey) {
+		log.tracef( "Reading chunk after key %s", afterKey );
+
+		// closing the session releases the Connection, regardless of the configured release mode
+		final JdbcSession jdbcSession = jdbcSessionFactory.create( owner );
+		try {
+			return jdbcSession.accept(
+					new Operation<List<T>>() {
+						@Override
+						public List<T> perform(JdbcSession jdbcSession) throws SQLException {
+							return readChunk(
+									(LogicalConnectionImplementor) jdbcSession.getLogicalConnection(),
+									owner.getJdbcSessionContext().getStatementInspector(),
+									spec,
+									afterKey
+							);
+						}
+					}
+			);
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	private <T> List<T> readChunk(
+			LogicalConnectionImplementor logicalConnection,
+			StatementInspector statementInspector,
+			KeysetPaginationSpec<T> spec,
+			long afterKey) throws SQLException {
+		final ResourceRegistry resourceRegistry = logicalConnection.getResourceRegistry();
+		final PreparedStatement statement = StatementPreparationSupport.prepareStatement(
+				logicalConnection.getPhysicalConnection(),
+				null,
+				StatementPreparationSupport.inspect( statementInspector, spec.getChunkSql() )
+		);
+		resourceRegistry.register( statement, true );
+		try {
+			statement.setMaxRows( chunkSize );
+			statement.setFetchSize( chunkSize );
+			statement.setLong( 1, afterKey );
+
+			final ResultSet resultSet = statement.executeQuery();
+			resourceRegistry.register( resultSet, statement );
+			final List<T> chunk = new ArrayList<T>( chunkSize );
+			while ( resultSet.next() ) {
+				chunk.add( spec.getRowExtractor().extractRow( resultSet ) );
+			}
+			return chunk;
+		}
+		finally {
+			resourceRegistry.release( statement );
+			logicalConnection.afterStatement();
+		}
+	}
+}
@@ -40,12 +40,32 @@ public interface LogicalConnectionImplementor extends LogicalConnection {
 	 */
 	public void afterStatement();
 
+	/**
+	 * Start a statement batch window.  Until the matching {@link #endStatementBatch()} the Connection is held and
+	 * {@link #afterStatement()} notifications are coalesced into a single after-statement release decision made when
+	 * the window ends.  Windows may be nested; only the outermost one counts.
+	 */
+	public void beginStatementBatch();
+
+	/**
+	 * End a statement batch window started by {@link #beginStatementBatch()}.
+	 */
+	public void endStatementBatch();
+
 	/**
 	 * Notification indicating a transaction has completed to trigger
 	 * {@link org.hibernate.ConnectionReleaseMode#AFTER_TRANSACTION} releasing if needed
 	 */
 	public void afterTransaction();
 
+	/**
+	 * Notification indicating that the outermost {@link org.hibernate.resource.jdbc.JdbcSession#accept} call has
+	 * finished, outside of any joined transaction, to trigger operation-scoped releasing if needed.
+	 *
+	 * @see JdbcSessionContext#isOperationScopedConnectionReleaseEnabled()
+	 */
+	public void afterOperation();
+
 	/**
 	 * Manually disconnect the underlying JDBC Connection.  The assumption here
 	 * is that the manager will be reconnected at a later point in time.
@@ -0,0 +1,254 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.spi;
+
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.HibernateException;
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.Operation;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Runs independent (generally read) operations concurrently, each in its own short-lived JdbcSession (and so on
+ * its own Connection), gathering the results under a single deadline.  Total latency is then that of the slowest
+ * operation rather than the sum of all of them.
+ * <p/>
+ * If the deadline passes, or any operation fails, the operations still outstanding are abandoned: those not yet
+ * started are skipped and those in progress have their current query cancelled via
+ * {@link org.hibernate.resource.jdbc.ResourceRegistry#cancelLastQuery()}.  Abandoned operations still clean up
+ * (close their JdbcSession) on their own thread.
+ * <p/>
+ * The operations must be independent of each other and must not rely on sharing a transaction.
+ *
+ * @author Steve Ebersole
+ */
+public class ParallelOperationExecutor {
+	private static final Logger log = Logger.getLogger( ParallelOperationExecutor.class );
+
+	private final JdbcSessionFactory jdbcSessionFactory;
+	private final Executor executor;
+
+	/**
+	 * Constructs a ParallelOperationExecutor
+	 *
+	 * @param jdbcSessionFactory The factory for the per-operation JdbcSessions
+	 * @param executor The Executor to run the operations on.  Its parallelism bounds the number of operations (and
+	 * Connections) in flight at once; operations it rejects are run by the calling thread, see
+	 * {@link #executeAll}.
+	 */
+	public ParallelOperationExecutor(JdbcSessionFactory jdbcSessionFactory, Executor executor) {
+		this.jdbcSessionFactory = jdbcSessionFactory;
+		this.executor = executor;
+	}
+
+	/**
+	 * Run the operations concurrently and gather their results.
+	 * <p/>
+	 * Operations rejected by the Executor are run by the calling thread as they are submitted, before it starts
+	 * waiting; the deadline cannot interrupt such an operation, it is only checked before starting each one (once
+	 * the deadline has passed, rejected operations are skipped).
+	 *
+	 * @param owner The owner for the per-operation JdbcSessions
+	 * @param operations The operations
+	 * @param timeout The time allowed for all of the operations together
+	 * @param timeUnit The unit of {@code timeout}
+	 *
+	 * @return The operation results, in the same order as the operations
+	 *
+	 * @throws org.hibernate.JDBCException (converted from a {@link SQLTimeoutException}) if the deadline passed;
+	 * otherwise the failure of the first operation to fail
+	 */
+	public List<Object> executeAll(
+			JdbcSessionOwner owner,
+			List<? extends Operation<?>> operations,
+			long timeout,
+			TimeUnit timeUnit) {
+		final long deadline = System.nanoTime() + timeUnit.toNanos( timeout );
+		final Gather gather = new Gather( operations.size() );
+
+		final List<OperationTask> tasks = new ArrayList<OperationTask>( operations.size() );
+		for ( Operation<?> operation : operations ) {
+			tasks.add( new OperationTask( owner, operation, gather ) );
+		}
+		for ( OperationTask task : tasks ) {
+			try {
+				executor.execute( task );
+			}
+			catch (RejectedExecutionException e) {
+				if ( System.nanoTime() - deadline < 0 ) {
+					task.run();
+				}
+			}
+		}
+
+		final RuntimeException failure;
+		try {
+			failure = gather.await( deadline );
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancelAll( tasks );
+			throw new HibernateException( "Interrupted waiting for parallel operations", e );
+		}
+
+		if ( failure != null ) {
+			cancelAll( tasks );
+			throw failure;
+		}
+		if ( !gather.isComplete() ) {
+			cancelAll( tasks );
+			throw owner.getJdbcSessionContext().getSqlExceptionHelper().convert(
+					new SQLTimeoutException( "Parallel operations did not complete within " + timeout + " " + timeUnit ),
+					"Parallel operations timed out"
+			);
+		}
+
+		final List<Object> results = new ArrayList<Object>( tasks.size() );
+		for ( OperationTask task : tasks ) {
+			results.add( task.result );
+		}
+		return results;
+	}
+
+	private static void cancelAll(List<OperationTask> tasks) {
+		for ( OperationTask task : tasks ) {
+			task.cancel();
+		}
+	}
+
+	/**
+	 * Tracks completion of the tasks, and the first failure
+	 */
+	private static class Gather {
+		private int outstanding;
+		private RuntimeException failure;
+
+		private Gather(int outstanding) {
+			this.outstanding = outstanding;
+		}
+
+		private synchronized void completed(RuntimeException taskFailure) {
+			outstanding--;
+			if ( taskFailure != null && failure == null ) {
+				failure = taskFailure;
+			}
+			notifyAll();
+		}
+
+		private synchronized RuntimeException await(long deadline) throws InterruptedException {
+			long remaining = deadline - System.nanoTime();
+			while ( outstanding > 0 && failure == null && remaining > 0 ) {
+				TimeUnit.NANOSECONDS.timedWait( this, remaining );
+				remaining = deadline - System.nanoTime();
+			}
+			return failure;
+		}
+
+		private synchronized boolean isComplete() {
+			return outstanding == 0;
+		}
+	}
+
+	private class OperationTask implements Runnable {
+		private static final int PENDING = 0;
+		private static final int RUNNING = 1;
+		private static final int DONE = 2;
+		private static final int CANCELLED = 3;
+
+		private final JdbcSessionOwner owner;
+		private final Operation<?> operation;
+		private final Gather gather;
+		private final AtomicInteger state = new AtomicInteger( PENDING );
+
+		// guarded by "this", so that cancel never reaches a JdbcSession once it is being closed (pooled sessions
+		// may be handed out again right after)
+		private JdbcSession jdbcSession;
+		private volatile Object result;
+
+		private OperationTask(JdbcSessionOwner owner, Operation<?> operation, Gather gather) {
+			this.owner = owner;
+			this.operation = operation;
+			this.gather = gather;
+		}
+
+		@Override
+		public void run() {
+			if ( !state.compareAndSet( PENDING, RUNNING ) ) {
+				return;
+			}
+
+			RuntimeException failure = null;
+			try {
+				final JdbcSession session = jdbcSessionFactory.create( owner );
+				synchronized ( this ) {
+					jdbcSession = session;
+				}
+				try {
+					result = session.accept( operation );
+				}
+				finally {
+					synchronized ( this ) {
+						jdbcSession = null;
+					}
+					session.close();
+				}
+			}
+			catch (RuntimeException e) {
+				failure = e;
+			}
+			finally {
+				state.set( DONE );
+				gather.completed( failure );
+			}
+		}
+
+		private void cancel() {
+			if ( state.compareAndSet( PENDING, CANCELLED ) || state.get() != RUNNING ) {
+				return;
+			}
+
+			synchronized ( this ) {
+				if ( jdbcSession == null ) {
+					// not started yet, or already finished
+					return;
+				}
+				try {
+					log.debug( "Cancelling query of outstanding parallel operation" );
+					jdbcSession.getLogicalConnection().getResourceRegistry().cancelLastQuery();
+				}
+				catch (RuntimeException e) {
+					log.debug( "Unable to cancel query of outstanding parallel operation", e );
+				}
+			}
+		}
+	}
+}
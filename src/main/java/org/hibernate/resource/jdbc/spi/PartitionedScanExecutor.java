@@ -0,0 +1,391 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.spi;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hibernate.HibernateException;
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.Operation;
+import org.hibernate.resource.jdbc.PartitionedScanSpec;
+import org.hibernate.resource.jdbc.ResourceRegistry;
+import org.hibernate.resource.jdbc.RowConsumer;
+import org.hibernate.resource.jdbc.internal.StatementPreparationSupport;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Scans a keyed table in parallel by splitting the key space into ranges (partitions), each scanned in its own
+ * short-lived JdbcSession (and so on its own Connection) on an Executor.  Rows are streamed to a single
+ * {@link RowConsumer}, called on the thread calling {@link #scan}, either in key order across the whole table or
+ * in whatever order they arrive.
+ * <p/>
+ * <ul>
+ *     <li>
+ *         At most {@code maxConcurrentPartitions} partitions are scanned at once; partitions are started in key
+ *         order.  The Executor should be able to run that many tasks at once.
+ *     </li>
+ *     <li>
+ *         Each partition buffers at most {@code bufferSize} rows ahead of the consumer, so memory use stays bounded
+ *         no matter the table size; scans simply wait for the consumer to catch up.
+ *     </li>
+ *     <li>
+ *         A partition whose scan fails is retried up to {@code maxRetriesPerPartition} times, resuming after the
+ *         last row already delivered; no rows are delivered twice.  Once a partition runs out of retries (or the
+ *         consumer fails), the whole scan is abandoned and the failure is thrown from {@link #scan}.
+ *     </li>
+ * </ul>
+ *
+ * @author Steve Ebersole
+ */
+public class PartitionedScanExecutor {
+	private static final Logger log = Logger.getLogger( PartitionedScanExecutor.class );
+
+	private static final Object END_OF_PARTITION = new Object();
+	private static final long POLL_MILLIS = 100;
+
+	private final JdbcSessionFactory jdbcSessionFactory;
+	private final Executor executor;
+	private final int maxConcurrentPartitions;
+	private final int maxRetriesPerPartition;
+	private final int bufferSize;
+
+	public PartitionedScanExecutor(
+			JdbcSessionFactory jdbcSessionFactory,
+			Executor executor,
+			int maxConcurrentPartitions,
+			int maxRetriesPerPartition,
+			int bufferSize) {
+		if ( maxConcurrentPartitions < 1 ) {
+			throw new IllegalArgumentException( "maxConcurrentPartitions must be at least 1" );
+		}
+		this.jdbcSessionFactory = jdbcSessionFactory;
+		this.executor = executor;
+		this.maxConcurrentPartitions = maxConcurrentPartitions;
+		this.maxRetriesPerPartition = maxRetriesPerPartition;
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Scan the given key range.
+	 *
+	 * @param owner The owner for the per-partition JdbcSessions
+	 * @param spec The scan specification; its range SQL is {@link JdbcSessionFactory#registerSql registered} with
+	 * the JdbcSessionFactory
+	 * @param minKey The lowest key to scan (inclusive)
+	 * @param maxKey The highest key to scan (inclusive)
+	 * @param partitionCount The number of ranges to split the key space into
+	 * @param ordered Should the rows be consumed in key order?  If not, rows are consumed as they arrive, which
+	 * keeps all partitions busy.
+	 * @param consumer The consumer of the rows
+	 * @param <T> The row type
+	 *
+	 * @return The number of rows consumed
+	 *
+	 * @throws IllegalArgumentException If the key range holds more than {@link Long#MAX_VALUE} keys, or minKey is
+	 * {@link Long#MIN_VALUE}
+	 */
+	public <T> long scan(
+			JdbcSessionOwner owner,
+			PartitionedScanSpec<T> spec,
+			long minKey,
+			long maxKey,
+			int partitionCount,
+			boolean ordered,
+			RowConsumer<T> consumer) {
+		if ( partitionCount < 1 ) {
+			throw new IllegalArgumentException( "partitionCount must be at least 1" );
+		}
+		if ( maxKey < minKey ) {
+			return 0;
+		}
+		if ( minKey == Long.MIN_VALUE || maxKey - ( minKey - 1 ) <= 0 ) {
+			// the exclusive lower bound (minKey - 1), or the number of keys, would overflow
+			throw new IllegalArgumentException( "Key range [" + minKey + ", " + maxKey + "] is too wide to partition" );
+		}
+		return new Scan<T>( owner, spec, minKey, maxKey, partitionCount, ordered ).execute( consumer );
+	}
+
+	private class Scan<T> {
+		private final JdbcSessionOwner owner;
+		private final PartitionedScanSpec<T> spec;
+		private final SqlHandle rangeSqlHandle;
+		private final boolean ordered;
+
+		private final List<Partition> partitions;
+		private final BlockingQueue<Object> sharedQueue;
+
+		private final AtomicInteger nextPartition = new AtomicInteger();
+		private final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+		private volatile boolean abandoned;
+
+		private Scan(
+				JdbcSessionOwner owner,
+				PartitionedScanSpec<T> spec,
+				long minKey,
+				long maxKey,
+				int partitionCount,
+				boolean ordered) {
+			this.owner = owner;
+			this.spec = spec;
+			// inspected once for all partitions, and a cheap key for the FetchSizeTuner
+			this.rangeSqlHandle = jdbcSessionFactory.registerSql( owner.getJdbcSessionContext(), spec.getRangeSql() );
+			this.ordered = ordered;
+			this.sharedQueue = ordered ? null : new ArrayBlockingQueue<Object>( bufferSize );
+
+			// lower bounds are exclusive, so (lower, upper] holds upper - lower keys; scan() checked that the
+			// number of keys in the whole range (maxKey - (minKey - 1)) fits in a long
+			final long keyCount = maxKey - ( minKey - 1 );
+			final long step = keyCount / partitionCount + ( keyCount % partitionCount == 0 ? 0 : 1 );
+			this.partitions = new ArrayList<Partition>( partitionCount );
+			long lower = minKey - 1;
+			while ( partitions.size() < partitionCount && lower < maxKey ) {
+				final boolean last = partitions.size() == partitionCount - 1 || maxKey - lower <= step;
+				final long upper = last ? maxKey : lower + step;
+				partitions.add( new Partition( partitions.size(), lower, upper ) );
+				lower = upper;
+			}
+		}
+
+		private long execute(RowConsumer<T> consumer) {
+			for ( int i = 0; i < maxConcurrentPartitions; i++ ) {
+				startNextPartition();
+			}
+
+			try {
+				if ( ordered ) {
+					long count = 0;
+					for ( Partition partition : partitions ) {
+						count += drain( partition.queue, 1, consumer );
+					}
+					return count;
+				}
+				else {
+					return drain( sharedQueue, partitions.size(), consumer );
+				}
+			}
+			catch (RuntimeException e) {
+				abandoned = true;
+				throw e;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private long drain(BlockingQueue<Object> queue, int expectedEnds, RowConsumer<T> consumer) {
+			long count = 0;
+			int ends = 0;
+			while ( ends < expectedEnds ) {
+				final Object next;
+				try {
+					next = queue.poll( POLL_MILLIS, TimeUnit.MILLISECONDS );
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new HibernateException( "Interrupted waiting for partitioned scan rows", e );
+				}
+
+				if ( next == null ) {
+					final RuntimeException partitionFailure = failure.get();
+					if ( partitionFailure != null ) {
+						throw partitionFailure;
+					}
+				}
+				else if ( next == END_OF_PARTITION ) {
+					ends++;
+				}
+				else {
+					consumer.consume( (T) next );
+					count++;
+				}
+			}
+			return count;
+		}
+
+		private void startNextPartition() {
+			final int index = nextPartition.getAndIncrement();
+			if ( index >= partitions.size() || abandoned ) {
+				return;
+			}
+
+			final Partition partition = partitions.get( index );
+			try {
+				executor.execute( partition );
+			}
+			catch (RejectedExecutionException e) {
+				failure.compareAndSet( null, new HibernateException( "Partitioned scan rejected by Executor", e ) );
+			}
+		}
+
+		private void put(BlockingQueue<Object> queue, Object element) {
+			try {
+				while ( !queue.offer( element, POLL_MILLIS, TimeUnit.MILLISECONDS ) ) {
+					if ( abandoned ) {
+						throw new ScanAbandonedException();
+					}
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ScanAbandonedException();
+			}
+		}
+
+		private class Partition implements Runnable {
+			private final int index;
+			private final long upperKey;
+			private final BlockingQueue<Object> queue;
+
+			// the key of the last row delivered; where to resume from on retry
+			private long lastKey;
+
+			private Partition(int index, long lowerKey, long upperKey) {
+				this.index = index;
+				this.lastKey = lowerKey;
+				this.upperKey = upperKey;
+				this.queue = ordered ? new ArrayBlockingQueue<Object>( bufferSize ) : sharedQueue;
+			}
+
+			@Override
+			public void run() {
+				try {
+					int attempt = 0;
+					while ( true ) {
+						try {
+							scanRange();
+							break;
+						}
+						catch (ScanAbandonedException e) {
+							throw e;
+						}
+						catch (RuntimeException e) {
+							if ( abandoned || ++attempt > maxRetriesPerPartition ) {
+								throw e;
+							}
+							log.debugf(
+									e,
+									"Scan of partition %s failed; retrying (attempt %s) from key %s",
+									index,
+									attempt,
+									lastKey
+							);
+						}
+					}
+					put( queue, END_OF_PARTITION );
+				}
+				catch (ScanAbandonedException e) {
+					log.debugf( "Scan of partition %s abandoned", index );
+				}
+				catch (RuntimeException e) {
+					failure.compareAndSet( null, e );
+				}
+				finally {
+					startNextPartition();
+				}
+			}
+
+			private void scanRange() {
+				final JdbcSession jdbcSession = jdbcSessionFactory.create( owner );
+				try {
+					jdbcSession.accept(
+							new Operation<Void>() {
+								@Override
+								public Void perform(JdbcSession jdbcSession) throws SQLException {
+									scanRange( (LogicalConnectionImplementor) jdbcSession.getLogicalConnection() );
+									return null;
+								}
+							}
+					);
+				}
+				finally {
+					jdbcSession.close();
+				}
+			}
+
+			private void scanRange(LogicalConnectionImplementor logicalConnection) throws SQLException {
+				final ResourceRegistry resourceRegistry = logicalConnection.getResourceRegistry();
+				final JdbcSessionContext context = owner.getJdbcSessionContext();
+				final FetchSizeTuner fetchSizeTuner = context.getFetchSizeTuner();
+				final String sql = StatementPreparationSupport.resolveSql(
+						context.getStatementInspector(),
+						rangeSqlHandle,
+						spec.getRangeSql()
+				);
+				final PreparedStatement statement = StatementPreparationSupport.prepareStatement(
+						logicalConnection.getPhysicalConnection(),
+						rangeSqlHandle,
+						sql
+				);
+				resourceRegistry.register( statement, true );
+				try {
+					statement.setLong( 1, lastKey );
+					statement.setLong( 2, upperKey );
+					StatementPreparationSupport.applyFetchSize(
+							statement,
+							fetchSizeTuner,
+							rangeSqlHandle,
+							sql,
+							context.getFetchSize()
+					);
+
+					final ResultSet resultSet = statement.executeQuery();
+					resourceRegistry.register( resultSet, statement );
+					long rowCount = 0;
+					while ( resultSet.next() ) {
+						final T row = spec.getRowExtractor().extractRow( resultSet );
+						put( queue, row );
+						lastKey = spec.getKey( row );
+						rowCount++;
+					}
+					if ( fetchSizeTuner != null ) {
+						StatementPreparationSupport.recordResults(
+								fetchSizeTuner,
+								rangeSqlHandle,
+								sql,
+								resultSet,
+								rowCount
+						);
+					}
+				}
+				finally {
+					resourceRegistry.release( statement );
+					logicalConnection.afterStatement();
+				}
+			}
+		}
+	}
+
+	private static class ScanAbandonedException extends RuntimeException {
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.spi;
+
+/**
+ * A JdbcConnectionAccess which can tailor how Connections are obtained to the JdbcSession they are obtained for
+ * (according to its {@link JdbcSessionContext}).  {@link JdbcSessionFactory} resolves such access once per
+ * JdbcSession, and the JdbcSession then uses the resolved access for its entire lifecycle.
+ *
+ * @author Steve Ebersole
+ */
+public interface SessionAwareJdbcConnectionAccess extends JdbcConnectionAccess {
+	/**
+	 * Resolve the JdbcConnectionAccess to use for a JdbcSession with the given context.  Implementations should
+	 * return the same instance for equivalent contexts, as the resolved access is used to match recycled sessions.
+	 *
+	 * @param context The context of the JdbcSession
+	 *
+	 * @return The JdbcConnectionAccess to use
+	 */
+	public JdbcConnectionAccess resolveForSession(JdbcSessionContext context);
+}
@@ -0,0 +1,154 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.spi;
+
+/**
+ * An immutable handle to SQL {@link JdbcSessionFactory#registerSql registered} up front, generally at startup.
+ * Registration does the per-SQL work once: {@link StatementInspector} rewriting, hashing and counting parameters.
+ * The inspected SQL is only valid for sessions using the same StatementInspector; see {@link #resolveSql}.
+ * <p/>
+ * Handles use identity for {@link #equals} and {@link #hashCode}, so they are cheap keys for statement caches,
+ * statistics and the like no matter how long the SQL is; registering the same SQL (with the same characteristics
+ * and StatementInspector) with the same JdbcSessionFactory again returns the same handle.
+ *
+ * @author Steve Ebersole
+ */
+public final class SqlHandle {
+	private final String originalSql;
+	private final String sql;
+	private final int sqlHash;
+	private final int resultSetType;
+	private final int resultSetConcurrency;
+	private final int parameterCount;
+	private final StatementInspector statementInspector;
+
+	SqlHandle(
+			String originalSql,
+			String sql,
+			int resultSetType,
+			int resultSetConcurrency,
+			StatementInspector statementInspector) {
+		this.originalSql = originalSql;
+		this.sql = sql;
+		this.statementInspector = statementInspector;
+		this.sqlHash = sql.hashCode();
+		this.resultSetType = resultSetType;
+		this.resultSetConcurrency = resultSetConcurrency;
+		this.parameterCount = countParameters( sql );
+	}
+
+	/**
+	 * The SQL as registered, before inspection
+	 */
+	public String getOriginalSql() {
+		return originalSql;
+	}
+
+	/**
+	 * The SQL to execute, after inspection
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * The SQL to execute for a session using the given StatementInspector.  That is {@link #getSql()} when the
+	 * handle was registered with this same StatementInspector (and it is not an {@link UncacheableStatementInspector});
+	 * otherwise the {@link #getOriginalSql() original SQL} is inspected again.
+	 *
+	 * @param statementInspector The StatementInspector of the session; may be {@code null}
+	 *
+	 * @return The SQL to execute
+	 */
+	public String resolveSql(StatementInspector statementInspector) {
+		if ( statementInspector == this.statementInspector
+				&& !( statementInspector instanceof UncacheableStatementInspector ) ) {
+			return sql;
+		}
+		if ( statementInspector == null ) {
+			return originalSql;
+		}
+		final String inspected = statementInspector.inspect( originalSql );
+		return inspected == null ? originalSql : inspected;
+	}
+
+	/**
+	 * The (precomputed) hash of {@link #getSql()}; useful when SQL strings from different sources have to be
+	 * matched up.
+	 */
+	public int getSqlHash() {
+		return sqlHash;
+	}
+
+	public int getResultSetType() {
+		return resultSetType;
+	}
+
+	public int getResultSetConcurrency() {
+		return resultSetConcurrency;
+	}
+
+	/**
+	 * The number of JDBC parameter placeholders in the SQL
+	 */
+	public int getParameterCount() {
+		return parameterCount;
+	}
+
+	@Override
+	public String toString() {
+		return "SqlHandle(" + sql + ")";
+	}
+
+	/**
+	 * Count the JDBC parameter placeholders, ignoring any within quoted literals or identifiers and comments.
+	 */
+	static int countParameters(String sql) {
+		int count = 0;
+		final int length = sql.length();
+		int i = 0;
+		while ( i < length ) {
+			final char c = sql.charAt( i );
+			if ( c == '\'' || c == '"' ) {
+				final int end = sql.indexOf( c, i + 1 );
+				i = end < 0 ? length : end + 1;
+			}
+			else if ( c == '-' && i + 1 < length && sql.charAt( i + 1 ) == '-' ) {
+				final int end = sql.indexOf( '\n', i + 2 );
+				i = end < 0 ? length : end + 1;
+			}
+			else if ( c == '/' && i + 1 < length && sql.charAt( i + 1 ) == '*' ) {
+				final int end = sql.indexOf( "*/", i + 2 );
+				i = end < 0 ? length : end + 2;
+			}
+			else {
+				if ( c == '?' ) {
+					count++;
+				}
+				i++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.jdbc.spi;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Strategy for pointing Connections at the schema (or catalog) of the tenant a JdbcSession works on behalf of, for
+ * schema-per-tenant multi-tenancy.  The schema is applied as Connections are acquired : the tenant's schema, or the
+ * {@link #getDefaultSchema() default schema} for sessions without a tenant, so a Connection is never left in the
+ * schema of whoever used it before.
+ * <p/>
+ * Nothing is remembered about Connections between acquisitions (pools may hand out a new proxy for the same
+ * Connection, or reset its state on check-in); instead the schema is only applied when
+ * {@link #readCurrentSchema} does not report it as already current.
+ *
+ * @author Steve Ebersole
+ */
+public interface TenantSchemaSwitcher {
+	/**
+	 * Determine the schema to use for the given tenant.
+	 *
+	 * @param tenantIdentifier The tenant identifier (see {@link JdbcSessionContext#getTenantIdentifier()}); may
+	 * be {@code null}
+	 *
+	 * @return The schema, or {@code null} to use the {@link #getDefaultSchema() default schema}
+	 */
+	public String resolveSchema(String tenantIdentifier);
+
+	/**
+	 * The schema for sessions which have no tenant-specific schema.
+	 *
+	 * @return The schema; may not be {@code null}
+	 */
+	public String getDefaultSchema();
+
+	/**
+	 * Determine the schema the Connection currently points at, ideally without a database round trip; e.g. via
+	 * {@link Connection#getCatalog}, which drivers generally track client-side.
+	 *
+	 * @param connection The Connection
+	 *
+	 * @return The current schema, or {@code null} if it cannot be (cheaply) determined, in which case the schema is
+	 * always applied.
+	 *
+	 * @throws SQLException Indicates a problem determining the schema
+	 */
+	public String readCurrentSchema(Connection connection) throws SQLException;
+
+	/**
+	 * Point the Connection at the given schema; e.g. by executing {@code set schema} or calling
+	 * {@link Connection#setCatalog}.
+	 *
+	 * @param connection The Connection
+	 * @param schema The schema to apply
+	 *
+	 * @throws SQLException Indicates a problem applying the schema
+	 */
+	public void applySchema(Connection connection, String schema) throws SQLException;
+
+	/**
+	 * The schema to point Connections back at when they are released, if any.
+	 *
+	 * @return The schema, or {@code null} to leave the last tenant's schema in place (which is what allows the
+	 * same tenant to skip re-applying it the next time it gets the same Connection)
+	 */
+	public String getReleaseSchema();
+}
@@ -40,4 +40,20 @@ public interface SynchronizationRegistry extends Serializable {
 	 * @throws NullSynchronizationException if the synchronization is {@code null}
 	 */
 	void registerSynchronization(Synchronization synchronization);
+
+	/**
+	 * Register a {@link Synchronization} callback for this transaction whose after-completion handling is safe to
+	 * perform asynchronously, after the completion call itself has returned.  This is intended for callbacks the
+	 * caller does not need to see finished (cache invalidation, event publishing, etc).
+	 * <p/>
+	 * If an after-completion Executor has been configured, the {@link Synchronization#afterCompletion} call is
+	 * dispatched to it; if the Executor rejects the work (it is saturated, e.g.) or no Executor is configured the call
+	 * is made synchronously instead.  Either way each such Synchronization is notified of the transaction outcome
+	 * exactly once.  Note that {@link Synchronization#beforeCompletion} is always called synchronously.
+	 *
+	 * @param synchronization The synchronization callback to register.
+	 *
+	 * @throws NullSynchronizationException if the synchronization is {@code null}
+	 */
+	void registerAsyncSynchronization(Synchronization synchronization);
 }
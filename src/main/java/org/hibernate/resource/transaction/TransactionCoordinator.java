@@ -49,6 +49,25 @@ public interface TransactionCoordinator {
 	 */
 	public void pulse();
 
+	/**
+	 * Used by the owner of the JdbcSession to indicate that it is about to perform work (JDBC operations, etc) in
+	 * relation to the current transaction.  Must be paired with a call to {@link #afterOwnerWork()}.
+	 * <p/>
+	 * This allows completion of the transaction initiated from a different thread (JTA transaction timeouts handled
+	 * by a "reaper" thread, e.g.) to be coordinated with the owner.  {@link org.hibernate.resource.jdbc.JdbcSession#accept}
+	 * takes care of this; owners working directly with the LogicalConnection must make these calls themselves.
+	 *
+	 * @throws org.hibernate.HibernateException If the transaction was rolled back from a different thread since
+	 * the last owner work.
+	 */
+	public void beforeOwnerWork();
+
+	/**
+	 * Used by the owner of the JdbcSession to indicate that the work started with {@link #beforeOwnerWork()} has
+	 * finished.  Any completion handling deferred while the owner was working is performed here.
+	 */
+	public void afterOwnerWork();
+
 	/**
 	 * Get the delegate used by the local transaction driver to control the underlying transaction
 	 *
@@ -23,6 +23,9 @@
  */
 package org.hibernate.resource.transaction;
 
+import java.util.concurrent.Executor;
+import javax.transaction.TransactionSynchronizationRegistry;
+
 import org.hibernate.engine.transaction.jta.platform.spi.JtaPlatform;
 
 /**
@@ -74,4 +77,55 @@ public interface TransactionCoordinatorJtaBuilder extends TransactionCoordinator
 	 * @return {@code this}, for method chaining
 	 */
 	public TransactionCoordinatorJtaBuilder setPerformJtaThreadTracking(boolean performJtaThreadTracking);
+
+	/**
+	 * Specifies the Executor used to perform the after-completion callbacks of Synchronizations registered via
+	 * {@link SynchronizationRegistry#registerAsyncSynchronization}.  The default is none, meaning those callbacks are
+	 * performed synchronously along with all others.
+	 *
+	 * @param afterCompletionExecutor The Executor to use; should be bounded and reject work when saturated.
+	 *
+	 * @return {@code this}, for method chaining
+	 */
+	public TransactionCoordinatorJtaBuilder setAfterCompletionExecutor(Executor afterCompletionExecutor);
+
+	/**
+	 * Specifies how often {@link TransactionCoordinator#pulse()} should consult the JtaPlatform about whether the
+	 * current JTA transaction can be joined.  The default is {@link JoinCheckPolicy#ALWAYS}.
+	 *
+	 * @param joinCheckPolicy The policy to use
+	 *
+	 * @return {@code this}, for method chaining
+	 */
+	public TransactionCoordinatorJtaBuilder setJoinCheckPolicy(JoinCheckPolicy joinCheckPolicy);
+
+	/**
+	 * Specifies the TransactionSynchronizationRegistry used to identify the current JTA transaction for
+	 * {@link JoinCheckPolicy#PER_TRANSACTION}.  The default is none, in which case the TransactionManager is asked
+	 * for the current transaction instead.
+	 *
+	 * @param transactionSynchronizationRegistry The TransactionSynchronizationRegistry
+	 *
+	 * @return {@code this}, for method chaining
+	 */
+	public TransactionCoordinatorJtaBuilder setTransactionSynchronizationRegistry(
+			TransactionSynchronizationRegistry transactionSynchronizationRegistry);
+
+	/**
+	 * Policies for re-checking whether the current JTA transaction can be joined as part of a pulse.
+	 */
+	public static enum JoinCheckPolicy {
+		/**
+		 * Ask the JtaPlatform on every pulse until the transaction is joined.
+		 */
+		ALWAYS,
+		/**
+		 * Ask the JtaPlatform once per JTA transaction (or once while there is none).  Subsequent pulses within the
+		 * same transaction context only compare the current transaction key against the remembered one, using the
+		 * {@link #setTransactionSynchronizationRegistry TransactionSynchronizationRegistry} if there is one and
+		 * otherwise the TransactionManager.  A transaction begun later (e.g. by a container) has a different key, so
+		 * it is checked (and joined) as usual.
+		 */
+		PER_TRANSACTION
+	}
 }
@@ -23,6 +23,8 @@
  */
 package org.hibernate.resource.transaction;
 
+import java.util.concurrent.Executor;
+
 import org.hibernate.resource.transaction.backend.store.spi.DataStoreTransactionAccess;
 
 /**
@@ -48,4 +50,13 @@ public interface TransactionCoordinatorResourceLocalBuilder extends TransactionC
 	 * @param dataStoreTransactionAccess Access
 	 */
 	public void setResourceLocalTransactionAccess(DataStoreTransactionAccess dataStoreTransactionAccess);
+
+	/**
+	 * Specifies the Executor used to perform the after-completion callbacks of Synchronizations registered via
+	 * {@link SynchronizationRegistry#registerAsyncSynchronization}.  The default is none, meaning those callbacks are
+	 * performed synchronously along with all others.
+	 *
+	 * @param afterCompletionExecutor The Executor to use; should be bounded and reject work when saturated.
+	 */
+	public void setAfterCompletionExecutor(Executor afterCompletionExecutor);
 }
@@ -0,0 +1,176 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.resource.transaction.backend.jta.internal;
+
+import javax.transaction.TransactionManager;
+import javax.transaction.UserTransaction;
+
+import org.hibernate.engine.transaction.jta.platform.spi.JtaPlatform;
+
+import org.jboss.logging.Logger;
+
+import static org.hibernate.internal.CoreLogging.logger;
+
+/**
+ * Resolves, and then caches, the JtaTransactionAdapter to use for a given JtaPlatform.  Resolution follows the
+ * UserTransaction/TransactionManager preference, falling back to the other when the preferred one cannot be
+ * accessed.
+ * <p/>
+ * Instances are shared by all JtaTransactionCoordinatorImpl built from the same builder configuration, so that the
+ * (potentially JNDI-based) lookups happen once rather than once per coordinator per transaction.  A failed resolution
+ * is not cached; the next request tries again.  The resolved adapters are immutable and only hold the
+ * UserTransaction/TransactionManager reference, both of which are expected to be usable from any thread.
+ *
+ * @author Steve Ebersole
+ */
+public class JtaTransactionAdapterFactory {
+	private static final Logger log = logger( JtaTransactionAdapterFactory.class );
+
+	private final JtaPlatform jtaPlatform;
+	private final boolean preferUserTransactions;
+
+	private volatile JtaTransactionAdapter resolvedAdapter;
+	private volatile TransactionManager resolvedTransactionManager;
+	private volatile boolean transactionManagerUnavailable;
+
+	public JtaTransactionAdapterFactory(JtaPlatform jtaPlatform, boolean preferUserTransactions) {
+		this.jtaPlatform = jtaPlatform;
+		this.preferUserTransactions = preferUserTransactions;
+	}
+
+	public JtaPlatform getJtaPlatform() {
+		return jtaPlatform;
+	}
+
+	public boolean isPreferUserTransactions() {
+		return preferUserTransactions;
+	}
+
+	/**
+	 * Get the JtaTransactionAdapter to use, resolving it if not yet done.
+	 *
+	 * @return The adapter
+	 *
+	 * @throws JtaPlatformInaccessibleException If neither the UserTransaction nor the TransactionManager could
+	 * be accessed
+	 */
+	public JtaTransactionAdapter getTransactionAdapter() {
+		JtaTransactionAdapter adapter = resolvedAdapter;
+		if ( adapter == null ) {
+			// concurrent first calls might each resolve; that is harmless as the outcomes are equivalent
+			adapter = resolveTransactionAdapter();
+			resolvedAdapter = adapter;
+		}
+		return adapter;
+	}
+
+	/**
+	 * Get the TransactionManager, if one is accessible through the JtaPlatform.  The outcome of the first successful
+	 * or failed lookup is remembered.
+	 *
+	 * @return The TransactionManager, or {@code null} if none is accessible
+	 */
+	public TransactionManager getTransactionManager() {
+		TransactionManager transactionManager = resolvedTransactionManager;
+		if ( transactionManager == null && !transactionManagerUnavailable ) {
+			try {
+				transactionManager = jtaPlatform.retrieveTransactionManager();
+			}
+			catch (Exception e) {
+				log.debugf( "JtaPlatform#retrieveTransactionManager threw an exception [%s]", e.getMessage() );
+			}
+
+			if ( transactionManager == null ) {
+				transactionManagerUnavailable = true;
+			}
+			else {
+				resolvedTransactionManager = transactionManager;
+			}
+		}
+		return transactionManager;
+	}
+
+	private JtaTransactionAdapter resolveTransactionAdapter() {
+		JtaTransactionAdapter adapter;
+
+		if ( preferUserTransactions ) {
+			adapter = makeUserTransactionAdapter();
+
+			if ( adapter == null ) {
+				log.debug( "Unable to access UserTransaction, attempting to use TransactionManager instead" );
+				adapter = makeTransactionManagerAdapter();
+			}
+		}
+		else {
+			adapter = makeTransactionManagerAdapter();
+
+			if ( adapter == null ) {
+				log.debug( "Unable to access TransactionManager, attempting to use UserTransaction instead" );
+				adapter = makeUserTransactionAdapter();
+			}
+		}
+
+		if ( adapter == null ) {
+			throw new JtaPlatformInaccessibleException(
+					"Unable to access TransactionManager or UserTransaction to make physical transaction delegate"
+			);
+		}
+
+		return adapter;
+	}
+
+	private JtaTransactionAdapter makeUserTransactionAdapter() {
+		try {
+			final UserTransaction userTransaction = jtaPlatform.retrieveUserTransaction();
+			if ( userTransaction == null ) {
+				log.debug( "JtaPlatform#retrieveUserTransaction returned null" );
+			}
+			else {
+				return new JtaTransactionAdapterUserTransactionImpl( userTransaction );
+			}
+		}
+		catch (Exception ignore) {
+			log.debugf( "JtaPlatform#retrieveUserTransaction threw an exception [%s]", ignore.getMessage() );
+		}
+
+		return null;
+	}
+
+	private JtaTransactionAdapter makeTransactionManagerAdapter() {
+		try {
+			final TransactionManager transactionManager = jtaPlatform.retrieveTransactionManager();
+			if ( transactionManager == null ) {
+				log.debug( "JtaPlatform#retrieveTransactionManager returned null" );
+			}
+			else {
+				return new JtaTransactionAdapterTransactionManagerImpl( transactionManager );
+			}
+		}
+		catch (Exception ignore) {
+			log.debugf( "JtaPlatform#retrieveTransactionManager threw an exception [%s]", ignore.getMessage() );
+		}
+
+		return null;
+	}
+}
@@ -23,6 +23,9 @@
  */
 package org.hibernate.resource.transaction.backend.jta.internal;
 
+import java.util.concurrent.Executor;
+import javax.transaction.TransactionSynchronizationRegistry;
+
 import org.hibernate.engine.transaction.jta.platform.spi.JtaPlatform;
 import org.hibernate.resource.transaction.TransactionCoordinatorJtaBuilder;
 import org.hibernate.resource.transaction.TransactionCoordinator;
@@ -38,10 +41,16 @@ public class JtaTransactionCoordinatorBuilderImpl implements TransactionCoordina
 	private boolean autoJoinTransactions = true;
 	private boolean preferUserTransactions;
 	private boolean performJtaThreadTracking = true;
+	private Executor afterCompletionExecutor;
+	private JoinCheckPolicy joinCheckPolicy = JoinCheckPolicy.ALWAYS;
+	private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+	private volatile JtaTransactionAdapterFactory transactionAdapterFactory;
 
 	@Override
 	public TransactionCoordinatorJtaBuilder setJtaPlatform(JtaPlatform jtaPlatform) {
 		this.jtaPlatform = jtaPlatform;
+		this.transactionAdapterFactory = null;
 		return this;
 	}
 
@@ -54,6 +63,7 @@ public class JtaTransactionCoordinatorBuilderImpl implements TransactionCoordina
 	@Override
 	public TransactionCoordinatorJtaBuilder setPreferUserTransactions(boolean preferUserTransactions) {
 		this.preferUserTransactions = preferUserTransactions;
+		this.transactionAdapterFactory = null;
 		return this;
 	}
 
@@ -63,14 +73,46 @@ public class JtaTransactionCoordinatorBuilderImpl implements TransactionCoordina
 		return this;
 	}
 
+	@Override
+	public TransactionCoordinatorJtaBuilder setAfterCompletionExecutor(Executor afterCompletionExecutor) {
+		this.afterCompletionExecutor = afterCompletionExecutor;
+		return this;
+	}
+
+	@Override
+	public TransactionCoordinatorJtaBuilder setJoinCheckPolicy(JoinCheckPolicy joinCheckPolicy) {
+		this.joinCheckPolicy = joinCheckPolicy == null ? JoinCheckPolicy.ALWAYS : joinCheckPolicy;
+		return this;
+	}
+
+	@Override
+	public TransactionCoordinatorJtaBuilder setTransactionSynchronizationRegistry(
+			TransactionSynchronizationRegistry transactionSynchronizationRegistry) {
+		this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+		return this;
+	}
+
 	@Override
 	public TransactionCoordinator buildTransactionCoordinator(TransactionCoordinatorOwner owner) {
 		return new JtaTransactionCoordinatorImpl(
 				owner,
-				jtaPlatform,
+				getTransactionAdapterFactory(),
 				autoJoinTransactions,
-				preferUserTransactions,
-				performJtaThreadTracking
+				performJtaThreadTracking,
+				joinCheckPolicy,
+				transactionSynchronizationRegistry,
+				afterCompletionExecutor
 		);
 	}
+
+	private JtaTransactionAdapterFactory getTransactionAdapterFactory() {
+		JtaTransactionAdapterFactory factory = transactionAdapterFactory;
+		if ( factory == null ) {
+			// shared by all coordinators built from this configuration so that UserTransaction/TransactionManager
+			// resolution happens once
+			factory = new JtaTransactionAdapterFactory( jtaPlatform, preferUserTransactions );
+			transactionAdapterFactory = factory;
+		}
+		return factory;
+	}
 }
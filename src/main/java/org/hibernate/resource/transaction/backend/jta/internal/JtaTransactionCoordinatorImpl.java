@@ -1,13 +1,16 @@
 package org.hibernate.resource.transaction.backend.jta.internal;
 
+import java.util.concurrent.Executor;
 import javax.transaction.Status;
+import javax.transaction.Transaction;
 import javax.transaction.TransactionManager;
-import javax.transaction.UserTransaction;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import org.hibernate.TransactionException;
 import org.hibernate.engine.transaction.jta.platform.spi.JtaPlatform;
 import org.hibernate.resource.transaction.SynchronizationRegistry;
-import org.hibernate.resource.transaction.TransactionCoordinator;
+import org.hibernate.resource.transaction.TransactionCoordinatorJtaBuilder.JoinCheckPolicy;
+import org.hibernate.resource.transaction.spi.TransactionCoordinatorImplementor;
 import org.hibernate.resource.transaction.spi.TransactionCoordinatorOwner;
 import org.hibernate.resource.transaction.internal.SynchronizationRegistryStandardImpl;
 import org.hibernate.resource.transaction.backend.jta.internal.synchronization.RegisteredSynchronization;
@@ -25,42 +28,57 @@ import static org.hibernate.internal.CoreLogging.logger;
  *
  * @author Steve Ebersole
  */
-public class JtaTransactionCoordinatorImpl implements TransactionCoordinator, SynchronizationCallbackTarget {
+public class JtaTransactionCoordinatorImpl implements TransactionCoordinatorImplementor, SynchronizationCallbackTarget {
 	private static final Logger log = logger( JtaTransactionCoordinatorImpl.class );
 
+	// transaction key standing in for "no transaction", so that answers given outside a transaction are remembered too
+	private static final Object NO_TRANSACTION = new Object();
+
 	private final TransactionCoordinatorOwner owner;
 	private final JtaPlatform jtaPlatform;
 	private final boolean autoJoinTransactions;
-	private final boolean preferUserTransactions;
+	private final JtaTransactionAdapterFactory transactionAdapterFactory;
 	private final boolean performJtaThreadTracking;
+	private final JoinCheckPolicy joinCheckPolicy;
+	private final TransactionSynchronizationRegistry transactionSynchronizationRegistry;
 
 	private boolean synchronizationRegistered;
+	// the key of the transaction context pulse last found could not be joined (JoinCheckPolicy.PER_TRANSACTION)
+	private Object unjoinableTransactionKey;
 	private SynchronizationCallbackCoordinator callbackCoordinator;
 	private TransactionDriverControlImpl physicalTransactionDelegate;
 
-	private final SynchronizationRegistryStandardImpl synchronizationRegistry = new SynchronizationRegistryStandardImpl();
+	private final SynchronizationRegistryStandardImpl synchronizationRegistry;
 
 	/**
 	 * Construct a JtaTransactionCoordinatorImpl instance.  package-protected to ensure access goes through
 	 * builder.
 	 *
 	 * @param owner The owner
-	 * @param jtaPlatform The JtaPlatform to use
+	 * @param transactionAdapterFactory Access to the JtaPlatform and the JtaTransactionAdapter to use
 	 * @param autoJoinTransactions Should JTA transactions be auto-joined?  Or should we wait for explicit join calls?
-	 * @param preferUserTransactions Should we prefer using UserTransaction, as opposed to TransactionManager?
 	 * @param performJtaThreadTracking Should we perform thread tracking?
+	 * @param joinCheckPolicy How often pulse should ask the JtaPlatform whether the transaction can be joined
+	 * @param transactionSynchronizationRegistry Used to identify the current transaction for
+	 * {@link JoinCheckPolicy#PER_TRANSACTION}; may be {@code null}, in which case the TransactionManager is used
+	 * @param afterCompletionExecutor The Executor for async after-completion callbacks; may be {@code null}
 	 */
 	JtaTransactionCoordinatorImpl(
 			TransactionCoordinatorOwner owner,
-			JtaPlatform jtaPlatform,
+			JtaTransactionAdapterFactory transactionAdapterFactory,
 			boolean autoJoinTransactions,
-			boolean preferUserTransactions,
-			boolean performJtaThreadTracking) {
+			boolean performJtaThreadTracking,
+			JoinCheckPolicy joinCheckPolicy,
+			TransactionSynchronizationRegistry transactionSynchronizationRegistry,
+			Executor afterCompletionExecutor) {
 		this.owner = owner;
-		this.jtaPlatform = jtaPlatform;
+		this.transactionAdapterFactory = transactionAdapterFactory;
+		this.jtaPlatform = transactionAdapterFactory.getJtaPlatform();
 		this.autoJoinTransactions = autoJoinTransactions;
-		this.preferUserTransactions = preferUserTransactions;
 		this.performJtaThreadTracking = performJtaThreadTracking;
+		this.joinCheckPolicy = joinCheckPolicy;
+		this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+		this.synchronizationRegistry = new SynchronizationRegistryStandardImpl( afterCompletionExecutor );
 
 		synchronizationRegistered = false;
 
@@ -86,15 +104,62 @@ public class JtaTransactionCoordinatorImpl implements TransactionCoordinator, Sy
 			return;
 		}
 
+		Object transactionKey = null;
+		if ( joinCheckPolicy == JoinCheckPolicy.PER_TRANSACTION ) {
+			transactionKey = currentTransactionKey();
+			if ( transactionKey != null && transactionKey.equals( unjoinableTransactionKey ) ) {
+				// we already asked within this transaction context
+				return;
+			}
+		}
+
 		// Can we resister a synchronization according to the JtaPlatform?
 		if ( !jtaPlatform.canRegisterSynchronization() ) {
 			log.trace( "JTA platform says we cannot currently resister synchronization; skipping" );
+			unjoinableTransactionKey = transactionKey;
 			return;
 		}
 
 		joinJtaTransaction();
 	}
 
+	/**
+	 * Resolve the key of the JTA transaction currently associated with the thread, for remembering the outcome of
+	 * join checks.  Prefers the TransactionSynchronizationRegistry, which is cheap to ask.
+	 *
+	 * @return The transaction key, {@link #NO_TRANSACTION} if there is none, or {@code null} if it could not be
+	 * determined (in which case nothing should be remembered).
+	 */
+	private Object currentTransactionKey() {
+		try {
+			if ( transactionSynchronizationRegistry != null ) {
+				final Object transactionKey = transactionSynchronizationRegistry.getTransactionKey();
+				return transactionKey == null ? NO_TRANSACTION : transactionKey;
+			}
+
+			final TransactionManager transactionManager = transactionAdapterFactory.getTransactionManager();
+			if ( transactionManager == null ) {
+				return null;
+			}
+			final Transaction transaction = transactionManager.getTransaction();
+			return transaction == null ? NO_TRANSACTION : transaction;
+		}
+		catch (Exception e) {
+			log.debugf( "Unable to determine current JTA transaction [%s]", e.getMessage() );
+			return null;
+		}
+	}
+
+	@Override
+	public void beforeOwnerWork() {
+		getSynchronizationCallbackCoordinator().beforeOwnerWork();
+	}
+
+	@Override
+	public void afterOwnerWork() {
+		getSynchronizationCallbackCoordinator().afterOwnerWork();
+	}
+
 	/**
 	 * Join to the JTA transaction.  Note that the underlying meaning of joining in JTA environments is to register the
 	 * RegisteredSynchronization with the JTA system
@@ -104,6 +169,7 @@ public class JtaTransactionCoordinatorImpl implements TransactionCoordinator, Sy
 			throw new TransactionException( "Hibernate RegisteredSynchronization is already registered for this coordinator" );
 		}
 
+		unjoinableTransactionKey = null;
 		jtaPlatform.registerSynchronization( new RegisteredSynchronization( getSynchronizationCallbackCoordinator() ) );
 		getSynchronizationCallbackCoordinator().synchronizationRegistered();
 		synchronizationRegistered = true;
@@ -145,71 +211,31 @@ public class JtaTransactionCoordinatorImpl implements TransactionCoordinator, Sy
 	}
 
 	private TransactionDriverControlImpl makePhysicalTransactionDelegate() {
-		JtaTransactionAdapter adapter;
-
-		if ( preferUserTransactions ) {
-			adapter = makeUserTransactionAdapter();
-
-			if ( adapter == null ) {
-				log.debug( "Unable to access UserTransaction, attempting to use TransactionManager instead" );
-				adapter = makeTransactionManagerAdapter();
-			}
-		}
-		else {
-			adapter = makeTransactionManagerAdapter();
-
-			if ( adapter == null ) {
-				log.debug( "Unable to access TransactionManager, attempting to use UserTransaction instead" );
-				adapter = makeUserTransactionAdapter();
-			}
-		}
-
-		if ( adapter == null ) {
-			throw new JtaPlatformInaccessibleException(
-					"Unable to access TransactionManager or UserTransaction to make physical transaction delegate"
-			);
-		}
-
-		return new TransactionDriverControlImpl( adapter );
+		return new TransactionDriverControlImpl( transactionAdapterFactory.getTransactionAdapter() );
 	}
 
-	private JtaTransactionAdapter makeUserTransactionAdapter() {
-		try {
-			final UserTransaction userTransaction = jtaPlatform.retrieveUserTransaction();
-			if ( userTransaction == null ) {
-				log.debug( "JtaPlatform#retrieveUserTransaction returned null" );
-			}
-			else {
-				return new JtaTransactionAdapterUserTransactionImpl( userTransaction );
-			}
-		}
-		catch (Exception ignore) {
-			log.debugf( "JtaPlatform#retrieveUserTransaction threw an exception [%s]", ignore.getMessage() );
-		}
-
-		return null;
+	@Override
+	public SynchronizationRegistry getLocalSynchronizations() {
+		return synchronizationRegistry;
 	}
 
-	private JtaTransactionAdapter makeTransactionManagerAdapter() {
-		try {
-			final TransactionManager transactionManager = jtaPlatform.retrieveTransactionManager();
-			if ( transactionManager == null ) {
-				log.debug( "JtaPlatform#retrieveTransactionManager returned null" );
-			}
-			else {
-				return new JtaTransactionAdapterTransactionManagerImpl( transactionManager );
-			}
-		}
-		catch (Exception ignore) {
-			log.debugf( "JtaPlatform#retrieveTransactionManager threw an exception [%s]", ignore.getMessage() );
+	@Override
+	public boolean reset() {
+		if ( synchronizationRegistered || synchronizationRegistry.getNumberOfRegisteredSynchronizations() > 0 ) {
+			return false;
 		}
 
-		return null;
-	}
+		if ( physicalTransactionDelegate != null ) {
+			physicalTransactionDelegate.invalidate();
+			physicalTransactionDelegate = null;
+		}
+		// discard any thread-tracking state; it is rebuilt on demand
+		callbackCoordinator = null;
+		unjoinableTransactionKey = null;
 
-	@Override
-	public SynchronizationRegistry getLocalSynchronizations() {
-		return synchronizationRegistry;
+		// same as on construction
+		pulse();
+		return true;
 	}
 
 
@@ -238,6 +264,7 @@ public class JtaTransactionCoordinatorImpl implements TransactionCoordinator, Sy
 		}
 		physicalTransactionDelegate = null;
 		synchronizationRegistered = false;
+		unjoinableTransactionKey = null;
 	}
 
 
@@ -41,4 +41,18 @@ public interface SynchronizationCallbackCoordinator extends Synchronization {
 	 * after-completion handling that it may have delayed due to thread affinity
 	 */
 	public void processAnyDelayedAfterCompletion();
+
+	/**
+	 * Called by the TransactionCoordinator when its owner is about to perform work.
+	 *
+	 * @see org.hibernate.resource.transaction.TransactionCoordinator#beforeOwnerWork()
+	 */
+	public void beforeOwnerWork();
+
+	/**
+	 * Called by the TransactionCoordinator when its owner has finished performing work.
+	 *
+	 * @see org.hibernate.resource.transaction.TransactionCoordinator#afterOwnerWork()
+	 */
+	public void afterOwnerWork();
 }
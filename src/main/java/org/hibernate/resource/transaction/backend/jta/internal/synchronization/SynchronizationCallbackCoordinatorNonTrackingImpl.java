@@ -83,4 +83,12 @@ public class SynchronizationCallbackCoordinatorNonTrackingImpl implements Synchr
 	@Override
 	public void processAnyDelayedAfterCompletion() {
 	}
+
+	@Override
+	public void beforeOwnerWork() {
+	}
+
+	@Override
+	public void afterOwnerWork() {
+	}
 }
@@ -23,6 +23,8 @@
  */
 package org.hibernate.resource.transaction.backend.jta.internal.synchronization;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.hibernate.HibernateException;
 import org.hibernate.engine.transaction.internal.jta.JtaStatusHelper;
 import org.hibernate.internal.CoreMessageLogger;
@@ -32,6 +34,19 @@ import static org.hibernate.internal.CoreLogging.messageLogger;
 /**
  * Extension of SynchronizationCallbackCoordinatorNonTrackingImpl that adds checking of whether a rollback comes from
  * a thread other than the application thread (thread used to register the Synchronization)
+ * <p/>
+ * Such a rollback is handed off between the rolling-back ("reaper") thread and the owner using a small lock-free
+ * state machine:<ul>
+ *     <li>
+ *         if the owner is not currently working, the reaper performs the after-completion handling itself so that
+ *         JDBC resources and the Connection are released right away.  The owner is told about the rollback (by
+ *         exception) the next time it starts work.
+ *     </li>
+ *     <li>
+ *         if the owner is currently working, the after-completion handling is queued and performed by the owner
+ *         as soon as it finishes that work.
+ *     </li>
+ * </ul>
  * 
  * @author Steve Ebersole
  * @author Brett Meyer
@@ -42,8 +57,18 @@ public class SynchronizationCallbackCoordinatorTrackingImpl extends Synchronizat
 	// magic number :(
 	private static final long NO_THREAD_ID = Long.MIN_VALUE;
 
+	// hand-off states
+	private static final int IDLE = 0;
+	private static final int OWNER_WORKING = 1;
+	private static final int COMPLETION_PENDING = 2;
+	private static final int COMPLETING = 3;
+	private static final int COMPLETED = 4;
+
 	private volatile long registrationThreadId;
-	private volatile boolean delayedCompletionHandling;
+
+	private final AtomicInteger handOffState = new AtomicInteger( IDLE );
+	// only ever accessed from the owner thread
+	private int ownerWorkDepth;
 
 	public SynchronizationCallbackCoordinatorTrackingImpl(SynchronizationCallbackTarget target) {
 		super( target );
@@ -56,10 +81,10 @@ public class SynchronizationCallbackCoordinatorTrackingImpl extends Synchronizat
 		// 		1) on initialization, and
 		// 		2) after "after completion" handling is finished.
 		//
-		// Here we use that to "clear out" all 'delayed after-completion" state.  The registrationThreadId will
-		// "lazily" be re-populated on the next synchronizationRegistered call to allow for the potential of the next Session transaction
-		// occurring on a different thread (though that transaction would need to completely operate on that thread).
-		delayedCompletionHandling = false;
+		// The registrationThreadId will "lazily" be re-populated on the next synchronizationRegistered call to allow
+		// for the potential of the next Session transaction occurring on a different thread (though that transaction
+		// would need to completely operate on that thread).  The hand-off state is deliberately not reset here, as
+		// the owner still needs to be told about a rollback performed from a different thread.
 		registrationThreadId = NO_THREAD_ID;
 	}
 
@@ -76,13 +101,12 @@ public class SynchronizationCallbackCoordinatorTrackingImpl extends Synchronizat
 			final long currentThreadId = Thread.currentThread().getId();
 			final boolean isRegistrationThread = currentThreadId == registrationThreadId;
 			if ( ! isRegistrationThread ) {
-				// so we do have the condition of a rollback initiated from a separate thread.  Set the flag here and
-				// check for it in SessionImpl. See HHH-7910.
-				delayedCompletionHandling = true;
+				// so we do have the condition of a rollback initiated from a separate thread.  See HHH-7910.
 
 				// todo : update code to use message logger
 				//log.rollbackFromBackgroundThread( status );
 				log.warn( "Rollback from background thread (update code to use message logger)" );
+				handOffForeignRollback();
 				return;
 			}
 		}
@@ -91,6 +115,35 @@ public class SynchronizationCallbackCoordinatorTrackingImpl extends Synchronizat
 		doAfterCompletion( JtaStatusHelper.isCommitted( status ) );
 	}
 
+	private void handOffForeignRollback() {
+		while ( true ) {
+			final int state = handOffState.get();
+			if ( state == IDLE ) {
+				if ( handOffState.compareAndSet( IDLE, COMPLETING ) ) {
+					// the owner is not working, and cannot start until we are done; release everything now
+					try {
+						// false here because, as discussed above, this should only ever occur during rollback
+						doAfterCompletion( false );
+					}
+					finally {
+						handOffState.set( COMPLETED );
+					}
+					return;
+				}
+			}
+			else if ( state == OWNER_WORKING ) {
+				if ( handOffState.compareAndSet( OWNER_WORKING, COMPLETION_PENDING ) ) {
+					// the owner will perform the completion when it finishes its current work
+					return;
+				}
+			}
+			else {
+				// completion was already handed off
+				return;
+			}
+		}
+	}
+
 	@Override
 	public void synchronizationRegistered() {
 		// If this is the first call to synchronizationRegistered since an earlier call to reset, capture the current thread id
@@ -99,12 +152,85 @@ public class SynchronizationCallbackCoordinatorTrackingImpl extends Synchronizat
 		}
 	}
 
+	@Override
+	public void beforeOwnerWork() {
+		if ( ownerWorkDepth > 0 ) {
+			// nested work
+			ownerWorkDepth++;
+			return;
+		}
+
+		while ( true ) {
+			final int state = handOffState.get();
+			if ( state == IDLE ) {
+				if ( handOffState.compareAndSet( IDLE, OWNER_WORKING ) ) {
+					ownerWorkDepth = 1;
+					return;
+				}
+			}
+			else if ( state == COMPLETING ) {
+				// the reaper is in the middle of after-completion handling; wait for it to finish
+				Thread.yield();
+			}
+			else if ( state == COMPLETED ) {
+				handOffState.set( IDLE );
+				throw new HibernateException( "Transaction was rolled back in a different thread!" );
+			}
+			else {
+				// unbalanced owner work calls; nothing sensible to do other than carry on
+				ownerWorkDepth = 1;
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void afterOwnerWork() {
+		if ( ownerWorkDepth == 0 ) {
+			return;
+		}
+		if ( --ownerWorkDepth > 0 ) {
+			return;
+		}
+
+		if ( handOffState.compareAndSet( OWNER_WORKING, IDLE ) ) {
+			return;
+		}
+
+		if ( handOffState.get() == COMPLETION_PENDING ) {
+			// the reaper queued the after-completion handling for us while we were working
+			try {
+				doAfterCompletion( false );
+			}
+			finally {
+				handOffState.set( COMPLETED );
+			}
+		}
+	}
+
 	@Override
 	public void processAnyDelayedAfterCompletion() {
-		if ( delayedCompletionHandling ) {
-			// false here because, as discussed above, the delayed logic should only ever occur during rollback
-			doAfterCompletion( false );
-			// NOTE : doAfterCompletion calls reset
+		while ( true ) {
+			final int state = handOffState.get();
+			if ( state == COMPLETING ) {
+				Thread.yield();
+				continue;
+			}
+
+			if ( state == COMPLETION_PENDING ) {
+				try {
+					// false here because, as discussed above, the delayed logic should only ever occur during rollback
+					doAfterCompletion( false );
+				}
+				finally {
+					handOffState.set( COMPLETED );
+				}
+			}
+			else if ( state != COMPLETED ) {
+				return;
+			}
+
+			handOffState.set( ownerWorkDepth > 0 ? OWNER_WORKING : IDLE );
 			throw new HibernateException( "Transaction was rolled back in a different thread!" );
 		}
 	}
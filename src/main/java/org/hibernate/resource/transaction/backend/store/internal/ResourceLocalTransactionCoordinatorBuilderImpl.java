@@ -23,6 +23,8 @@
  */
 package org.hibernate.resource.transaction.backend.store.internal;
 
+import java.util.concurrent.Executor;
+
 import org.hibernate.HibernateException;
 import org.hibernate.resource.transaction.TransactionCoordinator;
 import org.hibernate.resource.transaction.backend.store.spi.DataStoreTransactionAccess;
@@ -36,20 +38,34 @@ import org.hibernate.resource.transaction.TransactionCoordinatorResourceLocalBui
  */
 public class ResourceLocalTransactionCoordinatorBuilderImpl implements TransactionCoordinatorResourceLocalBuilder {
 	private DataStoreTransactionAccess providedDataStoreTransactionAccess;
+	private Executor afterCompletionExecutor;
 
 	@Override
 	public void setResourceLocalTransactionAccess(DataStoreTransactionAccess dataStoreTransactionAccess) {
 		this.providedDataStoreTransactionAccess = dataStoreTransactionAccess;
 	}
 
+	@Override
+	public void setAfterCompletionExecutor(Executor afterCompletionExecutor) {
+		this.afterCompletionExecutor = afterCompletionExecutor;
+	}
+
 	@Override
 	public TransactionCoordinator buildTransactionCoordinator(TransactionCoordinatorOwner owner) {
 		if ( providedDataStoreTransactionAccess != null ) {
-			return new ResourceLocalTransactionCoordinatorImpl( owner, providedDataStoreTransactionAccess );
+			return new ResourceLocalTransactionCoordinatorImpl(
+					owner,
+					providedDataStoreTransactionAccess,
+					afterCompletionExecutor
+			);
 		}
 		else {
 			if ( owner instanceof DataStoreTransactionAccess ) {
-				return new ResourceLocalTransactionCoordinatorImpl( owner, (DataStoreTransactionAccess) owner );
+				return new ResourceLocalTransactionCoordinatorImpl(
+						owner,
+						(DataStoreTransactionAccess) owner,
+						afterCompletionExecutor
+				);
 			}
 		}
 
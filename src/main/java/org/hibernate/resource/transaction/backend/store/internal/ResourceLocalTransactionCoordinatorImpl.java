@@ -23,6 +23,7 @@
  */
 package org.hibernate.resource.transaction.backend.store.internal;
 
+import java.util.concurrent.Executor;
 import javax.transaction.Status;
 
 import org.hibernate.internal.CoreMessageLogger;
@@ -30,7 +31,7 @@ import org.hibernate.resource.transaction.backend.store.spi.DataStoreTransaction
 import org.hibernate.resource.transaction.backend.store.spi.DataStoreTransactionAccess;
 import org.hibernate.resource.transaction.internal.SynchronizationRegistryStandardImpl;
 import org.hibernate.resource.transaction.SynchronizationRegistry;
-import org.hibernate.resource.transaction.TransactionCoordinator;
+import org.hibernate.resource.transaction.spi.TransactionCoordinatorImplementor;
 import org.hibernate.resource.transaction.spi.TransactionCoordinatorOwner;
 
 import static org.hibernate.internal.CoreLogging.messageLogger;
@@ -43,12 +44,12 @@ import static org.hibernate.internal.CoreLogging.messageLogger;
  *
  * @see org.hibernate.resource.transaction.backend.store.spi.DataStoreTransaction
  */
-public class ResourceLocalTransactionCoordinatorImpl implements TransactionCoordinator {
+public class ResourceLocalTransactionCoordinatorImpl implements TransactionCoordinatorImplementor {
 	private static final CoreMessageLogger log = messageLogger( ResourceLocalTransactionCoordinatorImpl.class );
 
 	private final DataStoreTransactionAccess dataStoreTransactionAccess;
 	private final TransactionCoordinatorOwner owner;
-	private final SynchronizationRegistryStandardImpl synchronizationRegistry = new SynchronizationRegistryStandardImpl();
+	private final SynchronizationRegistryStandardImpl synchronizationRegistry;
 
 	private TransactionDriverControlImpl physicalTransactionDelegate;
 
@@ -57,12 +58,16 @@ public class ResourceLocalTransactionCoordinatorImpl implements TransactionCoord
 	 * builder.
 	 *
 	 * @param owner The owner
+	 * @param dataStoreTransactionAccess Access to the resource-local transaction
+	 * @param afterCompletionExecutor The Executor for async after-completion callbacks; may be {@code null}
 	 */
 	ResourceLocalTransactionCoordinatorImpl(
 			TransactionCoordinatorOwner owner,
-		DataStoreTransactionAccess dataStoreTransactionAccess) {
+			DataStoreTransactionAccess dataStoreTransactionAccess,
+			Executor afterCompletionExecutor) {
 		this.dataStoreTransactionAccess = dataStoreTransactionAccess;
 		this.owner = owner;
+		this.synchronizationRegistry = new SynchronizationRegistryStandardImpl( afterCompletionExecutor );
 	}
 
 	@Override
@@ -93,11 +98,36 @@ public class ResourceLocalTransactionCoordinatorImpl implements TransactionCoord
 		// nothing to do here
 	}
 
+	@Override
+	public void beforeOwnerWork() {
+		// nothing to do here; resource-local transactions are only ever completed by the owner
+	}
+
+	@Override
+	public void afterOwnerWork() {
+		// nothing to do here
+	}
+
 	@Override
 	public SynchronizationRegistry getLocalSynchronizations() {
 		return synchronizationRegistry;
 	}
 
+	@Override
+	public boolean reset() {
+		if ( synchronizationRegistry.getNumberOfRegisteredSynchronizations() > 0 ) {
+			return false;
+		}
+
+		// the delegate cannot be in use for a transaction here, as the owner has released its Connection; make
+		// sure any stale reference to it fails though
+		if ( physicalTransactionDelegate != null ) {
+			physicalTransactionDelegate.invalidate();
+			physicalTransactionDelegate = null;
+		}
+		return true;
+	}
+
 
 	// PhysicalTransactionDelegate ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
 
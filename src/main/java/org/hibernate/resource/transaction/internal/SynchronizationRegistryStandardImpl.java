@@ -24,6 +24,9 @@
 package org.hibernate.resource.transaction.internal;
 
 import java.util.LinkedHashSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.transaction.Synchronization;
 
 import org.hibernate.internal.CoreLogging;
@@ -40,7 +43,26 @@ import org.hibernate.resource.transaction.spi.SynchronizationRegistryImplementor
 public class SynchronizationRegistryStandardImpl implements SynchronizationRegistryImplementor {
 	private static final CoreMessageLogger log = CoreLogging.messageLogger( SynchronizationRegistryStandardImpl.class );
 
+	private final transient Executor afterCompletionExecutor;
+
 	private LinkedHashSet<Synchronization> synchronizations;
+	private LinkedHashSet<Synchronization> asyncSynchronizations;
+
+	public SynchronizationRegistryStandardImpl() {
+		this( null );
+	}
+
+	/**
+	 * Constructs a registry which dispatches the after-completion callbacks of Synchronizations registered via
+	 * {@link #registerAsyncSynchronization} to the given Executor.  The Executor should be bounded and reject work
+	 * when saturated; rejected callbacks are performed synchronously.
+	 *
+	 * @param afterCompletionExecutor The Executor to use for asynchronous after-completion callbacks; may be
+	 * {@code null} in which case all callbacks are performed synchronously.
+	 */
+	public SynchronizationRegistryStandardImpl(Executor afterCompletionExecutor) {
+		this.afterCompletionExecutor = afterCompletionExecutor;
+	}
 
 	/**
 	 * Intended for test access
@@ -48,7 +70,8 @@ public class SynchronizationRegistryStandardImpl implements SynchronizationRegis
 	 * @return The number of Synchronizations registered
 	 */
 	public int getNumberOfRegisteredSynchronizations() {
-		return synchronizations == null ? 0 : synchronizations.size();
+		return ( synchronizations == null ? 0 : synchronizations.size() )
+				+ ( asyncSynchronizations == null ? 0 : asyncSynchronizations.size() );
 	}
 
 	@Override
@@ -67,6 +90,22 @@ public class SynchronizationRegistryStandardImpl implements SynchronizationRegis
 		}
 	}
 
+	@Override
+	public void registerAsyncSynchronization(Synchronization synchronization) {
+		if ( synchronization == null ) {
+			throw new NullSynchronizationException();
+		}
+
+		if ( asyncSynchronizations == null ) {
+			asyncSynchronizations = new LinkedHashSet<Synchronization>();
+		}
+
+		final boolean added = asyncSynchronizations.add( synchronization );
+		if ( !added ) {
+			log.synchronizationAlreadyRegistered( synchronization );
+		}
+	}
+
 	@Override
 	public void notifySynchronizationsBeforeTransactionCompletion() {
 		log.trace( "SynchronizationRegistryStandardImpl.notifySynchronizationsBeforeTransactionCompletion" );
@@ -85,6 +124,21 @@ public class SynchronizationRegistryStandardImpl implements SynchronizationRegis
 				}
 			}
 		}
+
+		if ( asyncSynchronizations != null ) {
+			for ( Synchronization synchronization : asyncSynchronizations ) {
+				try {
+					synchronization.beforeCompletion();
+				}
+				catch (Throwable t) {
+					log.synchronizationFailed( synchronization, t );
+					throw new LocalSynchronizationException(
+							"Exception calling user Synchronization (beforeCompletion): " + synchronization.getClass().getName(),
+							t
+					);
+				}
+			}
+		}
 	}
 
 	@Override
@@ -94,6 +148,19 @@ public class SynchronizationRegistryStandardImpl implements SynchronizationRegis
 				status
 		);
 
+		// dispatch the async ones first so that a failure from one of the synchronous callbacks below cannot
+		// prevent them from seeing the outcome
+		if ( asyncSynchronizations != null ) {
+			try {
+				for ( Synchronization synchronization : asyncSynchronizations ) {
+					dispatchAfterCompletion( new AsyncAfterCompletion( synchronization, status ) );
+				}
+			}
+			finally {
+				asyncSynchronizations.clear();
+			}
+		}
+
 		if ( synchronizations != null ) {
 			try {
 				for ( Synchronization synchronization : synchronizations ) {
@@ -122,5 +189,55 @@ public class SynchronizationRegistryStandardImpl implements SynchronizationRegis
 		if ( synchronizations != null ) {
 			synchronizations.clear();
 		}
+		if ( asyncSynchronizations != null ) {
+			asyncSynchronizations.clear();
+		}
+	}
+
+	private void dispatchAfterCompletion(AsyncAfterCompletion afterCompletion) {
+		if ( afterCompletionExecutor != null ) {
+			try {
+				afterCompletionExecutor.execute( afterCompletion );
+				return;
+			}
+			catch (RejectedExecutionException e) {
+				log.debugf(
+						"After-completion Executor rejected Synchronization [%s]; performing synchronously",
+						afterCompletion.synchronization
+				);
+			}
+		}
+
+		afterCompletion.run();
+	}
+
+	/**
+	 * The unit of work for after-completion handling of an async Synchronization.  Guards against the outcome being
+	 * delivered more than once, should the Executor both run the task and report it as rejected.
+	 */
+	private static class AsyncAfterCompletion implements Runnable {
+		private final Synchronization synchronization;
+		private final int status;
+		private final AtomicBoolean delivered = new AtomicBoolean( false );
+
+		private AsyncAfterCompletion(Synchronization synchronization, int status) {
+			this.synchronization = synchronization;
+			this.status = status;
+		}
+
+		@Override
+		public void run() {
+			if ( !delivered.compareAndSet( false, true ) ) {
+				return;
+			}
+
+			try {
+				synchronization.afterCompletion( status );
+			}
+			catch (Throwable t) {
+				// nobody is waiting on this callback, so all we can do is log the problem
+				log.synchronizationFailed( synchronization, t );
+			}
+		}
 	}
 }
@@ -0,0 +1,266 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hibernate.ConnectionReleaseMode;
+import org.hibernate.JDBCException;
+import org.hibernate.resource.jdbc.BatchableUpdateOperation;
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.Operation;
+import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.jdbc.spi.LogicalConnectionImplementor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import org.hibernate.test.resource.common.DatabaseConnectionInfo;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionContextStandardTestingImpl;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionOwnerTestingImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link JdbcSession#acceptAll}
+ *
+ * @author Steve Ebersole
+ */
+public class AcceptAllTests {
+	private final JdbcSessionOwnerTestingImpl owner = new JdbcSessionOwnerTestingImpl();
+	private final List<String> prepared = new ArrayList<String>();
+	private int obtainCount;
+	private int releaseCount;
+	private StatementInspector statementInspector;
+
+	// keeps the in-memory database alive for the duration of the test
+	private Connection setupConnection;
+
+	@Before
+	public void setUp() throws SQLException {
+		setupConnection = DatabaseConnectionInfo.INSTANCE.makeConnection();
+		final Statement statement = setupConnection.createStatement();
+		statement.execute( "create table accept_all_target (id integer)" );
+		statement.close();
+
+		owner.setJdbcSessionContext(
+				new JdbcSessionContextStandardTestingImpl() {
+					@Override
+					public ConnectionReleaseMode getConnectionReleaseMode() {
+						return ConnectionReleaseMode.AFTER_STATEMENT;
+					}
+
+					@Override
+					public StatementInspector getStatementInspector() {
+						return statementInspector == null ? super.getStatementInspector() : statementInspector;
+					}
+				}
+		);
+		owner.setJdbcConnectionAccess(
+				new JdbcConnectionAccess() {
+					@Override
+					public Connection obtainConnection() throws SQLException {
+						obtainCount++;
+						return recordingConnection( DatabaseConnectionInfo.INSTANCE.makeConnection() );
+					}
+
+					@Override
+					public void releaseConnection(Connection connection) throws SQLException {
+						releaseCount++;
+						connection.close();
+					}
+				}
+		);
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		final Statement statement = setupConnection.createStatement();
+		statement.execute( "drop table accept_all_target" );
+		statement.close();
+		setupConnection.close();
+	}
+
+	@Test
+	public void testSingleConnectionWindow() {
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		try {
+			final List<Object> results = jdbcSession.acceptAll(
+					Arrays.asList(
+							new CountOperation(),
+							new InsertOperation( 1 ),
+							new InsertOperation( 2 ),
+							new InsertOperation( 3 ),
+							new CountOperation()
+					)
+			);
+
+			assertEquals( Arrays.<Object>asList( 0, 1, 1, 1, 3 ), results );
+			// one Connection window, despite AFTER_STATEMENT
+			assertEquals( 1, obtainCount );
+			assertEquals( 1, releaseCount );
+			assertFalse( jdbcSession.getLogicalConnection().isPhysicallyConnected() );
+
+			// the inserts were sent as a single batch
+			assertEquals( 3, prepared.size() );
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	@Test
+	public void testStatementInspectorApplied() {
+		final List<String> inspected = new ArrayList<String>();
+		statementInspector = new StatementInspector() {
+			@Override
+			public String inspect(String sql) {
+				inspected.add( sql );
+				return "/* inspected */ " + sql;
+			}
+		};
+
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		try {
+			jdbcSession.acceptAll( Arrays.asList( new InsertOperation( 1 ), new InsertOperation( 2 ) ) );
+			jdbcSession.accept( new InsertOperation( 3 ) );
+
+			// the SQL is inspected once per run of Operations, whether batched or not
+			assertEquals( 2, inspected.size() );
+			assertEquals( 2, prepared.size() );
+			for ( String sql : prepared ) {
+				assertTrue( sql.startsWith( "/* inspected */ " ) );
+			}
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	@Test
+	public void testFailureEndsSequence() {
+		final CountOperation notReached = new CountOperation();
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		try {
+			jdbcSession.acceptAll(
+					Arrays.asList(
+							new InsertOperation( 1 ),
+							new Operation<Void>() {
+								@Override
+								public Void perform(JdbcSession jdbcSession) throws SQLException {
+									throw new SQLException( "Boom" );
+								}
+							},
+							notReached
+					)
+			);
+			fail( "Expecting failure" );
+		}
+		catch (JDBCException expected) {
+		}
+		finally {
+			jdbcSession.close();
+		}
+		assertFalse( notReached.performed );
+		assertEquals( 1, obtainCount );
+		assertEquals( 1, releaseCount );
+	}
+
+	private Connection recordingConnection(final Connection connection) {
+		return (Connection) Proxy.newProxyInstance(
+				getClass().getClassLoader(),
+				new Class[] { Connection.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ( "prepareStatement".equals( method.getName() ) ) {
+							prepared.add( (String) args[0] );
+						}
+						try {
+							return method.invoke( connection, args );
+						}
+						catch (InvocationTargetException e) {
+							throw e.getTargetException();
+						}
+					}
+				}
+		);
+	}
+
+	private static class InsertOperation extends BatchableUpdateOperation {
+		private final int id;
+
+		private InsertOperation(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public String getSql() {
+			return "insert into accept_all_target (id) values (?)";
+		}
+
+		@Override
+		public void bindParameters(PreparedStatement statement) throws SQLException {
+			statement.setInt( 1, id );
+		}
+	}
+
+	private static class CountOperation implements Operation<Integer> {
+		private boolean performed;
+
+		@Override
+		public Integer perform(JdbcSession jdbcSession) throws SQLException {
+			performed = true;
+			final LogicalConnectionImplementor logicalConnection = (LogicalConnectionImplementor) jdbcSession.getLogicalConnection();
+			final PreparedStatement statement = logicalConnection.getPhysicalConnection().prepareStatement(
+					"select count(*) from accept_all_target"
+			);
+			try {
+				final ResultSet resultSet = statement.executeQuery();
+				resultSet.next();
+				return resultSet.getInt( 1 );
+			}
+			finally {
+				statement.close();
+				logicalConnection.afterStatement();
+			}
+		}
+	}
+}
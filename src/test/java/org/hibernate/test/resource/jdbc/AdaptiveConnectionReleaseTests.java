@@ -0,0 +1,137 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.ConnectionReleaseMode;
+import org.hibernate.resource.jdbc.internal.LogicalConnectionManagedImpl;
+import org.hibernate.resource.jdbc.spi.AdaptiveConnectionReleasePolicy;
+
+import org.hibernate.test.resource.jdbc.common.CountingConnectionAccess;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionContextStandardTestingImpl;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for adaptive release of JDBC Connections between statements
+ *
+ * @author Steve Ebersole
+ */
+public class AdaptiveConnectionReleaseTests {
+	private final CountingConnectionAccess connectionAccess = new CountingConnectionAccess();
+
+	private LogicalConnectionManagedImpl buildLogicalConnection(final AdaptiveConnectionReleasePolicy policy) {
+		return new LogicalConnectionManagedImpl(
+				connectionAccess,
+				new JdbcSessionContextStandardTestingImpl() {
+					@Override
+					public ConnectionReleaseMode getConnectionReleaseMode() {
+						return ConnectionReleaseMode.AFTER_STATEMENT;
+					}
+
+					@Override
+					public AdaptiveConnectionReleasePolicy getAdaptiveConnectionReleasePolicy() {
+						return policy;
+					}
+				}
+		);
+	}
+
+	@Test
+	public void testTightLoopKeepsConnection() {
+		// generous threshold, so that statements issued back to back are well within it
+		final AdaptiveConnectionReleasePolicy policy = new AdaptiveConnectionReleasePolicy( 4, 1, 1, TimeUnit.SECONDS );
+		final LogicalConnectionManagedImpl logicalConnection = buildLogicalConnection( policy );
+		try {
+			for ( int i = 0; i < 10; i++ ) {
+				logicalConnection.getPhysicalConnection();
+				logicalConnection.afterStatement();
+			}
+			// nothing known about the gaps initially, so the first statement releases; after that it is kept
+			assertEquals( 2, connectionAccess.getObtainCount() );
+			assertTrue( logicalConnection.isPhysicallyConnected() );
+		}
+		finally {
+			logicalConnection.close();
+		}
+	}
+
+	@Test
+	public void testLongGapsReleaseConnection() {
+		final AdaptiveConnectionReleasePolicy policy = new AdaptiveConnectionReleasePolicy( 0, 0, 0, TimeUnit.NANOSECONDS );
+		final LogicalConnectionManagedImpl logicalConnection = buildLogicalConnection( policy );
+		try {
+			for ( int i = 0; i < 5; i++ ) {
+				logicalConnection.getPhysicalConnection();
+				logicalConnection.afterStatement();
+				assertFalse( logicalConnection.isPhysicallyConnected() );
+			}
+			assertEquals( 5, connectionAccess.getObtainCount() );
+			assertEquals( 5, connectionAccess.getReleaseCount() );
+		}
+		finally {
+			logicalConnection.close();
+		}
+	}
+
+	@Test
+	public void testNeverReleasedDuringJdbcTransaction() {
+		final AdaptiveConnectionReleasePolicy policy = new AdaptiveConnectionReleasePolicy( 0, 0, 0, TimeUnit.NANOSECONDS );
+		final LogicalConnectionManagedImpl logicalConnection = buildLogicalConnection( policy );
+		try {
+			logicalConnection.begin();
+			for ( int i = 0; i < 5; i++ ) {
+				logicalConnection.getPhysicalConnection();
+				logicalConnection.afterStatement();
+				assertTrue( logicalConnection.isPhysicallyConnected() );
+			}
+			logicalConnection.commit();
+			assertFalse( logicalConnection.isPhysicallyConnected() );
+			assertEquals( 1, connectionAccess.getObtainCount() );
+		}
+		finally {
+			logicalConnection.close();
+		}
+	}
+
+	@Test
+	public void testThresholdLearnedFromAcquisitionTime() {
+		final AdaptiveConnectionReleasePolicy policy = new AdaptiveConnectionReleasePolicy( 2, 10, 1000, TimeUnit.NANOSECONDS );
+		assertEquals( 10, policy.getReleaseThresholdNanos() );
+
+		policy.recordAcquisitionTime( 100 );
+		assertEquals( 200, policy.getReleaseThresholdNanos() );
+
+		policy.recordAcquisitionTime( 100000 );
+		assertEquals( 1000, policy.getReleaseThresholdNanos() );
+
+		assertTrue( policy.shouldRelease( -1 ) );
+		assertTrue( policy.shouldRelease( 1001 ) );
+		assertFalse( policy.shouldRelease( 999 ) );
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.hibernate.ConnectionReleaseMode;
+import org.hibernate.JDBCException;
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.Operation;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.jdbc.spi.LogicalConnectionImplementor;
+import org.hibernate.resource.transaction.TransactionCoordinator;
+import org.hibernate.resource.transaction.TransactionCoordinatorBuilder;
+import org.hibernate.resource.transaction.TransactionCoordinatorBuilderFactory;
+import org.hibernate.resource.transaction.spi.TransactionCoordinatorOwner;
+
+import org.hibernate.test.resource.jdbc.common.JdbcSessionContextStandardTestingImpl;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionOwnerTestingImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the auto-commit fast path of JdbcSession, where the TransactionCoordinator is built lazily
+ *
+ * @author Steve Ebersole
+ */
+public class AutoCommitFastPathTests {
+	private final JdbcSessionOwnerTestingImpl owner = new JdbcSessionOwnerTestingImpl();
+	private final CountingTransactionCoordinatorBuilder transactionCoordinatorBuilder = new CountingTransactionCoordinatorBuilder();
+
+	@Before
+	public void setUp() {
+		owner.setJdbcSessionContext(
+				new JdbcSessionContextStandardTestingImpl() {
+					@Override
+					public ConnectionReleaseMode getConnectionReleaseMode() {
+						return ConnectionReleaseMode.AFTER_TRANSACTION;
+					}
+
+					@Override
+					public boolean isLazyTransactionCoordinatorEnabled() {
+						return true;
+					}
+				}
+		);
+		owner.setTransactionCoordinatorBuilder( transactionCoordinatorBuilder );
+	}
+
+	@Test
+	public void testSingleStatementRead() {
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		try {
+			assertEquals( 0, transactionCoordinatorBuilder.buildCount );
+
+			final Integer value = jdbcSession.accept( new SelectOneOperation() );
+			assertEquals( Integer.valueOf( 1 ), value );
+
+			// the Connection should have been released right away, and no coordinator built
+			assertFalse( jdbcSession.getLogicalConnection().isPhysicallyConnected() );
+			assertEquals( 0, transactionCoordinatorBuilder.buildCount );
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	@Test
+	public void testReleasedAfterFailedOperation() {
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		try {
+			try {
+				jdbcSession.accept(
+						new Operation<Void>() {
+							@Override
+							public Void perform(JdbcSession jdbcSession) throws SQLException {
+								final LogicalConnectionImplementor logicalConnection = (LogicalConnectionImplementor) jdbcSession.getLogicalConnection();
+								final Statement statement = logicalConnection.getPhysicalConnection().createStatement();
+								try {
+									statement.executeQuery( "select * from no_such_table" );
+									return null;
+								}
+								finally {
+									statement.close();
+								}
+							}
+						}
+				);
+				fail( "Expecting failure" );
+			}
+			catch (JDBCException expected) {
+			}
+
+			assertFalse( jdbcSession.getLogicalConnection().isPhysicallyConnected() );
+			assertEquals( 0, transactionCoordinatorBuilder.buildCount );
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	@Test
+	public void testCoordinatorBuiltOnDemand() {
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		try {
+			jdbcSession.accept( new SelectOneOperation() );
+
+			final TransactionCoordinator transactionCoordinator = jdbcSession.getTransactionCoordinator();
+			assertEquals( 1, transactionCoordinatorBuilder.buildCount );
+
+			// from here on the regular transactional handling applies
+			transactionCoordinator.getTransactionDriverControl().begin();
+			jdbcSession.accept( new SelectOneOperation() );
+			assertTrue( jdbcSession.getLogicalConnection().isPhysicallyConnected() );
+			transactionCoordinator.getTransactionDriverControl().commit();
+			assertFalse( jdbcSession.getLogicalConnection().isPhysicallyConnected() );
+
+			jdbcSession.getTransactionCoordinator();
+			assertEquals( 1, transactionCoordinatorBuilder.buildCount );
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	private static class SelectOneOperation implements Operation<Integer> {
+		@Override
+		public Integer perform(JdbcSession jdbcSession) throws SQLException {
+			final LogicalConnectionImplementor logicalConnection = (LogicalConnectionImplementor) jdbcSession.getLogicalConnection();
+			final Statement statement = logicalConnection.getPhysicalConnection().createStatement();
+			try {
+				final ResultSet resultSet = statement.executeQuery( "select 1 from dual" );
+				resultSet.next();
+				return resultSet.getInt( 1 );
+			}
+			finally {
+				statement.close();
+			}
+		}
+	}
+
+	private static class CountingTransactionCoordinatorBuilder implements TransactionCoordinatorBuilder {
+		private final TransactionCoordinatorBuilder delegate = TransactionCoordinatorBuilderFactory.INSTANCE.forResourceLocal();
+		private int buildCount;
+
+		@Override
+		public TransactionCoordinator buildTransactionCoordinator(TransactionCoordinatorOwner owner) {
+			buildCount++;
+			return delegate.buildTransactionCoordinator( owner );
+		}
+	}
+}
@@ -0,0 +1,350 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.HibernateException;
+import org.hibernate.resource.jdbc.CallableStatementOperationSpec;
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.OperationSpec;
+import org.hibernate.resource.jdbc.OutputParameter;
+import org.hibernate.resource.jdbc.OutputParameterValues;
+import org.hibernate.resource.jdbc.spi.FetchSizeTuner;
+import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.jdbc.spi.SqlHandle;
+
+import org.hibernate.test.resource.common.DatabaseConnectionInfo;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionContextStandardTestingImpl;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionOwnerTestingImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link CallableStatementOperationSpec}
+ *
+ * @author Steve Ebersole
+ */
+public class CallableStatementOperationSpecTests {
+	private final JdbcSessionOwnerTestingImpl owner = new JdbcSessionOwnerTestingImpl();
+
+	// keeps the in-memory database (and the alias) alive for the duration of the test
+	private Connection setupConnection;
+
+	/**
+	 * Backs the {@code rows} stored procedure
+	 */
+	public static ResultSet rows(Connection connection, int count) throws SQLException {
+		return connection.createStatement().executeQuery( "select x from system_range(1, " + count + ")" );
+	}
+
+	@Before
+	public void setUp() throws SQLException {
+		setupConnection = DatabaseConnectionInfo.INSTANCE.makeConnection();
+		execute( "create alias rows for \"" + getClass().getName() + ".rows\"" );
+		execute( "create table procedure_target (id integer, val integer)" );
+		execute( "insert into procedure_target values (1, 0)" );
+		execute( "insert into procedure_target values (2, 0)" );
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		execute( "drop alias rows" );
+		execute( "drop table procedure_target" );
+		setupConnection.close();
+	}
+
+	@Test
+	public void testRowsStreamed() {
+		final List<String> events = new ArrayList<String>();
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		try {
+			final Long sum = jdbcSession.accept(
+					new SpecSupport<Long>( "{call rows(?)}" ) {
+						private long sum;
+
+						@Override
+						public void bindParameters(CallableStatement statement) throws SQLException {
+							statement.setInt( 1, 4 );
+						}
+
+						@Override
+						public void processRow(int resultSetIndex, ResultSet resultSet) throws SQLException {
+							events.add( resultSetIndex + ":" + resultSet.getLong( 1 ) );
+							sum += resultSet.getLong( 1 );
+						}
+
+						@Override
+						public Long buildResult(OutputParameterValues outputs) {
+							return sum;
+						}
+					}
+			);
+			assertEquals( Long.valueOf( 10 ), sum );
+			assertEquals( Arrays.asList( "0:1", "0:2", "0:3", "0:4" ), events );
+			assertFalse( jdbcSession.getLogicalConnection().getResourceRegistry().hasRegisteredResources() );
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	@Test
+	public void testFetchSizeTuned() {
+		final FetchSizeTuner fetchSizeTuner = new FetchSizeTuner( 1024 * 1024, 1, 5000, 100 );
+		owner.setJdbcSessionContext(
+				new JdbcSessionContextStandardTestingImpl() {
+					@Override
+					public FetchSizeTuner getFetchSizeTuner() {
+						return fetchSizeTuner;
+					}
+				}
+		);
+
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		try {
+			jdbcSession.accept(
+					new SpecSupport<Void>( "{call rows(?)}" ) {
+						@Override
+						public void bindParameters(CallableStatement statement) throws SQLException {
+							statement.setInt( 1, 300 );
+						}
+					}
+			);
+			assertEquals( 301, fetchSizeTuner.determineFetchSize( "{call rows(?)}", -1 ) );
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	@Test
+	public void testUnsupportedSpecRejected() {
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		try {
+			jdbcSession.accept( new OperationSpec<Object>() {} );
+			fail( "Expecting failure" );
+		}
+		catch (HibernateException expected) {
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	@Test
+	public void testUpdateCounts() {
+		final List<Integer> updateCounts = new ArrayList<Integer>();
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		try {
+			jdbcSession.accept(
+					new SpecSupport<Void>( "update procedure_target set val = ?" ) {
+						@Override
+						public void bindParameters(CallableStatement statement) throws SQLException {
+							statement.setInt( 1, 5 );
+						}
+
+						@Override
+						public void processUpdateCount(int updateCountIndex, int updateCount) {
+							updateCounts.add( updateCount );
+						}
+					}
+			);
+			assertEquals( Collections.singletonList( 2 ), updateCounts );
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	@Test
+	public void testOutputParameters() {
+		// the H2 version used does not support OUT parameters, so simulate a driver which does
+		final List<String> registrations = new ArrayList<String>();
+		owner.setJdbcConnectionAccess(
+				new JdbcConnectionAccess() {
+					@Override
+					public Connection obtainConnection() throws SQLException {
+						return outParameterConnection( registrations );
+					}
+
+					@Override
+					public void releaseConnection(Connection connection) throws SQLException {
+					}
+				}
+		);
+
+		final OutputParameter<Integer> total = OutputParameter.integer( 1 );
+		final OutputParameter<String> label = OutputParameter.varchar( 3 );
+
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		try {
+			final OutputParameterValues outputs = jdbcSession.accept(
+					new SpecSupport<OutputParameterValues>( "{? = call summarize(?, ?)}", total, label ) {
+						@Override
+						public void bindParameters(CallableStatement statement) throws SQLException {
+							// position 3 is INOUT
+							statement.setString( 3, "in" );
+						}
+
+						@Override
+						public OutputParameterValues buildResult(OutputParameterValues outputs) {
+							return outputs;
+						}
+					}
+			);
+			assertEquals( Arrays.asList( "register:1:" + Types.INTEGER, "register:3:" + Types.VARCHAR ), registrations );
+			assertEquals( Integer.valueOf( 42 ), outputs.getValue( total ) );
+			assertNull( outputs.getValue( label ) );
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	private void execute(String sql) throws SQLException {
+		final Statement statement = setupConnection.createStatement();
+		try {
+			statement.execute( sql );
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	private static Connection outParameterConnection(final List<String> registrations) {
+		final CallableStatement statement = (CallableStatement) Proxy.newProxyInstance(
+				CallableStatementOperationSpecTests.class.getClassLoader(),
+				new Class[] { CallableStatement.class },
+				new InvocationHandler() {
+					private boolean wasNull;
+
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						final String name = method.getName();
+						if ( "registerOutParameter".equals( name ) ) {
+							registrations.add( "register:" + args[0] + ":" + args[1] );
+						}
+						else if ( "execute".equals( name ) || "getMoreResults".equals( name ) ) {
+							return false;
+						}
+						else if ( "getUpdateCount".equals( name ) ) {
+							return -1;
+						}
+						else if ( "getInt".equals( name ) ) {
+							wasNull = false;
+							return 42;
+						}
+						else if ( "getString".equals( name ) ) {
+							wasNull = true;
+							return null;
+						}
+						else if ( "wasNull".equals( name ) ) {
+							return wasNull;
+						}
+						else if ( "hashCode".equals( name ) ) {
+							return System.identityHashCode( proxy );
+						}
+						else if ( "equals".equals( name ) ) {
+							return proxy == args[0];
+						}
+						return null;
+					}
+				}
+		);
+		return (Connection) Proxy.newProxyInstance(
+				CallableStatementOperationSpecTests.class.getClassLoader(),
+				new Class[] { Connection.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ( "prepareCall".equals( method.getName() ) ) {
+							return statement;
+						}
+						if ( method.getReturnType() == boolean.class ) {
+							return false;
+						}
+						return null;
+					}
+				}
+		);
+	}
+
+	private abstract static class SpecSupport<R> implements CallableStatementOperationSpec<R> {
+		private final String sql;
+		private final List<OutputParameter<?>> outputParameters;
+
+		private SpecSupport(String sql, OutputParameter<?>... outputParameters) {
+			this.sql = sql;
+			this.outputParameters = Arrays.asList( outputParameters );
+		}
+
+		@Override
+		public String getSql() {
+			return sql;
+		}
+
+		@Override
+		public SqlHandle getSqlHandle() {
+			return null;
+		}
+
+		@Override
+		public List<OutputParameter<?>> getOutputParameters() {
+			return outputParameters;
+		}
+
+		@Override
+		public void processRow(int resultSetIndex, ResultSet resultSet) throws SQLException {
+		}
+
+		@Override
+		public void processUpdateCount(int updateCountIndex, int updateCount) {
+		}
+
+		@Override
+		public R buildResult(OutputParameterValues outputs) {
+			return null;
+		}
+	}
+}
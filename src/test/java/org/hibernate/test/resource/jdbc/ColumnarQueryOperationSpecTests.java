@@ -0,0 +1,295 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.resource.jdbc.ColumnBatch;
+import org.hibernate.resource.jdbc.ColumnarQueryOperationSpec;
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.jdbc.spi.SqlHandle;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import org.hibernate.test.resource.common.DatabaseConnectionInfo;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionContextStandardTestingImpl;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionOwnerTestingImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ColumnarQueryOperationSpec} and {@link ColumnBatch}
+ *
+ * @author Steve Ebersole
+ */
+public class ColumnarQueryOperationSpecTests {
+	private static final String SQL = "select id, quantity, price, created from measurement where id <= ? order by id";
+	private static final long BASE_MILLIS = Timestamp.valueOf( "2014-01-01 00:00:00" ).getTime();
+
+	private final JdbcSessionOwnerTestingImpl owner = new JdbcSessionOwnerTestingImpl();
+	private final ColumnBatch batch = new ColumnBatch(
+			64,
+			ColumnBatch.ColumnType.LONG,
+			ColumnBatch.ColumnType.INT,
+			ColumnBatch.ColumnType.DOUBLE,
+			ColumnBatch.ColumnType.TIMESTAMP
+	);
+
+	// also keeps the in-memory database alive for the duration of the test
+	private Connection setupConnection;
+	private JdbcSession jdbcSession;
+
+	@Before
+	public void setUp() throws SQLException {
+		setupConnection = DatabaseConnectionInfo.INSTANCE.makeConnection();
+		execute(
+				"create table measurement (id bigint not null primary key, quantity integer, price double, " +
+						"created timestamp)"
+		);
+		// every 10th row has NULL quantity and price
+		execute(
+				"insert into measurement select x, case when mod(x, 10) = 0 then null else x end, " +
+						"case when mod(x, 10) = 0 then null else x / 2.0 end, " +
+						"dateadd('SECOND', x, timestamp '2014-01-01 00:00:00') from system_range(1, 1000)"
+		);
+		jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		jdbcSession.close();
+		try {
+			execute( "drop table measurement" );
+		}
+		finally {
+			setupConnection.close();
+		}
+	}
+
+	@Test
+	public void testColumnsExtracted() {
+		final Totals totals = jdbcSession.accept( new TotalsSpec( 1000 ) );
+
+		assertEquals( 1000, totals.rows );
+		assertEquals( 1000L * 1001 / 2, totals.idSum );
+		// the NULLs (multiples of 10) are left out
+		assertEquals( 1000L * 1001 / 2 - 10L * 100 * 101 / 2, totals.quantitySum );
+		assertEquals( ( 1000L * 1001 / 2 - 10L * 100 * 101 / 2 ) / 2.0, totals.priceSum, 0.001 );
+		assertEquals( 100, totals.nullQuantities );
+		assertEquals( 100, totals.nullPrices );
+		assertEquals( 1000L * 1001 / 2 * 1000, totals.createdOffsetMillisSum );
+
+		// 15 full batches and one of 40 rows, all in the same (re-used) batch
+		assertEquals( 16, totals.batchSizes.size() );
+		assertEquals( Integer.valueOf( 40 ), totals.batchSizes.get( 15 ) );
+		assertFalse( jdbcSession.getLogicalConnection().getResourceRegistry().hasRegisteredResources() );
+	}
+
+	@Test
+	public void testNoEmptyBatches() {
+		// an exact multiple of the batch size
+		final Totals totals = jdbcSession.accept( new TotalsSpec( 128 ) );
+		assertEquals( 128, totals.rows );
+		assertEquals( 2, totals.batchSizes.size() );
+
+		// and nothing at all
+		assertEquals( 0, jdbcSession.accept( new TotalsSpec( 0 ) ).batchSizes.size() );
+	}
+
+	@Test
+	public void testBatchReusedAcrossExecutions() {
+		final Totals first = jdbcSession.accept( new TotalsSpec( 100 ) );
+		final Totals second = jdbcSession.accept( new TotalsSpec( 30 ) );
+
+		assertEquals( 100L * 101 / 2, first.idSum );
+		assertEquals( 30L * 31 / 2, second.idSum );
+		// NULL markers from the previous execution do not leak
+		assertEquals( 3, second.nullQuantities );
+	}
+
+	@Test
+	public void testSqlHandleUsed() {
+		final CountingInspector inspector = new CountingInspector();
+		final JdbcSessionContextStandardTestingImpl context = inspectingContext( inspector );
+		final JdbcSessionFactory jdbcSessionFactory = new JdbcSessionFactory();
+		final SqlHandle sqlHandle = jdbcSessionFactory.registerSql( context, SQL );
+		assertEquals( 1, inspector.count );
+
+		owner.setJdbcSessionContext( context );
+		final JdbcSession inspectingSession = jdbcSessionFactory.create( owner );
+		try {
+			// inspected at registration only
+			assertEquals( 100, inspectingSession.accept( new TotalsSpec( 100, sqlHandle ) ).rows );
+			assertEquals( 30, inspectingSession.accept( new TotalsSpec( 30, sqlHandle ) ).rows );
+			assertEquals( 1, inspector.count );
+
+			// a session using a different StatementInspector still gets its own inspection
+			final CountingInspector otherInspector = new CountingInspector();
+			owner.setJdbcSessionContext( inspectingContext( otherInspector ) );
+			final JdbcSession otherSession = jdbcSessionFactory.create( owner );
+			try {
+				assertEquals( 100, otherSession.accept( new TotalsSpec( 100, sqlHandle ) ).rows );
+				assertEquals( 1, otherInspector.count );
+				assertEquals( 1, inspector.count );
+			}
+			finally {
+				otherSession.close();
+			}
+		}
+		finally {
+			inspectingSession.close();
+		}
+	}
+
+	@Test
+	public void testColumnTypeChecked() {
+		try {
+			batch.getDoubles( 0 );
+			fail( "Expecting failure" );
+		}
+		catch (IllegalArgumentException expected) {
+		}
+		assertEquals( batch.getCapacity(), batch.getLongs( 3 ).length );
+	}
+
+	private static JdbcSessionContextStandardTestingImpl inspectingContext(final StatementInspector inspector) {
+		return new JdbcSessionContextStandardTestingImpl() {
+			@Override
+			public StatementInspector getStatementInspector() {
+				return inspector;
+			}
+		};
+	}
+
+	private void execute(String sql) throws SQLException {
+		final Statement statement = setupConnection.createStatement();
+		try {
+			statement.execute( sql );
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	private static class Totals {
+		private long rows;
+		private long idSum;
+		private long quantitySum;
+		private double priceSum;
+		private long createdOffsetMillisSum;
+		private int nullQuantities;
+		private int nullPrices;
+		private final List<Integer> batchSizes = new ArrayList<Integer>();
+	}
+
+	private class TotalsSpec implements ColumnarQueryOperationSpec<Totals> {
+		private final int maxId;
+		private final SqlHandle sqlHandle;
+		private final Totals totals = new Totals();
+
+		private TotalsSpec(int maxId) {
+			this( maxId, null );
+		}
+
+		private TotalsSpec(int maxId, SqlHandle sqlHandle) {
+			this.maxId = maxId;
+			this.sqlHandle = sqlHandle;
+		}
+
+		@Override
+		public String getSql() {
+			return SQL;
+		}
+
+		@Override
+		public SqlHandle getSqlHandle() {
+			return sqlHandle;
+		}
+
+		@Override
+		public ColumnBatch getColumnBatch() {
+			return batch;
+		}
+
+		@Override
+		public void bindParameters(PreparedStatement statement) throws SQLException {
+			statement.setLong( 1, maxId );
+		}
+
+		@Override
+		public void processBatch(ColumnBatch batch) {
+			assertSame( ColumnarQueryOperationSpecTests.this.batch, batch );
+			totals.batchSizes.add( batch.getRowCount() );
+
+			final long[] ids = batch.getLongs( 0 );
+			final int[] quantities = batch.getInts( 1 );
+			final double[] prices = batch.getDoubles( 2 );
+			final long[] created = batch.getLongs( 3 );
+			for ( int row = 0; row < batch.getRowCount(); row++ ) {
+				totals.rows++;
+				totals.idSum += ids[row];
+				totals.createdOffsetMillisSum += created[row] - BASE_MILLIS;
+				if ( batch.isNull( 1, row ) ) {
+					totals.nullQuantities++;
+				}
+				else {
+					totals.quantitySum += quantities[row];
+				}
+				if ( batch.isNull( 2, row ) ) {
+					totals.nullPrices++;
+				}
+				else {
+					totals.priceSum += prices[row];
+				}
+			}
+		}
+
+		@Override
+		public Totals buildResult() {
+			return totals;
+		}
+	}
+
+	private static class CountingInspector implements StatementInspector {
+		private int count;
+
+		@Override
+		public String inspect(String sql) {
+			count++;
+			return "/* app */ " + sql;
+		}
+	}
+}
@@ -0,0 +1,251 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.internal.JdbcConnectionAccessJtaSharingImpl;
+import org.hibernate.resource.jdbc.internal.LogicalConnectionManagedImpl;
+import org.hibernate.resource.jdbc.spi.JdbcSessionContext;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.transaction.TransactionCoordinatorBuilderFactory;
+
+import org.hibernate.test.resource.jdbc.common.CountingConnectionAccess;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionContextStandardTestingImpl;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionOwnerTestingImpl;
+import org.hibernate.test.resource.transaction.common.JtaPlatformStandardTestingImpl;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link org.hibernate.resource.jdbc.spi.JdbcSessionContext.ConnectionAcquisitionMode#PREFETCH}
+ *
+ * @author Steve Ebersole
+ */
+public class ConnectionPrefetchTests {
+	private final CountingConnectionAccess connectionAccess = new CountingConnectionAccess();
+
+	private LogicalConnectionManagedImpl buildLogicalConnection(final Executor executor) {
+		return new LogicalConnectionManagedImpl( connectionAccess, prefetchingContext( executor ) );
+	}
+
+	private static JdbcSessionContext prefetchingContext(final Executor executor) {
+		return new JdbcSessionContextStandardTestingImpl() {
+			@Override
+			public ConnectionAcquisitionMode getConnectionAcquisitionMode() {
+				return ConnectionAcquisitionMode.PREFETCH;
+			}
+
+			@Override
+			public Executor getAsyncExecutor() {
+				return executor;
+			}
+		};
+	}
+
+	@Test
+	public void testPrefetchedConnectionIsUsed() {
+		final QueueingExecutor executor = new QueueingExecutor();
+		final LogicalConnectionManagedImpl logicalConnection = buildLogicalConnection( executor );
+		try {
+			assertEquals( 1, executor.tasks.size() );
+			executor.runAll();
+			assertEquals( 1, connectionAccess.getObtainCount() );
+			assertFalse( logicalConnection.isPhysicallyConnected() );
+
+			final Connection connection = logicalConnection.getPhysicalConnection();
+			assertNotNull( connection );
+			assertSame( connectionAccess.getLastObtained(), connection );
+			assertEquals( 1, connectionAccess.getObtainCount() );
+		}
+		finally {
+			logicalConnection.close();
+		}
+		assertEquals( 1, connectionAccess.getReleaseCount() );
+	}
+
+	@Test
+	public void testPrefetchedConnectionReleasedOnClose() {
+		final QueueingExecutor executor = new QueueingExecutor();
+		final LogicalConnectionManagedImpl logicalConnection = buildLogicalConnection( executor );
+		executor.runAll();
+		logicalConnection.close();
+
+		assertEquals( 1, connectionAccess.getObtainCount() );
+		assertEquals( 1, connectionAccess.getReleaseCount() );
+	}
+
+	@Test
+	public void testPrefetchNotStartedBeforeClose() {
+		final QueueingExecutor executor = new QueueingExecutor();
+		final LogicalConnectionManagedImpl logicalConnection = buildLogicalConnection( executor );
+		logicalConnection.close();
+		executor.runAll();
+
+		assertEquals( 0, connectionAccess.getObtainCount() );
+		assertEquals( 0, connectionAccess.getReleaseCount() );
+	}
+
+	@Test
+	public void testPrefetchNotStartedBeforeFirstUse() {
+		final QueueingExecutor executor = new QueueingExecutor();
+		final LogicalConnectionManagedImpl logicalConnection = buildLogicalConnection( executor );
+		try {
+			// the owner gets there first and acquires the Connection itself; the late task must not acquire another
+			logicalConnection.getPhysicalConnection();
+			executor.runAll();
+			assertEquals( 1, connectionAccess.getObtainCount() );
+			assertTrue( logicalConnection.isPhysicallyConnected() );
+		}
+		finally {
+			logicalConnection.close();
+		}
+		assertEquals( 1, connectionAccess.getReleaseCount() );
+	}
+
+	@Test
+	public void testPrefetchOnSeparateThread() throws Exception {
+		final LogicalConnectionManagedImpl logicalConnection = buildLogicalConnection(
+				new Executor() {
+					@Override
+					public void execute(Runnable command) {
+						new Thread( command ).start();
+					}
+				}
+		);
+		try {
+			assertNotNull( logicalConnection.getPhysicalConnection() );
+			assertEquals( 1, connectionAccess.getObtainCount() );
+		}
+		finally {
+			logicalConnection.close();
+		}
+		assertEquals( 1, connectionAccess.getReleaseCount() );
+	}
+
+	@Test
+	public void testRejectedPrefetchFallsBackToAsNeeded() {
+		final LogicalConnectionManagedImpl logicalConnection = buildLogicalConnection(
+				new Executor() {
+					@Override
+					public void execute(Runnable command) {
+						throw new RejectedExecutionException();
+					}
+				}
+		);
+		try {
+			assertEquals( 0, connectionAccess.getObtainCount() );
+			assertNotNull( logicalConnection.getPhysicalConnection() );
+			assertEquals( 1, connectionAccess.getObtainCount() );
+		}
+		finally {
+			logicalConnection.close();
+		}
+	}
+
+	@Test
+	public void testNoPrefetchForJtaConnectionSharing() {
+		final QueueingExecutor executor = new QueueingExecutor();
+		final LogicalConnectionManagedImpl logicalConnection = new LogicalConnectionManagedImpl(
+				new JdbcConnectionAccessJtaSharingImpl(
+						connectionAccess,
+						JtaPlatformStandardTestingImpl.INSTANCE.synchronizationRegistry()
+				),
+				prefetchingContext( executor )
+		);
+		try {
+			assertTrue( executor.tasks.isEmpty() );
+			assertNotNull( logicalConnection.getPhysicalConnection() );
+			assertEquals( 1, connectionAccess.getObtainCount() );
+		}
+		finally {
+			logicalConnection.close();
+		}
+		assertEquals( 1, connectionAccess.getReleaseCount() );
+	}
+
+	@Test
+	public void testNoPrefetchForJtaTransactionCoordination() {
+		final QueueingExecutor executor = new QueueingExecutor();
+		final JdbcSessionOwnerTestingImpl owner = new JdbcSessionOwnerTestingImpl();
+		owner.setJdbcSessionContext( prefetchingContext( executor ) );
+		owner.setJdbcConnectionAccess( connectionAccess );
+		owner.setTransactionCoordinatorBuilder(
+				TransactionCoordinatorBuilderFactory.INSTANCE.forJta()
+						.setJtaPlatform( JtaPlatformStandardTestingImpl.INSTANCE )
+						.setPerformJtaThreadTracking( false )
+		);
+
+		final JdbcSession jdbcSession = new JdbcSessionFactory().create( owner );
+		try {
+			assertTrue( executor.tasks.isEmpty() );
+			assertEquals( 0, connectionAccess.getObtainCount() );
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	@Test
+	public void testPrefetchForResourceLocalTransactionCoordination() {
+		final QueueingExecutor executor = new QueueingExecutor();
+		final JdbcSessionOwnerTestingImpl owner = new JdbcSessionOwnerTestingImpl();
+		owner.setJdbcSessionContext( prefetchingContext( executor ) );
+		owner.setJdbcConnectionAccess( connectionAccess );
+
+		final JdbcSession jdbcSession = new JdbcSessionFactory().create( owner );
+		try {
+			assertEquals( 1, executor.tasks.size() );
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	private static class QueueingExecutor implements Executor {
+		private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+		@Override
+		public void execute(Runnable command) {
+			tasks.add( command );
+		}
+
+		void runAll() {
+			for ( Runnable task : tasks ) {
+				task.run();
+			}
+			tasks.clear();
+		}
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.hibernate.resource.jdbc.spi.FetchSizeTuner;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.jdbc.spi.SqlHandle;
+
+import org.hibernate.test.resource.common.DatabaseConnectionInfo;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionContextStandardTestingImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link FetchSizeTuner}
+ *
+ * @author Steve Ebersole
+ */
+public class FetchSizeTunerTests {
+	private static final String NARROW = "select x from system_range(1, ?)";
+	private static final String WIDE = "select id, payload from wide_rows where id <= ?";
+	private static final String THIRD = "select x, x * 2 from system_range(1, ?)";
+
+	private Connection connection;
+
+	@Before
+	public void setUp() throws SQLException {
+		connection = DatabaseConnectionInfo.INSTANCE.makeConnection();
+		execute( "create table wide_rows (id bigint not null primary key, payload varchar(2000))" );
+		execute( "insert into wide_rows select x, 'row-' || x from system_range(1, 1000)" );
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		try {
+			execute( "drop table wide_rows" );
+		}
+		finally {
+			connection.close();
+		}
+	}
+
+	@Test
+	public void testDefaultWithoutHistory() {
+		final FetchSizeTuner tuner = new FetchSizeTuner();
+		assertEquals( 25, tuner.determineFetchSize( NARROW, 25 ) );
+		assertEquals( -1, tuner.determineFetchSize( NARROW, -1 ) );
+	}
+
+	@Test
+	public void testSmallResultsReadInOneRoundTrip() throws SQLException {
+		final FetchSizeTuner tuner = new FetchSizeTuner( 1024 * 1024, 1, 5000, 100 );
+		record( tuner, NARROW, 3 );
+		assertEquals( 4, tuner.determineFetchSize( NARROW, 1000 ) );
+
+		final FetchSizeTuner boundedTuner = new FetchSizeTuner( 1024 * 1024, 10, 5000, 100 );
+		record( boundedTuner, NARROW, 3 );
+		assertEquals( 10, boundedTuner.determineFetchSize( NARROW, 1000 ) );
+	}
+
+	@Test
+	public void testLargeResultsBoundedByMaximum() throws SQLException {
+		final FetchSizeTuner tuner = new FetchSizeTuner( 1024 * 1024, 1, 500, 100 );
+		record( tuner, NARROW, 2000 );
+		assertEquals( 500, tuner.determineFetchSize( NARROW, 10 ) );
+	}
+
+	@Test
+	public void testWideRowsBoundedByMemoryBudget() throws SQLException {
+		final FetchSizeTuner tuner = new FetchSizeTuner( 100000, 1, 5000, 100 );
+		record( tuner, NARROW, 1000 );
+		record( tuner, WIDE, 1000 );
+
+		// 16 bytes per row
+		assertEquals( 1001, tuner.determineFetchSize( NARROW, 10 ) );
+		// 2024 bytes per row
+		assertEquals( 100000 / 2024, tuner.determineFetchSize( WIDE, 10 ) );
+	}
+
+	@Test
+	public void testAveragedOverExecutions() throws SQLException {
+		final FetchSizeTuner tuner = new FetchSizeTuner( 1024 * 1024, 1, 5000, 100 );
+		record( tuner, NARROW, 800 );
+		for ( int i = 0; i < 30; i++ ) {
+			record( tuner, NARROW, 0 );
+		}
+		// converges towards the recent executions, without jumping straight there
+		final int fetchSize = tuner.determineFetchSize( NARROW, 10 );
+		assertTrue( fetchSize > 1 && fetchSize < 100 );
+	}
+
+	@Test
+	public void testTrackedStatementsBounded() throws SQLException {
+		final FetchSizeTuner tuner = new FetchSizeTuner( 1024 * 1024, 1, 5000, 1 );
+		record( tuner, NARROW, 3 );
+		record( tuner, WIDE, 3 );
+		assertEquals( 1, tuner.getTrackedStatementCount() );
+		// the older statement made room for the new one
+		assertEquals( 10, tuner.determineFetchSize( NARROW, 10 ) );
+		assertEquals( 4, tuner.determineFetchSize( WIDE, 10 ) );
+	}
+
+	@Test
+	public void testRecentlyUsedStatementsKept() throws SQLException {
+		final FetchSizeTuner tuner = new FetchSizeTuner( 1024 * 1024, 1, 5000, 4 );
+		record( tuner, NARROW, 3 );
+		record( tuner, WIDE, 5 );
+		// using NARROW keeps it around, while WIDE ages out
+		assertEquals( 4, tuner.determineFetchSize( NARROW, 10 ) );
+		record( tuner, THIRD, 7 );
+
+		assertEquals( 2, tuner.getTrackedStatementCount() );
+		assertEquals( 4, tuner.determineFetchSize( NARROW, 10 ) );
+		assertEquals( 10, tuner.determineFetchSize( WIDE, 10 ) );
+		assertEquals( 8, tuner.determineFetchSize( THIRD, 10 ) );
+	}
+
+	@Test
+	public void testKeyedBySqlHandle() throws SQLException {
+		final FetchSizeTuner tuner = new FetchSizeTuner( 1024 * 1024, 1, 5000, 100 );
+		final SqlHandle handle = new JdbcSessionFactory().registerSql( JdbcSessionContextStandardTestingImpl.INSTANCE, NARROW );
+
+		final Statement statement = connection.createStatement();
+		try {
+			final ResultSet resultSet = statement.executeQuery( NARROW.replace( "?", "3" ) );
+			long rowCount = 0;
+			while ( resultSet.next() ) {
+				rowCount++;
+			}
+			tuner.recordResults( handle, resultSet, rowCount );
+		}
+		finally {
+			statement.close();
+		}
+
+		assertEquals( 4, tuner.determineFetchSize( handle, 10 ) );
+		// the statistics of the handle and of the plain SQL are kept apart
+		assertEquals( 10, tuner.determineFetchSize( NARROW, 10 ) );
+	}
+
+	private void execute(String sql) throws SQLException {
+		final Statement statement = connection.createStatement();
+		try {
+			statement.execute( sql );
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	private void record(FetchSizeTuner tuner, String sql, int rows) throws SQLException {
+		final Statement statement = connection.createStatement();
+		try {
+			final ResultSet resultSet = statement.executeQuery( sql.replace( "?", Integer.toString( Math.max( rows, 1 ) ) ) );
+			long rowCount = 0;
+			while ( rowCount < rows && resultSet.next() ) {
+				rowCount++;
+			}
+			tuner.recordResults( sql, resultSet, rowCount );
+		}
+		finally {
+			statement.close();
+		}
+	}
+}
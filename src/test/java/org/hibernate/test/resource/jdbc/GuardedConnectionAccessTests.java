@@ -0,0 +1,222 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.resource.jdbc.internal.JdbcConnectionAccessGuardedImpl;
+import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
+
+import org.hibernate.test.resource.common.DatabaseConnectionInfo;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link JdbcConnectionAccessGuardedImpl}
+ *
+ * @author Steve Ebersole
+ */
+public class GuardedConnectionAccessTests {
+	private final ControllableConnectionAccess delegate = new ControllableConnectionAccess();
+	private final AtomicInteger timeouts = new AtomicInteger();
+
+	@Test
+	public void testCircuitOpensAfterConsecutiveFailures() throws Exception {
+		final JdbcConnectionAccessGuardedImpl access = new JdbcConnectionAccessGuardedImpl(
+				delegate, 1, 10, 10, 3, 1, TimeUnit.HOURS
+		);
+
+		delegate.failing = true;
+		for ( int i = 0; i < 3; i++ ) {
+			try {
+				access.obtainConnection();
+				fail( "Expecting failure" );
+			}
+			catch (SQLException expected) {
+				assertFalse( expected instanceof SQLTransientConnectionException );
+			}
+		}
+		assertTrue( access.isCircuitOpen() );
+		assertEquals( 3, delegate.attempts.get() );
+
+		// now it fails fast, without bothering the delegate
+		delegate.failing = false;
+		try {
+			access.obtainConnection();
+			fail( "Expecting fail-fast" );
+		}
+		catch (SQLTransientConnectionException expected) {
+		}
+		assertEquals( 3, delegate.attempts.get() );
+	}
+
+	@Test
+	public void testHalfOpenTrial() throws Exception {
+		// zero open period, so that the very next acquisition is the trial
+		final JdbcConnectionAccessGuardedImpl access = new JdbcConnectionAccessGuardedImpl(
+				delegate, 1, 10, 10, 1, 0, TimeUnit.SECONDS
+		);
+
+		delegate.failing = true;
+		try {
+			access.obtainConnection();
+			fail( "Expecting failure" );
+		}
+		catch (SQLException expected) {
+		}
+		assertTrue( access.isCircuitOpen() );
+
+		// failed trial re-opens the circuit
+		try {
+			access.obtainConnection();
+			fail( "Expecting failure" );
+		}
+		catch (SQLException expected) {
+		}
+		assertTrue( access.isCircuitOpen() );
+		assertEquals( 2, delegate.attempts.get() );
+
+		// successful trial closes it
+		delegate.failing = false;
+		access.releaseConnection( access.obtainConnection() );
+		assertFalse( access.isCircuitOpen() );
+	}
+
+	@Test
+	public void testTimeoutAndQueueDepth() throws Exception {
+		final JdbcConnectionAccessGuardedImpl access = new JdbcConnectionAccessGuardedImpl(
+				delegate, 1, 10, 200, 100, 1, TimeUnit.MILLISECONDS
+		);
+
+		// occupy the single acquisition slot
+		delegate.block = new CountDownLatch( 1 );
+		final Thread holder = startAcquisition( access );
+		waitFor( delegate.entered, 1 );
+
+		final Thread waiter = startAcquisition( access );
+		final long deadline = System.currentTimeMillis() + 5000;
+		while ( access.getQueueDepth() != 1 && System.currentTimeMillis() < deadline ) {
+			Thread.sleep( 5 );
+		}
+		assertEquals( 1, access.getQueueDepth() );
+		waiter.join();
+		assertEquals( 0, access.getQueueDepth() );
+
+		delegate.block.countDown();
+		holder.join();
+		assertEquals( 1, delegate.attempts.get() );
+		assertEquals( 1, timeouts.get() );
+	}
+
+	@Test
+	public void testSheddingBeyondMaxWaiters() throws Exception {
+		final JdbcConnectionAccessGuardedImpl access = new JdbcConnectionAccessGuardedImpl(
+				delegate, 1, 0, 10, 100, 1, TimeUnit.SECONDS
+		);
+
+		delegate.block = new CountDownLatch( 1 );
+		final Thread holder = startAcquisition( access );
+		waitFor( delegate.entered, 1 );
+
+		try {
+			access.obtainConnection();
+			fail( "Expecting load to be shed" );
+		}
+		catch (SQLTransientConnectionException expected) {
+		}
+		finally {
+			delegate.block.countDown();
+			holder.join();
+		}
+		assertFalse( access.isCircuitOpen() );
+	}
+
+	private Thread startAcquisition(final JdbcConnectionAccess access) {
+		final Thread thread = new Thread(
+				new Runnable() {
+					@Override
+					public void run() {
+						try {
+							access.releaseConnection( access.obtainConnection() );
+						}
+						catch (SQLTimeoutException e) {
+							timeouts.incrementAndGet();
+						}
+						catch (SQLException ignore) {
+						}
+					}
+				}
+		);
+		thread.start();
+		return thread;
+	}
+
+	private static void waitFor(AtomicInteger counter, int expected) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 5000;
+		while ( counter.get() < expected && System.currentTimeMillis() < deadline ) {
+			Thread.sleep( 5 );
+		}
+		assertEquals( expected, counter.get() );
+	}
+
+	private static class ControllableConnectionAccess implements JdbcConnectionAccess {
+		private final AtomicInteger attempts = new AtomicInteger();
+		private final AtomicInteger entered = new AtomicInteger();
+		private volatile boolean failing;
+		private volatile CountDownLatch block;
+
+		@Override
+		public Connection obtainConnection() throws SQLException {
+			attempts.incrementAndGet();
+			entered.incrementAndGet();
+			if ( block != null ) {
+				try {
+					block.await();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if ( failing ) {
+				throw new SQLException( "Database unavailable" );
+			}
+			return DatabaseConnectionInfo.INSTANCE.makeConnection();
+		}
+
+		@Override
+		public void releaseConnection(Connection connection) throws SQLException {
+			connection.close();
+		}
+	}
+}
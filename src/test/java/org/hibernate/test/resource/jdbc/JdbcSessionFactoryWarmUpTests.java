@@ -0,0 +1,193 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.JDBCException;
+import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import org.hibernate.test.resource.common.DatabaseConnectionInfo;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionContextStandardTestingImpl;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionOwnerTestingImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link JdbcSessionFactory#warmUp}
+ *
+ * @author Steve Ebersole
+ */
+public class JdbcSessionFactoryWarmUpTests {
+	private final List<String> prepared = Collections.synchronizedList( new ArrayList<String>() );
+	private final JdbcSessionOwnerTestingImpl owner = new JdbcSessionOwnerTestingImpl();
+
+	private int outstanding;
+	private int maxOutstanding;
+	private int releaseCount;
+
+	@Before
+	public void setUp() {
+		owner.setJdbcConnectionAccess(
+				new JdbcConnectionAccess() {
+					@Override
+					public Connection obtainConnection() throws SQLException {
+						outstanding++;
+						maxOutstanding = Math.max( maxOutstanding, outstanding );
+						return recordingConnection( DatabaseConnectionInfo.INSTANCE.makeConnection() );
+					}
+
+					@Override
+					public void releaseConnection(Connection connection) throws SQLException {
+						outstanding--;
+						releaseCount++;
+						connection.close();
+					}
+				}
+		);
+		final StatementInspector statementInspector = new StatementInspector() {
+			@Override
+			public String inspect(String sql) {
+				return sql.contains( "/*rewrite*/" ) ? "select 2 from dual" : null;
+			}
+		};
+		owner.setJdbcSessionContext(
+				new JdbcSessionContextStandardTestingImpl() {
+					@Override
+					public StatementInspector getStatementInspector() {
+						return statementInspector;
+					}
+				}
+		);
+	}
+
+	@Test
+	public void testWarmUp() {
+		final JdbcSessionFactory jdbcSessionFactory = new JdbcSessionFactory();
+		jdbcSessionFactory.registerWarmUpStatement( "select 1 from dual" );
+		jdbcSessionFactory.registerWarmUpStatement( "select /*rewrite*/ 1 from dual" );
+		assertFalse( jdbcSessionFactory.isWarmedUp( owner.getJdbcConnectionAccess() ) );
+
+		jdbcSessionFactory.warmUp( owner, 3 );
+
+		assertTrue( jdbcSessionFactory.isWarmedUp( owner.getJdbcConnectionAccess() ) );
+		assertEquals( 3, maxOutstanding );
+		assertEquals( 3, releaseCount );
+		assertEquals( 6, prepared.size() );
+		assertEquals( 3, Collections.frequency( prepared, "select 1 from dual" ) );
+		assertEquals( 3, Collections.frequency( prepared, "select 2 from dual" ) );
+	}
+
+	@Test
+	public void testWarmUpTrackedPerConnectionAccess() {
+		final JdbcSessionFactory jdbcSessionFactory = new JdbcSessionFactory();
+		jdbcSessionFactory.registerWarmUpStatement( "select 1 from dual" );
+		jdbcSessionFactory.warmUp( owner, 1 );
+
+		final JdbcSessionOwnerTestingImpl otherOwner = new JdbcSessionOwnerTestingImpl();
+		assertTrue( jdbcSessionFactory.isWarmedUp( owner.getJdbcConnectionAccess() ) );
+		assertFalse( jdbcSessionFactory.isWarmedUp( otherOwner.getJdbcConnectionAccess() ) );
+
+		jdbcSessionFactory.warmUp( otherOwner, 1 );
+		assertTrue( jdbcSessionFactory.isWarmedUp( otherOwner.getJdbcConnectionAccess() ) );
+	}
+
+	@Test
+	public void testWarmUpSqlHandles() {
+		final JdbcSessionFactory jdbcSessionFactory = new JdbcSessionFactory();
+		jdbcSessionFactory.registerWarmUpStatement( "select 1 from dual" );
+		// the same SQL as a String and as a handle is prepared only once
+		jdbcSessionFactory.registerWarmUpStatement(
+				jdbcSessionFactory.registerSql( owner.getJdbcSessionContext(), "select 1 from dual" )
+		);
+		jdbcSessionFactory.registerWarmUpStatement(
+				jdbcSessionFactory.registerSql(
+						owner.getJdbcSessionContext(),
+						"select /*rewrite*/ 1 from dual",
+						ResultSet.TYPE_SCROLL_INSENSITIVE,
+						ResultSet.CONCUR_READ_ONLY
+				)
+		);
+
+		jdbcSessionFactory.warmUp( owner, 2 );
+
+		assertEquals( 4, prepared.size() );
+		assertEquals( 2, Collections.frequency( prepared, "select 1 from dual" ) );
+		assertEquals( 2, Collections.frequency( prepared, "select 2 from dual" ) );
+	}
+
+	@Test
+	public void testFailedWarmUpIsNotReady() {
+		final JdbcSessionFactory jdbcSessionFactory = new JdbcSessionFactory();
+		jdbcSessionFactory.registerWarmUpStatement( "select 1 from dual" );
+		jdbcSessionFactory.registerWarmUpStatement( "select * from no_such_table" );
+
+		try {
+			jdbcSessionFactory.warmUp( owner, 2 );
+			fail( "Expecting failure" );
+		}
+		catch (JDBCException expected) {
+		}
+
+		assertFalse( jdbcSessionFactory.isWarmedUp( owner.getJdbcConnectionAccess() ) );
+		assertEquals( 0, outstanding );
+	}
+
+	private Connection recordingConnection(final Connection connection) {
+		return (Connection) Proxy.newProxyInstance(
+				getClass().getClassLoader(),
+				new Class[] { Connection.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ( "prepareStatement".equals( method.getName() ) ) {
+							prepared.add( (String) args[0] );
+						}
+						try {
+							return method.invoke( connection, args );
+						}
+						catch (InvocationTargetException e) {
+							throw e.getTargetException();
+						}
+					}
+				}
+		);
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.jdbc.spi.LogicalConnectionImplementor;
+import org.hibernate.resource.transaction.TransactionCoordinator;
+
+import org.hibernate.test.resource.common.DatabaseConnectionInfo;
+import org.hibernate.test.resource.common.SynchronizationCollectorImpl;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionOwnerTestingImpl;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for recycling of JdbcSession instances by JdbcSessionFactory
+ *
+ * @author Steve Ebersole
+ */
+public class JdbcSessionRecyclingTests {
+	private final JdbcSessionFactory jdbcSessionFactory = new JdbcSessionFactory( 2 );
+	private final JdbcSessionOwnerTestingImpl owner = new JdbcSessionOwnerTestingImpl();
+
+	@Test
+	public void testClosedSessionIsReused() throws Exception {
+		final JdbcSession jdbcSession = jdbcSessionFactory.create( owner );
+		final TransactionCoordinator transactionCoordinator = jdbcSession.getTransactionCoordinator();
+		transactionCoordinator.getTransactionDriverControl().begin();
+		physicalConnection( jdbcSession ).createStatement().execute( "select 1 from dual" );
+		transactionCoordinator.getTransactionDriverControl().commit();
+		jdbcSession.close();
+
+		final JdbcSession reused = jdbcSessionFactory.create( owner );
+		try {
+			assertSame( jdbcSession, reused );
+			assertTrue( reused.isOpen() );
+			assertTrue( reused.getLogicalConnection().isOpen() );
+			assertFalse( reused.getLogicalConnection().isPhysicallyConnected() );
+			assertFalse( reused.getLogicalConnection().getResourceRegistry().hasRegisteredResources() );
+			assertSame( transactionCoordinator, reused.getTransactionCoordinator() );
+
+			// should be fully usable again
+			reused.getTransactionCoordinator().getTransactionDriverControl().begin();
+			assertFalse( physicalConnection( reused ).getAutoCommit() );
+			reused.getTransactionCoordinator().getTransactionDriverControl().rollback();
+		}
+		finally {
+			reused.close();
+		}
+	}
+
+	@Test
+	public void testStaleTransactionControlIsInvalidated() throws Exception {
+		final JdbcSession jdbcSession = jdbcSessionFactory.create( owner );
+		final TransactionCoordinator.LocalInflow staleControl = jdbcSession.getTransactionCoordinator().getTransactionDriverControl();
+		jdbcSession.close();
+
+		final JdbcSession reused = jdbcSessionFactory.create( owner );
+		try {
+			assertSame( jdbcSession, reused );
+			try {
+				staleControl.begin();
+				fail( "Expecting IllegalStateException" );
+			}
+			catch (IllegalStateException expected) {
+			}
+			assertFalse( reused.getLogicalConnection().isPhysicallyConnected() );
+		}
+		finally {
+			reused.close();
+		}
+	}
+
+	@Test
+	public void testSessionWithPendingSynchronizationsIsNotReused() throws Exception {
+		final JdbcSession jdbcSession = jdbcSessionFactory.create( owner );
+		jdbcSession.getTransactionCoordinator().getLocalSynchronizations().registerSynchronization(
+				new SynchronizationCollectorImpl()
+		);
+		jdbcSession.close();
+
+		final JdbcSession other = jdbcSessionFactory.create( owner );
+		try {
+			assertNotSame( jdbcSession, other );
+		}
+		finally {
+			other.close();
+		}
+	}
+
+	@Test
+	public void testSessionIsOnlyReusedForSameConfiguration() throws Exception {
+		final JdbcSession jdbcSession = jdbcSessionFactory.create( owner );
+		jdbcSession.close();
+
+		final JdbcSessionOwnerTestingImpl otherOwner = new JdbcSessionOwnerTestingImpl();
+		otherOwner.setJdbcConnectionAccess(
+				new JdbcConnectionAccess() {
+					@Override
+					public Connection obtainConnection() throws SQLException {
+						return DatabaseConnectionInfo.INSTANCE.makeConnection();
+					}
+
+					@Override
+					public void releaseConnection(Connection connection) throws SQLException {
+						connection.close();
+					}
+				}
+		);
+		final JdbcSession other = jdbcSessionFactory.create( otherOwner );
+		other.close();
+		assertNotSame( jdbcSession, other );
+	}
+
+	@Test
+	public void testStandardFactoryDoesNotRecycle() throws Exception {
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		jdbcSession.close();
+
+		final JdbcSession other = JdbcSessionFactory.INSTANCE.create( owner );
+		other.close();
+		assertNotSame( jdbcSession, other );
+	}
+
+	private static Connection physicalConnection(JdbcSession jdbcSession) {
+		return ( (LogicalConnectionImplementor) jdbcSession.getLogicalConnection() ).getPhysicalConnection();
+	}
+}
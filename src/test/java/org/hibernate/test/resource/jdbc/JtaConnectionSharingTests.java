@@ -0,0 +1,248 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Connection;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionManager;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.internal.JdbcConnectionAccessJtaSharingImpl;
+import org.hibernate.resource.jdbc.internal.JdbcSessionImpl;
+import org.hibernate.resource.jdbc.internal.LogicalConnectionManagedImpl;
+import org.hibernate.resource.jdbc.spi.LogicalConnectionImplementor;
+import org.hibernate.resource.transaction.TransactionCoordinatorBuilderFactory;
+
+import org.hibernate.test.resource.jdbc.common.CountingConnectionAccess;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionContextStandardTestingImpl;
+import org.hibernate.test.resource.transaction.common.JtaPlatformStandardTestingImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for sharing a JDBC Connection between JdbcSessions within a JTA transaction
+ *
+ * @author Steve Ebersole
+ */
+public class JtaConnectionSharingTests {
+	private CountingConnectionAccess countingConnectionAccess;
+	private JdbcConnectionAccessJtaSharingImpl jdbcConnectionAccess;
+
+	@Before
+	public void setUp() {
+		countingConnectionAccess = new CountingConnectionAccess();
+		jdbcConnectionAccess = new JdbcConnectionAccessJtaSharingImpl(
+				countingConnectionAccess,
+				JtaPlatformStandardTestingImpl.INSTANCE.synchronizationRegistry()
+		);
+	}
+
+	private JdbcSession buildJdbcSession() {
+		return new JdbcSessionImpl(
+				JdbcSessionContextStandardTestingImpl.INSTANCE,
+				new LogicalConnectionManagedImpl( jdbcConnectionAccess, JdbcSessionContextStandardTestingImpl.INSTANCE ),
+				TransactionCoordinatorBuilderFactory.INSTANCE.forJta()
+						.setJtaPlatform( JtaPlatformStandardTestingImpl.INSTANCE )
+						.setPerformJtaThreadTracking( false )
+		);
+	}
+
+	private static Connection physicalConnection(JdbcSession jdbcSession) {
+		return ( (LogicalConnectionImplementor) jdbcSession.getLogicalConnection() ).getPhysicalConnection();
+	}
+
+	@Test
+	public void testSharingWithinTransaction() throws Exception {
+		final TransactionManager tm = JtaPlatformStandardTestingImpl.INSTANCE.transactionManager();
+		assertEquals( Status.STATUS_NO_TRANSACTION, tm.getStatus() );
+
+		tm.begin();
+		final JdbcSession jdbcSession1 = buildJdbcSession();
+		final JdbcSession jdbcSession2 = buildJdbcSession();
+
+		final Connection connection = physicalConnection( jdbcSession1 );
+		assertSame( connection, physicalConnection( jdbcSession2 ) );
+		assertEquals( 1, countingConnectionAccess.getObtainCount() );
+
+		// the first session is done with it, but the transaction is still active
+		jdbcSession1.close();
+		assertEquals( 0, countingConnectionAccess.getReleaseCount() );
+
+		tm.commit();
+		// the second session still holds it
+		assertEquals( 0, countingConnectionAccess.getReleaseCount() );
+
+		jdbcSession2.close();
+		assertEquals( 1, countingConnectionAccess.getReleaseCount() );
+		assertTrue( connection.isClosed() );
+		assertEquals( 0, jdbcConnectionAccess.getNumberOfSharedConnections() );
+	}
+
+	@Test
+	public void testReleasedOnCompletion() throws Exception {
+		final TransactionManager tm = JtaPlatformStandardTestingImpl.INSTANCE.transactionManager();
+
+		tm.begin();
+		final JdbcSession jdbcSession1 = buildJdbcSession();
+		final JdbcSession jdbcSession2 = buildJdbcSession();
+		final Connection connection = physicalConnection( jdbcSession1 );
+		physicalConnection( jdbcSession2 );
+		jdbcSession1.close();
+		jdbcSession2.close();
+		assertEquals( 0, countingConnectionAccess.getReleaseCount() );
+
+		tm.rollback();
+		assertEquals( 1, countingConnectionAccess.getReleaseCount() );
+		assertTrue( connection.isClosed() );
+	}
+
+	@Test
+	public void testNoSharingOutsideTransaction() throws Exception {
+		final JdbcSession jdbcSession1 = buildJdbcSession();
+		final JdbcSession jdbcSession2 = buildJdbcSession();
+
+		assertNotSame(
+				physicalConnection( jdbcSession1 ),
+				physicalConnection( jdbcSession2 )
+		);
+		assertEquals( 2, countingConnectionAccess.getObtainCount() );
+
+		jdbcSession1.close();
+		jdbcSession2.close();
+		assertEquals( 2, countingConnectionAccess.getReleaseCount() );
+	}
+
+	@Test
+	public void testSerialization() throws Exception {
+		final JdbcConnectionAccessJtaSharingImpl copy = roundTrip( jdbcConnectionAccess );
+		final TransactionManager tm = JtaPlatformStandardTestingImpl.INSTANCE.transactionManager();
+
+		tm.begin();
+		try {
+			final Connection connection = copy.obtainConnection();
+			assertSame( connection, copy.obtainConnection() );
+			copy.releaseConnection( connection );
+			copy.releaseConnection( connection );
+		}
+		finally {
+			tm.commit();
+		}
+		assertEquals( 0, copy.getNumberOfSharedConnections() );
+	}
+
+	@Test
+	public void testSerializationWithoutSerializableRegistry() throws Exception {
+		final TransactionSynchronizationRegistry registry = JtaPlatformStandardTestingImpl.INSTANCE.synchronizationRegistry();
+		final JdbcConnectionAccessJtaSharingImpl copy = roundTrip(
+				new JdbcConnectionAccessJtaSharingImpl(
+						countingConnectionAccess,
+						new NonSerializableRegistry( registry )
+				)
+		);
+		final TransactionManager tm = JtaPlatformStandardTestingImpl.INSTANCE.transactionManager();
+
+		// no sharing, but no failure either
+		tm.begin();
+		try {
+			final Connection connection1 = copy.obtainConnection();
+			final Connection connection2 = copy.obtainConnection();
+			assertNotSame( connection1, connection2 );
+			copy.releaseConnection( connection1 );
+			copy.releaseConnection( connection2 );
+			assertTrue( connection1.isClosed() );
+		}
+		finally {
+			tm.commit();
+		}
+	}
+
+	private static class NonSerializableRegistry implements TransactionSynchronizationRegistry {
+		private final TransactionSynchronizationRegistry delegate;
+
+		private NonSerializableRegistry(TransactionSynchronizationRegistry delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public Object getTransactionKey() {
+			return delegate.getTransactionKey();
+		}
+
+		@Override
+		public void putResource(Object key, Object value) {
+			delegate.putResource( key, value );
+		}
+
+		@Override
+		public Object getResource(Object key) {
+			return delegate.getResource( key );
+		}
+
+		@Override
+		public void registerInterposedSynchronization(Synchronization sync) {
+			delegate.registerInterposedSynchronization( sync );
+		}
+
+		@Override
+		public int getTransactionStatus() {
+			return delegate.getTransactionStatus();
+		}
+
+		@Override
+		public void setRollbackOnly() {
+			delegate.setRollbackOnly();
+		}
+
+		@Override
+		public boolean getRollbackOnly() {
+			return delegate.getRollbackOnly();
+		}
+	}
+
+	private static JdbcConnectionAccessJtaSharingImpl roundTrip(JdbcConnectionAccessJtaSharingImpl access)
+			throws Exception {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream( bytes );
+		out.writeObject( access );
+		out.close();
+		final ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+		try {
+			return (JdbcConnectionAccessJtaSharingImpl) in.readObject();
+		}
+		finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.JDBCException;
+import org.hibernate.resource.jdbc.KeysetPaginationSpec;
+import org.hibernate.resource.jdbc.RowConsumer;
+import org.hibernate.resource.jdbc.RowExtractor;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.jdbc.spi.KeysetPaginatedReader;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import org.hibernate.test.resource.common.DatabaseConnectionInfo;
+import org.hibernate.test.resource.jdbc.common.CountingConnectionAccess;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionContextStandardTestingImpl;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionOwnerTestingImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link KeysetPaginatedReader}
+ *
+ * @author Steve Ebersole
+ */
+public class KeysetPaginatedReaderTests {
+	private static final int ROW_COUNT = 250;
+	private static final int CHUNK_SIZE = 40;
+
+	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+	private final KeysetPaginatedReader reader = new KeysetPaginatedReader(
+			JdbcSessionFactory.INSTANCE,
+			executorService,
+			CHUNK_SIZE
+	);
+	private final CountingConnectionAccess connectionAccess = new CountingConnectionAccess();
+	private final JdbcSessionOwnerTestingImpl owner = new JdbcSessionOwnerTestingImpl();
+
+	// also keeps the in-memory database alive for the duration of the test
+	private Connection setupConnection;
+
+	@Before
+	public void setUp() throws SQLException {
+		owner.setJdbcConnectionAccess( connectionAccess );
+
+		setupConnection = DatabaseConnectionInfo.INSTANCE.makeConnection();
+		final Statement statement = setupConnection.createStatement();
+		try {
+			statement.execute( "create table paged (id bigint not null primary key, name varchar(20))" );
+			statement.execute( "insert into paged select x * 2, 'row-' || x from system_range(1, " + ROW_COUNT + ")" );
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		executorService.shutdownNow();
+		executorService.awaitTermination( 10, TimeUnit.SECONDS );
+
+		final Statement statement = setupConnection.createStatement();
+		try {
+			statement.execute( "drop table paged" );
+		}
+		finally {
+			statement.close();
+			setupConnection.close();
+		}
+	}
+
+	@Test
+	public void testReadInChunks() {
+		final List<Long> ids = new ArrayList<Long>();
+		final long count = reader.read(
+				owner,
+				new PagedSpec(),
+				0,
+				new RowConsumer<Long>() {
+					@Override
+					public void consume(Long row) {
+						// at most the read ahead of the next chunk holds a Connection while rows are consumed
+						assertTrue( connectionAccess.getOpenCount() <= 1 );
+						ids.add( row );
+					}
+				}
+		);
+
+		assertEquals( ROW_COUNT, count );
+		for ( int i = 0; i < ROW_COUNT; i++ ) {
+			assertEquals( Long.valueOf( ( i + 1 ) * 2 ), ids.get( i ) );
+		}
+
+		// one Connection per chunk, all released
+		assertEquals( ( ROW_COUNT + CHUNK_SIZE - 1 ) / CHUNK_SIZE, connectionAccess.getObtainCount() );
+		assertEquals( 0, connectionAccess.getOpenCount() );
+	}
+
+	@Test
+	public void testReadAfterKey() {
+		final List<Long> ids = new ArrayList<Long>();
+		final long count = reader.read( owner, new PagedSpec(), ROW_COUNT * 2 - 3, collector( ids ) );
+
+		assertEquals( 2, count );
+		assertEquals( Long.valueOf( ROW_COUNT * 2 - 2 ), ids.get( 0 ) );
+		assertEquals( Long.valueOf( ROW_COUNT * 2 ), ids.get( 1 ) );
+		assertEquals( 1, connectionAccess.getObtainCount() );
+	}
+
+	@Test
+	public void testStatementInspectorApplied() {
+		final List<String> inspected = new ArrayList<String>();
+		owner.setJdbcSessionContext(
+				new JdbcSessionContextStandardTestingImpl() {
+					@Override
+					public StatementInspector getStatementInspector() {
+						return new StatementInspector() {
+							@Override
+							public String inspect(String sql) {
+								synchronized ( inspected ) {
+									inspected.add( sql );
+								}
+								return sql.replace( "paged", "paged p" );
+							}
+						};
+					}
+				}
+		);
+
+		final List<Long> ids = new ArrayList<Long>();
+		assertEquals( ROW_COUNT, reader.read( owner, new PagedSpec(), 0, collector( ids ) ) );
+
+		// each chunk query was inspected
+		synchronized ( inspected ) {
+			assertEquals( ( ROW_COUNT + CHUNK_SIZE - 1 ) / CHUNK_SIZE, inspected.size() );
+		}
+	}
+
+	@Test
+	public void testReadFailurePropagated() {
+		try {
+			reader.read(
+					owner,
+					new PagedSpec() {
+						@Override
+						public String getChunkSql() {
+							return "select id from no_such_table where id > ? order by id";
+						}
+					},
+					0,
+					collector( new ArrayList<Long>() )
+			);
+			fail( "Expecting failure" );
+		}
+		catch (JDBCException expected) {
+		}
+		assertEquals( 0, connectionAccess.getOpenCount() );
+	}
+
+	private static RowConsumer<Long> collector(final List<Long> ids) {
+		return new RowConsumer<Long>() {
+			@Override
+			public void consume(Long row) {
+				ids.add( row );
+			}
+		};
+	}
+
+	private static class PagedSpec implements KeysetPaginationSpec<Long> {
+		@Override
+		public String getChunkSql() {
+			return "select id, name from paged where id > ? order by id";
+		}
+
+		@Override
+		public RowExtractor<Long> getRowExtractor() {
+			return new RowExtractor<Long>() {
+				@Override
+				public Long extractRow(ResultSet resultSet) throws SQLException {
+					return resultSet.getLong( 1 );
+				}
+			};
+		}
+
+		@Override
+		public long getKey(Long row) {
+			return row;
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.Operation;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.jdbc.spi.LogicalConnectionImplementor;
+
+import org.hibernate.test.resource.jdbc.common.JdbcSessionContextStandardTestingImpl;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionOwnerTestingImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for operation-scoped Connection release
+ *
+ * @author Steve Ebersole
+ */
+public class OperationScopedConnectionReleaseTests {
+	private final JdbcSessionOwnerTestingImpl owner = new JdbcSessionOwnerTestingImpl();
+
+	@Before
+	public void setUp() {
+		// NOTE : the standard testing context uses ON_CLOSE
+		owner.setJdbcSessionContext(
+				new JdbcSessionContextStandardTestingImpl() {
+					@Override
+					public boolean isOperationScopedConnectionReleaseEnabled() {
+						return true;
+					}
+				}
+		);
+	}
+
+	@Test
+	public void testReleasedAfterOperation() {
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		try {
+			jdbcSession.accept(
+					new Operation<Void>() {
+						@Override
+						public Void perform(JdbcSession jdbcSession) throws SQLException {
+							execute( jdbcSession, "select 1 from dual" );
+							// nested operations should not release the Connection from under the outer one
+							jdbcSession.accept(
+									new Operation<Void>() {
+										@Override
+										public Void perform(JdbcSession jdbcSession) throws SQLException {
+											execute( jdbcSession, "select 2 from dual" );
+											return null;
+										}
+									}
+							);
+							assertTrue( jdbcSession.getLogicalConnection().isPhysicallyConnected() );
+							execute( jdbcSession, "select 3 from dual" );
+							return null;
+						}
+					}
+			);
+			assertFalse( jdbcSession.getLogicalConnection().isPhysicallyConnected() );
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	@Test
+	public void testPinnedByTransaction() {
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		try {
+			jdbcSession.getTransactionCoordinator().getTransactionDriverControl().begin();
+			jdbcSession.accept( new ExecuteOperation() );
+			assertTrue( jdbcSession.getLogicalConnection().isPhysicallyConnected() );
+			jdbcSession.accept( new ExecuteOperation() );
+			assertTrue( jdbcSession.getLogicalConnection().isPhysicallyConnected() );
+			jdbcSession.getTransactionCoordinator().getTransactionDriverControl().commit();
+
+			jdbcSession.accept( new ExecuteOperation() );
+			assertFalse( jdbcSession.getLogicalConnection().isPhysicallyConnected() );
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	@Test
+	public void testPinnedByHeldResources() throws Exception {
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		try {
+			final Statement statement = jdbcSession.accept(
+					new Operation<Statement>() {
+						@Override
+						public Statement perform(JdbcSession jdbcSession) throws SQLException {
+							final Statement statement = physicalConnection( jdbcSession ).createStatement();
+							jdbcSession.getLogicalConnection().getResourceRegistry().register( statement, true );
+							return statement;
+						}
+					}
+			);
+			assertTrue( jdbcSession.getLogicalConnection().isPhysicallyConnected() );
+
+			jdbcSession.getLogicalConnection().getResourceRegistry().release( statement );
+			jdbcSession.accept( new ExecuteOperation() );
+			assertFalse( jdbcSession.getLogicalConnection().isPhysicallyConnected() );
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	private static Connection physicalConnection(JdbcSession jdbcSession) {
+		return ( (LogicalConnectionImplementor) jdbcSession.getLogicalConnection() ).getPhysicalConnection();
+	}
+
+	private static void execute(JdbcSession jdbcSession, String sql) throws SQLException {
+		final Statement statement = physicalConnection( jdbcSession ).createStatement();
+		try {
+			statement.execute( sql );
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	private static class ExecuteOperation implements Operation<Void> {
+		@Override
+		public Void perform(JdbcSession jdbcSession) throws SQLException {
+			execute( jdbcSession, "select 1 from dual" );
+			return null;
+		}
+	}
+}
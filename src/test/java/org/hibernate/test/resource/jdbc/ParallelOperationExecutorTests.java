@@ -0,0 +1,216 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.JDBCException;
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.Operation;
+import org.hibernate.resource.jdbc.ResourceRegistry;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.jdbc.spi.LogicalConnectionImplementor;
+import org.hibernate.resource.jdbc.spi.ParallelOperationExecutor;
+
+import org.hibernate.test.resource.jdbc.common.JdbcSessionOwnerTestingImpl;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ParallelOperationExecutor}
+ *
+ * @author Steve Ebersole
+ */
+public class ParallelOperationExecutorTests {
+	private final ExecutorService executorService = Executors.newFixedThreadPool( 4 );
+	private final ParallelOperationExecutor parallelExecutor = new ParallelOperationExecutor(
+			JdbcSessionFactory.INSTANCE,
+			executorService
+	);
+	private final JdbcSessionOwnerTestingImpl owner = new JdbcSessionOwnerTestingImpl();
+
+	@After
+	public void tearDown() throws InterruptedException {
+		executorService.shutdownNow();
+		executorService.awaitTermination( 10, TimeUnit.SECONDS );
+	}
+
+	@Test
+	public void testOperationsRunConcurrently() {
+		// all four must be in flight at the same time for any of them to complete
+		final CountDownLatch allStarted = new CountDownLatch( 4 );
+		final List<Operation<?>> operations = new ArrayList<Operation<?>>();
+		for ( int i = 1; i <= 4; i++ ) {
+			operations.add( new QueryOperation( "select " + i + " from dual", allStarted ) );
+		}
+
+		final List<Object> results = parallelExecutor.executeAll( owner, operations, 10, TimeUnit.SECONDS );
+		assertEquals( Arrays.<Object>asList( 1L, 2L, 3L, 4L ), results );
+	}
+
+	@Test
+	public void testStragglersCancelledAtDeadline() throws Exception {
+		final QueryOperation straggler = new QueryOperation(
+				"select count(*) from system_range(1, 10000) a, system_range(1, 10000) b",
+				null
+		);
+		final long start = System.nanoTime();
+		try {
+			parallelExecutor.executeAll(
+					owner,
+					Arrays.asList( new QueryOperation( "select 1 from dual", null ), straggler ),
+					200,
+					TimeUnit.MILLISECONDS
+			);
+			fail( "Expecting timeout" );
+		}
+		catch (JDBCException expected) {
+		}
+		assertTrue( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) < 5000 );
+
+		// the straggler's query was cancelled, rather than running to completion
+		assertTrue( straggler.finished.await( 10, TimeUnit.SECONDS ) );
+		assertTrue( straggler.failed );
+	}
+
+	@Test
+	public void testFailurePropagated() {
+		try {
+			parallelExecutor.executeAll(
+					owner,
+					Arrays.asList(
+							new QueryOperation( "select 1 from dual", null ),
+							new QueryOperation( "select * from no_such_table", null )
+					),
+					10,
+					TimeUnit.SECONDS
+			);
+			fail( "Expecting failure" );
+		}
+		catch (JDBCException expected) {
+		}
+	}
+
+	@Test
+	public void testRejectedOperationsSkippedPastDeadline() {
+		final ParallelOperationExecutor rejectingExecutor = new ParallelOperationExecutor(
+				JdbcSessionFactory.INSTANCE,
+				new Executor() {
+					@Override
+					public void execute(Runnable command) {
+						throw new RejectedExecutionException();
+					}
+				}
+		);
+		final AtomicInteger performed = new AtomicInteger();
+		final Operation<Long> slowOperation = new Operation<Long>() {
+			@Override
+			public Long perform(JdbcSession jdbcSession) throws SQLException {
+				performed.incrementAndGet();
+				try {
+					Thread.sleep( 300 );
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return 1L;
+			}
+		};
+
+		try {
+			rejectingExecutor.executeAll(
+					owner,
+					Arrays.asList( slowOperation, slowOperation ),
+					100,
+					TimeUnit.MILLISECONDS
+			);
+			fail( "Expecting timeout" );
+		}
+		catch (JDBCException expected) {
+		}
+		// the first ran on the calling thread past the deadline, so the second was not started at all
+		assertEquals( 1, performed.get() );
+	}
+
+	private static class QueryOperation implements Operation<Long> {
+		private final String sql;
+		private final CountDownLatch allStarted;
+		private final CountDownLatch finished = new CountDownLatch( 1 );
+		private volatile boolean failed;
+
+		private QueryOperation(String sql, CountDownLatch allStarted) {
+			this.sql = sql;
+			this.allStarted = allStarted;
+		}
+
+		@Override
+		public Long perform(JdbcSession jdbcSession) throws SQLException {
+			try {
+				if ( allStarted != null ) {
+					allStarted.countDown();
+					allStarted.await( 10, TimeUnit.SECONDS );
+				}
+
+				final LogicalConnectionImplementor logicalConnection = (LogicalConnectionImplementor) jdbcSession.getLogicalConnection();
+				final ResourceRegistry resourceRegistry = logicalConnection.getResourceRegistry();
+				final PreparedStatement statement = logicalConnection.getPhysicalConnection().prepareStatement( sql );
+				resourceRegistry.register( statement, true );
+				try {
+					final ResultSet resultSet = statement.executeQuery();
+					resultSet.next();
+					return resultSet.getLong( 1 );
+				}
+				finally {
+					resourceRegistry.release( statement );
+				}
+			}
+			catch (SQLException e) {
+				failed = true;
+				throw e;
+			}
+			catch (InterruptedException e) {
+				throw new RuntimeException( e );
+			}
+			finally {
+				finished.countDown();
+			}
+		}
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.JDBCException;
+import org.hibernate.resource.jdbc.PartitionedScanSpec;
+import org.hibernate.resource.jdbc.RowConsumer;
+import org.hibernate.resource.jdbc.RowExtractor;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.jdbc.spi.PartitionedScanExecutor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import org.hibernate.test.resource.common.DatabaseConnectionInfo;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionContextStandardTestingImpl;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionOwnerTestingImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link PartitionedScanExecutor}
+ *
+ * @author Steve Ebersole
+ */
+public class PartitionedScanExecutorTests {
+	private static final int ROW_COUNT = 1000;
+
+	private final ExecutorService executorService = Executors.newFixedThreadPool( 4 );
+	private final PartitionedScanExecutor scanExecutor = new PartitionedScanExecutor(
+			JdbcSessionFactory.INSTANCE,
+			executorService,
+			3,
+			1,
+			16
+	);
+	private final JdbcSessionOwnerTestingImpl owner = new JdbcSessionOwnerTestingImpl();
+
+	// also keeps the in-memory database alive for the duration of the test
+	private Connection setupConnection;
+
+	@Before
+	public void setUp() throws SQLException {
+		setupConnection = DatabaseConnectionInfo.INSTANCE.makeConnection();
+		final Statement statement = setupConnection.createStatement();
+		try {
+			statement.execute( "create table scanned (id bigint not null primary key, name varchar(20))" );
+			statement.execute( "insert into scanned select x, 'row-' || x from system_range(1, " + ROW_COUNT + ")" );
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		executorService.shutdownNow();
+		executorService.awaitTermination( 10, TimeUnit.SECONDS );
+
+		final Statement statement = setupConnection.createStatement();
+		try {
+			statement.execute( "drop table scanned" );
+		}
+		finally {
+			statement.close();
+			setupConnection.close();
+		}
+	}
+
+	@Test
+	public void testOrderedScan() {
+		final List<Long> ids = new ArrayList<Long>();
+		final long count = scanExecutor.scan( owner, new ScannedSpec( -1 ), 1, ROW_COUNT, 7, true, collector( ids ) );
+
+		assertEquals( ROW_COUNT, count );
+		assertEquals( expectedIds(), ids );
+	}
+
+	@Test
+	public void testUnorderedScan() {
+		final List<Long> ids = new ArrayList<Long>();
+		final long count = scanExecutor.scan( owner, new ScannedSpec( -1 ), 1, ROW_COUNT, 7, false, collector( ids ) );
+
+		assertEquals( ROW_COUNT, count );
+		Collections.sort( ids );
+		assertEquals( expectedIds(), ids );
+	}
+
+	@Test
+	public void testSinglePartition() {
+		final List<Long> ids = new ArrayList<Long>();
+		final long count = scanExecutor.scan( owner, new ScannedSpec( -1 ), 1, ROW_COUNT, 1, true, collector( ids ) );
+
+		assertEquals( ROW_COUNT, count );
+		assertEquals( expectedIds(), ids );
+	}
+
+	@Test
+	public void testEvenlyDivisibleRanges() {
+		// 1..1000 split evenly into 250 keys per partition
+		List<Long> ids = new ArrayList<Long>();
+		assertEquals( ROW_COUNT, scanExecutor.scan( owner, new ScannedSpec( -1 ), 1, ROW_COUNT, 4, true, collector( ids ) ) );
+		assertEquals( expectedIds(), ids );
+
+		// (maxKey - minKey) divisible by the partition count
+		ids = new ArrayList<Long>();
+		assertEquals( ROW_COUNT, scanExecutor.scan( owner, new ScannedSpec( -1 ), 1, ROW_COUNT, 3, true, collector( ids ) ) );
+		assertEquals( expectedIds(), ids );
+
+		// more partitions than keys
+		ids = new ArrayList<Long>();
+		assertEquals( 3, scanExecutor.scan( owner, new ScannedSpec( -1 ), 998, ROW_COUNT, 8, true, collector( ids ) ) );
+		assertEquals( expectedIds().subList( 997, ROW_COUNT ), ids );
+	}
+
+	@Test
+	public void testStatementInspectorApplied() {
+		final AtomicInteger inspections = new AtomicInteger();
+		final StatementInspector statementInspector = new StatementInspector() {
+			@Override
+			public String inspect(String sql) {
+				inspections.incrementAndGet();
+				return sql.replace( "scanned", "scanned s" );
+			}
+		};
+		owner.setJdbcSessionContext(
+				new JdbcSessionContextStandardTestingImpl() {
+					@Override
+					public StatementInspector getStatementInspector() {
+						return statementInspector;
+					}
+				}
+		);
+
+		final List<Long> ids = new ArrayList<Long>();
+		assertEquals( ROW_COUNT, scanExecutor.scan( owner, new ScannedSpec( -1 ), 1, ROW_COUNT, 4, true, collector( ids ) ) );
+		assertEquals( expectedIds(), ids );
+		// the range query was inspected once, when registered, for all partitions
+		assertEquals( 1, inspections.get() );
+	}
+
+	@Test
+	public void testOverflowingRangeRejected() {
+		try {
+			scanExecutor.scan( owner, new ScannedSpec( -1 ), Long.MIN_VALUE, 10, 4, true, collector( new ArrayList<Long>() ) );
+			fail( "Expecting failure" );
+		}
+		catch (IllegalArgumentException expected) {
+		}
+		try {
+			scanExecutor.scan( owner, new ScannedSpec( -1 ), -10, Long.MAX_VALUE, 4, true, collector( new ArrayList<Long>() ) );
+			fail( "Expecting failure" );
+		}
+		catch (IllegalArgumentException expected) {
+		}
+
+		// the widest range allowed
+		final List<Long> ids = new ArrayList<Long>();
+		assertEquals( ROW_COUNT, scanExecutor.scan( owner, new ScannedSpec( -1 ), 1, Long.MAX_VALUE, 4, true, collector( ids ) ) );
+		assertEquals( expectedIds(), ids );
+	}
+
+	@Test
+	public void testFailedPartitionResumesWithoutDuplicates() {
+		final ScannedSpec spec = new ScannedSpec( 500 );
+		spec.remainingFailures.set( 1 );
+
+		final List<Long> ids = new ArrayList<Long>();
+		final long count = scanExecutor.scan( owner, spec, 1, ROW_COUNT, 4, true, collector( ids ) );
+
+		assertEquals( 0, spec.remainingFailures.get() );
+		assertEquals( ROW_COUNT, count );
+		assertEquals( expectedIds(), ids );
+	}
+
+	@Test
+	public void testFailureAfterRetriesExhausted() {
+		final ScannedSpec spec = new ScannedSpec( 700 );
+		spec.remainingFailures.set( Integer.MAX_VALUE );
+
+		try {
+			scanExecutor.scan( owner, spec, 1, ROW_COUNT, 4, false, collector( new ArrayList<Long>() ) );
+			fail( "Expecting failure" );
+		}
+		catch (JDBCException expected) {
+		}
+	}
+
+	private static RowConsumer<Long> collector(final List<Long> ids) {
+		return new RowConsumer<Long>() {
+			@Override
+			public void consume(Long row) {
+				ids.add( row );
+			}
+		};
+	}
+
+	private static List<Long> expectedIds() {
+		final List<Long> ids = new ArrayList<Long>();
+		for ( long i = 1; i <= ROW_COUNT; i++ ) {
+			ids.add( i );
+		}
+		return ids;
+	}
+
+	private static class ScannedSpec implements PartitionedScanSpec<Long> {
+		private final long failAtId;
+		private final AtomicInteger remainingFailures = new AtomicInteger();
+
+		private ScannedSpec(long failAtId) {
+			this.failAtId = failAtId;
+		}
+
+		@Override
+		public String getRangeSql() {
+			return "select id, name from scanned where id > ? and id <= ? order by id";
+		}
+
+		@Override
+		public RowExtractor<Long> getRowExtractor() {
+			return new RowExtractor<Long>() {
+				@Override
+				public Long extractRow(ResultSet resultSet) throws SQLException {
+					final long id = resultSet.getLong( 1 );
+					if ( id == failAtId && remainingFailures.get() > 0 ) {
+						remainingFailures.decrementAndGet();
+						throw new SQLException( "Simulated failure reading row " + id );
+					}
+					return id;
+				}
+			};
+		}
+
+		@Override
+		public long getKey(Long row) {
+			return row;
+		}
+	}
+}
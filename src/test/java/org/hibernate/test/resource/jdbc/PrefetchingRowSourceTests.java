@@ -0,0 +1,254 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.hibernate.JDBCException;
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.Operation;
+import org.hibernate.resource.jdbc.PrefetchingRowSource;
+import org.hibernate.resource.jdbc.ResourceRegistry;
+import org.hibernate.resource.jdbc.RowExtractor;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.jdbc.spi.LogicalConnectionImplementor;
+
+import org.hibernate.test.resource.jdbc.common.JdbcSessionOwnerTestingImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link PrefetchingRowSource}
+ *
+ * @author Steve Ebersole
+ */
+public class PrefetchingRowSourceTests {
+	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+	private JdbcSession jdbcSession;
+
+	@Before
+	public void setUp() {
+		jdbcSession = JdbcSessionFactory.INSTANCE.create( new JdbcSessionOwnerTestingImpl() );
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		jdbcSession.close();
+		executorService.shutdownNow();
+		executorService.awaitTermination( 10, TimeUnit.SECONDS );
+	}
+
+	@Test
+	public void testRowsReadInBackground() {
+		final RecordingExtractor extractor = new RecordingExtractor();
+		final List<Long> rows = jdbcSession.accept(
+				new Operation<List<Long>>() {
+					@Override
+					public List<Long> perform(JdbcSession jdbcSession) throws SQLException {
+						final PrefetchingRowSource<Long> rowSource = open( jdbcSession, 1000, extractor );
+						try {
+							final List<Long> rows = new ArrayList<Long>();
+							while ( rowSource.hasNext() ) {
+								assertTrue( resourceRegistry( jdbcSession ).hasRegisteredResources() );
+								rows.add( rowSource.next() );
+							}
+							return rows;
+						}
+						finally {
+							rowSource.close();
+						}
+					}
+				}
+		);
+
+		assertEquals( 1000, rows.size() );
+		for ( int i = 0; i < rows.size(); i++ ) {
+			assertEquals( Long.valueOf( i + 1 ), rows.get( i ) );
+		}
+		assertFalse( extractor.extractedOnCallingThread );
+		assertFalse( resourceRegistry( jdbcSession ).hasRegisteredResources() );
+	}
+
+	@Test
+	public void testEarlyClose() {
+		jdbcSession.accept(
+				new Operation<Void>() {
+					@Override
+					public Void perform(JdbcSession jdbcSession) throws SQLException {
+						final PrefetchingRowSource<Long> rowSource = open( jdbcSession, 1000, new RecordingExtractor() );
+						for ( int i = 0; i < 10; i++ ) {
+							rowSource.next();
+						}
+						rowSource.close();
+
+						assertFalse( resourceRegistry( jdbcSession ).hasRegisteredResources() );
+						return null;
+					}
+				}
+		);
+	}
+
+	@Test
+	public void testInterruptedCloseWaitsForBackgroundRead() {
+		final CountDownLatch readStarted = new CountDownLatch( 1 );
+		final AtomicBoolean readFinished = new AtomicBoolean();
+		jdbcSession.accept(
+				new Operation<Void>() {
+					@Override
+					public Void perform(JdbcSession jdbcSession) throws SQLException {
+						final PrefetchingRowSource<Long> rowSource = open(
+								jdbcSession,
+								1000,
+								new RowExtractor<Long>() {
+									@Override
+									public Long extractRow(ResultSet resultSet) throws SQLException {
+										final long value = resultSet.getLong( 1 );
+										if ( value == 65 ) {
+											// first row of the second buffer
+											readStarted.countDown();
+											try {
+												Thread.sleep( 300 );
+											}
+											catch (InterruptedException e) {
+												throw new RuntimeException( e );
+											}
+											readFinished.set( true );
+										}
+										return value;
+									}
+								}
+						);
+						rowSource.next();
+						try {
+							assertTrue( readStarted.await( 10, TimeUnit.SECONDS ) );
+						}
+						catch (InterruptedException e) {
+							throw new RuntimeException( e );
+						}
+
+						Thread.currentThread().interrupt();
+						rowSource.close();
+
+						// the interrupt did not cut the wait short, and is preserved
+						assertTrue( readFinished.get() );
+						assertTrue( Thread.interrupted() );
+						assertFalse( resourceRegistry( jdbcSession ).hasRegisteredResources() );
+						return null;
+					}
+				}
+		);
+	}
+
+	@Test
+	public void testReadFailurePropagated() {
+		try {
+			jdbcSession.accept(
+					new Operation<Void>() {
+						@Override
+						public Void perform(JdbcSession jdbcSession) throws SQLException {
+							final PrefetchingRowSource<Long> rowSource = open(
+									jdbcSession,
+									1000,
+									new RowExtractor<Long>() {
+										@Override
+										public Long extractRow(ResultSet resultSet) throws SQLException {
+											final long value = resultSet.getLong( 1 );
+											if ( value == 200 ) {
+												throw new SQLException( "Simulated failure reading row " + value );
+											}
+											return value;
+										}
+									}
+							);
+							try {
+								while ( rowSource.hasNext() ) {
+									rowSource.next();
+								}
+							}
+							finally {
+								rowSource.close();
+							}
+							return null;
+						}
+					}
+			);
+			fail( "Expecting failure" );
+		}
+		catch (JDBCException expected) {
+		}
+		assertFalse( resourceRegistry( jdbcSession ).hasRegisteredResources() );
+	}
+
+	private PrefetchingRowSource<Long> open(
+			JdbcSession jdbcSession,
+			int rowCount,
+			RowExtractor<Long> extractor) throws SQLException {
+		final LogicalConnectionImplementor logicalConnection = (LogicalConnectionImplementor) jdbcSession.getLogicalConnection();
+		final PreparedStatement statement = logicalConnection.getPhysicalConnection().prepareStatement(
+				"select x from system_range(1, " + rowCount + ")"
+		);
+		logicalConnection.getResourceRegistry().register( statement, true );
+		statement.setFetchSize( 50 );
+		return new PrefetchingRowSource<Long>(
+				logicalConnection.getResourceRegistry(),
+				statement,
+				statement.executeQuery(),
+				extractor,
+				64,
+				executorService
+		);
+	}
+
+	private static ResourceRegistry resourceRegistry(JdbcSession jdbcSession) {
+		return jdbcSession.getLogicalConnection().getResourceRegistry();
+	}
+
+	private static class RecordingExtractor implements RowExtractor<Long> {
+		private final Thread callingThread = Thread.currentThread();
+		private volatile boolean extractedOnCallingThread;
+
+		@Override
+		public Long extractRow(ResultSet resultSet) throws SQLException {
+			if ( Thread.currentThread() == callingThread ) {
+				extractedOnCallingThread = true;
+			}
+			return resultSet.getLong( 1 );
+		}
+	}
+}
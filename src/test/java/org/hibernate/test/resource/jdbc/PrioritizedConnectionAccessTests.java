@@ -0,0 +1,177 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.Operation;
+import org.hibernate.resource.jdbc.internal.JdbcConnectionAccessPrioritizedImpl;
+import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
+import org.hibernate.resource.jdbc.spi.JdbcSessionContext.ConnectionAcquisitionPriority;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.jdbc.spi.LogicalConnectionImplementor;
+
+import org.hibernate.test.resource.common.DatabaseConnectionInfo;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionContextStandardTestingImpl;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionOwnerTestingImpl;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link JdbcConnectionAccessPrioritizedImpl}
+ *
+ * @author Steve Ebersole
+ */
+public class PrioritizedConnectionAccessTests {
+	private static final JdbcConnectionAccess DIRECT_ACCESS = new JdbcConnectionAccess() {
+		@Override
+		public Connection obtainConnection() throws SQLException {
+			return DatabaseConnectionInfo.INSTANCE.makeConnection();
+		}
+
+		@Override
+		public void releaseConnection(Connection connection) throws SQLException {
+			connection.close();
+		}
+	};
+
+	private final List<String> servedOrder = Collections.synchronizedList( new ArrayList<String>() );
+
+	@Test
+	public void testHigherPriorityServedFirst() throws Exception {
+		final JdbcConnectionAccessPrioritizedImpl access = new JdbcConnectionAccessPrioritizedImpl( DIRECT_ACCESS, 1, 10 );
+
+		final Connection held = access.obtainConnection();
+		final Thread low = startWaiter( access, ConnectionAcquisitionPriority.LOW, "low" );
+		final Thread normal = startWaiter( access, ConnectionAcquisitionPriority.NORMAL, "normal" );
+		final Thread high = startWaiter( access, ConnectionAcquisitionPriority.HIGH, "high" );
+
+		access.releaseConnection( held );
+		low.join();
+		normal.join();
+		high.join();
+
+		assertEquals( "[high, normal, low]", servedOrder.toString() );
+	}
+
+	@Test
+	public void testStarvationIsBounded() throws Exception {
+		final JdbcConnectionAccessPrioritizedImpl access = new JdbcConnectionAccessPrioritizedImpl( DIRECT_ACCESS, 1, 1 );
+
+		final Connection held = access.obtainConnection();
+		final Thread low = startWaiter( access, ConnectionAcquisitionPriority.LOW, "low" );
+		final Thread high1 = startWaiter( access, ConnectionAcquisitionPriority.HIGH, "high1" );
+		final Thread high2 = startWaiter( access, ConnectionAcquisitionPriority.HIGH, "high2" );
+
+		access.releaseConnection( held );
+		low.join();
+		high1.join();
+		high2.join();
+
+		// low is passed over once, then served ahead of the remaining high priority waiter
+		assertEquals( "[high1, low, high2]", servedOrder.toString() );
+	}
+
+	@Test
+	public void testSessionsResolvePrioritizedAccess() throws Exception {
+		final JdbcConnectionAccessPrioritizedImpl access = new JdbcConnectionAccessPrioritizedImpl( DIRECT_ACCESS, 1, 10 );
+		final JdbcSessionContextStandardTestingImpl interactiveContext = new JdbcSessionContextStandardTestingImpl() {
+			@Override
+			public ConnectionAcquisitionPriority getConnectionAcquisitionPriority() {
+				return ConnectionAcquisitionPriority.HIGH;
+			}
+		};
+		assertSame( access.resolveForSession( interactiveContext ), access.resolveForSession( interactiveContext ) );
+
+		final JdbcSessionOwnerTestingImpl owner = new JdbcSessionOwnerTestingImpl();
+		owner.setJdbcSessionContext( interactiveContext );
+		owner.setJdbcConnectionAccess( access );
+
+		for ( int i = 0; i < 3; i++ ) {
+			final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+			try {
+				final Connection connection = jdbcSession.accept(
+						new Operation<Connection>() {
+							@Override
+							public Connection perform(JdbcSession jdbcSession) throws SQLException {
+								return ( (LogicalConnectionImplementor) jdbcSession.getLogicalConnection() ).getPhysicalConnection();
+							}
+						}
+				);
+				assertNotNull( connection );
+			}
+			finally {
+				// returns the single permit, otherwise the next iteration would block
+				jdbcSession.close();
+			}
+		}
+	}
+
+	private Thread startWaiter(
+			final JdbcConnectionAccessPrioritizedImpl access,
+			final ConnectionAcquisitionPriority priority,
+			final String name) throws InterruptedException {
+		final JdbcConnectionAccess prioritizedAccess = access.resolveForSession(
+				new JdbcSessionContextStandardTestingImpl() {
+					@Override
+					public ConnectionAcquisitionPriority getConnectionAcquisitionPriority() {
+						return priority;
+					}
+				}
+		);
+		final int expectedWaiters = access.getNumberOfWaiters( priority ) + 1;
+		final Thread thread = new Thread(
+				new Runnable() {
+					@Override
+					public void run() {
+						try {
+							final Connection connection = prioritizedAccess.obtainConnection();
+							servedOrder.add( name );
+							prioritizedAccess.releaseConnection( connection );
+						}
+						catch (SQLException e) {
+							throw new RuntimeException( e );
+						}
+					}
+				}
+		);
+		thread.start();
+
+		// make sure the waiter is queued before moving on, so that arrival order is deterministic
+		final long deadline = System.currentTimeMillis() + 5000;
+		while ( access.getNumberOfWaiters( priority ) < expectedWaiters && System.currentTimeMillis() < deadline ) {
+			Thread.sleep( 5 );
+		}
+		assertEquals( expectedWaiters, access.getNumberOfWaiters( priority ) );
+		return thread;
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.hibernate.resource.jdbc.internal.StatementPreparationSupport;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.jdbc.spi.SqlHandle;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.resource.jdbc.spi.UncacheableStatementInspector;
+
+import org.hibernate.test.resource.common.DatabaseConnectionInfo;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionContextStandardTestingImpl;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link SqlHandle} registration
+ *
+ * @author Steve Ebersole
+ */
+public class SqlHandleTests {
+	private final JdbcSessionFactory jdbcSessionFactory = new JdbcSessionFactory();
+
+	@Test
+	public void testRegistration() {
+		final CountingInspector inspector = new CountingInspector();
+		final JdbcSessionContextStandardTestingImpl context = new JdbcSessionContextStandardTestingImpl() {
+			@Override
+			public StatementInspector getStatementInspector() {
+				return inspector;
+			}
+		};
+
+		final SqlHandle handle = jdbcSessionFactory.registerSql( context, "select a from t where b = ?" );
+		assertEquals( "select a from t where b = ?", handle.getOriginalSql() );
+		assertEquals( "/* app */ select a from t where b = ?", handle.getSql() );
+		assertEquals( handle.getSql().hashCode(), handle.getSqlHash() );
+		assertEquals( 1, handle.getParameterCount() );
+		assertEquals( ResultSet.TYPE_FORWARD_ONLY, handle.getResultSetType() );
+
+		// registered once; same handle back, without inspecting again
+		assertSame( handle, jdbcSessionFactory.registerSql( context, "select a from t where b = ?" ) );
+		assertEquals( 1, inspector.count );
+
+		// different characteristics, different handle
+		assertNotSame(
+				handle,
+				jdbcSessionFactory.registerSql(
+						context,
+						"select a from t where b = ?",
+						ResultSet.TYPE_SCROLL_INSENSITIVE,
+						ResultSet.CONCUR_READ_ONLY
+				)
+		);
+	}
+
+	@Test
+	public void testRegistrationPerStatementInspector() {
+		final CountingInspector inspector = new CountingInspector();
+		final CountingInspector otherInspector = new CountingInspector();
+		final SqlHandle handle = jdbcSessionFactory.registerSql( inspectingContext( inspector ), "select a from t" );
+		final SqlHandle otherHandle = jdbcSessionFactory.registerSql( inspectingContext( otherInspector ), "select a from t" );
+		assertNotSame( handle, otherHandle );
+		assertEquals( 1, inspector.count );
+		assertEquals( 1, otherInspector.count );
+
+		// the inspected SQL is only re-used for the same StatementInspector
+		assertSame( handle.getSql(), handle.resolveSql( inspector ) );
+		assertEquals( 1, inspector.count );
+		assertEquals( "/* app */ select a from t", handle.resolveSql( otherInspector ) );
+		assertEquals( 2, otherInspector.count );
+		assertEquals( "select a from t", handle.resolveSql( null ) );
+	}
+
+	@Test
+	public void testUncacheableStatementInspectorAppliedOnEachUse() {
+		final UncacheableStatementInspector inspector = new UncacheableStatementInspector() {
+			private int count;
+
+			@Override
+			public String inspect(String sql) {
+				return "/* " + ( ++count ) + " */ " + sql;
+			}
+		};
+		final SqlHandle handle = jdbcSessionFactory.registerSql( inspectingContext( inspector ), "select a from t" );
+		assertEquals( "/* 1 */ select a from t", handle.getSql() );
+		assertEquals( "/* 2 */ select a from t", handle.resolveSql( inspector ) );
+	}
+
+	@Test
+	public void testParameterCount() {
+		final JdbcSessionContextStandardTestingImpl context = JdbcSessionContextStandardTestingImpl.INSTANCE;
+		assertEquals( 0, jdbcSessionFactory.registerSql( context, "select 1 from dual" ).getParameterCount() );
+		assertEquals(
+				2,
+				jdbcSessionFactory.registerSql(
+						context,
+						"select '?', \"?\" /* ? */ from t -- ?\nwhere a = ? and b = ?"
+				).getParameterCount()
+		);
+	}
+
+	@Test
+	public void testPrepareStatement() throws Exception {
+		final SqlHandle handle = jdbcSessionFactory.registerSql(
+				JdbcSessionContextStandardTestingImpl.INSTANCE,
+				"select 1 from dual where 1 = ?",
+				ResultSet.TYPE_SCROLL_INSENSITIVE,
+				ResultSet.CONCUR_READ_ONLY
+		);
+
+		final Connection connection = DatabaseConnectionInfo.INSTANCE.makeConnection();
+		try {
+			final PreparedStatement statement = StatementPreparationSupport.prepareStatement(
+					connection,
+					handle,
+					handle.getSql()
+			);
+			try {
+				assertEquals( ResultSet.TYPE_SCROLL_INSENSITIVE, statement.getResultSetType() );
+				statement.setInt( 1, 1 );
+				final ResultSet resultSet = statement.executeQuery();
+				resultSet.last();
+				assertEquals( 1, resultSet.getRow() );
+			}
+			finally {
+				statement.close();
+			}
+		}
+		finally {
+			connection.close();
+		}
+	}
+
+	private static JdbcSessionContextStandardTestingImpl inspectingContext(final StatementInspector inspector) {
+		return new JdbcSessionContextStandardTestingImpl() {
+			@Override
+			public StatementInspector getStatementInspector() {
+				return inspector;
+			}
+		};
+	}
+
+	private static class CountingInspector implements StatementInspector {
+		private int count;
+
+		@Override
+		public String inspect(String sql) {
+			count++;
+			return "/* app */ " + sql;
+		}
+	}
+}
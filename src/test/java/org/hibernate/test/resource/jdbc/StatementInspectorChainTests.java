@@ -0,0 +1,130 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import org.hibernate.resource.jdbc.internal.StatementInspectorChainImpl;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.resource.jdbc.spi.UncacheableStatementInspector;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link StatementInspectorChainImpl}
+ *
+ * @author Steve Ebersole
+ */
+public class StatementInspectorChainTests {
+	@Test
+	public void testChainAppliedInOrderAndCached() {
+		final CountingInspector tagging = new CountingInspector( "/* tenant */ " );
+		final CountingInspector hinting = new CountingInspector( "/*+ hint */ " );
+		final StatementInspectorChainImpl chain = new StatementInspectorChainImpl( 100, tagging, hinting );
+
+		for ( int i = 0; i < 10; i++ ) {
+			assertEquals( "/*+ hint */ /* tenant */ select 1", chain.inspect( "select 1" ) );
+		}
+		assertEquals( 1, tagging.count );
+		assertEquals( 1, hinting.count );
+		assertEquals( 1, chain.getCacheSize() );
+	}
+
+	@Test
+	public void testNullMeansUnchanged() {
+		final StatementInspector noOp = new StatementInspector() {
+			@Override
+			public String inspect(String sql) {
+				return null;
+			}
+		};
+		final StatementInspectorChainImpl chain = new StatementInspectorChainImpl(
+				100,
+				noOp,
+				new CountingInspector( "x " ),
+				noOp
+		);
+		assertEquals( "x select 1", chain.inspect( "select 1" ) );
+	}
+
+	@Test
+	public void testUncacheableInspectorsAlwaysApplied() {
+		final CountingInspector cacheable = new CountingInspector( "a " );
+		final CountingUncacheableInspector uncacheable = new CountingUncacheableInspector();
+		// cacheable after the uncacheable one must be applied each time too, as its input varies
+		final CountingInspector trailing = new CountingInspector( "b " );
+		final StatementInspectorChainImpl chain = new StatementInspectorChainImpl( 100, cacheable, uncacheable, trailing );
+
+		assertEquals( "b 1 a select 1", chain.inspect( "select 1" ) );
+		assertEquals( "b 2 a select 1", chain.inspect( "select 1" ) );
+		assertEquals( 1, cacheable.count );
+		assertEquals( 2, uncacheable.count );
+		assertEquals( 2, trailing.count );
+	}
+
+	@Test
+	public void testCacheIsBounded() {
+		final CountingInspector inspector = new CountingInspector( "" );
+		final StatementInspectorChainImpl chain = new StatementInspectorChainImpl( 10, inspector );
+
+		for ( int i = 0; i < 1000; i++ ) {
+			chain.inspect( "select " + i );
+		}
+		assertTrue( chain.getCacheSize() <= 10 );
+
+		// hot SQL used steadily throughout stays cached
+		final int before = inspector.count;
+		for ( int i = 0; i < 1000; i++ ) {
+			chain.inspect( "select hot" );
+			chain.inspect( "select cold " + i );
+		}
+		assertEquals( before + 1 + 1000, inspector.count );
+	}
+
+	private static class CountingInspector implements StatementInspector {
+		private final String prefix;
+		private int count;
+
+		private CountingInspector(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public String inspect(String sql) {
+			count++;
+			return prefix + sql;
+		}
+	}
+
+	private static class CountingUncacheableInspector implements UncacheableStatementInspector {
+		private int count;
+
+		@Override
+		public String inspect(String sql) {
+			count++;
+			return count + " " + sql;
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.Operation;
+import org.hibernate.resource.jdbc.internal.JdbcConnectionAccessTenantPartitionedImpl;
+import org.hibernate.resource.jdbc.internal.JdbcConnectionAccessTenantPartitionedImpl.TenantStatistics;
+import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.jdbc.spi.LogicalConnectionImplementor;
+
+import org.hibernate.test.resource.common.DatabaseConnectionInfo;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionContextStandardTestingImpl;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionOwnerTestingImpl;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link JdbcConnectionAccessTenantPartitionedImpl}
+ *
+ * @author Steve Ebersole
+ */
+public class TenantPartitionedConnectionAccessTests {
+	private static final JdbcConnectionAccess DIRECT_ACCESS = new JdbcConnectionAccess() {
+		@Override
+		public Connection obtainConnection() throws SQLException {
+			return DatabaseConnectionInfo.INSTANCE.makeConnection();
+		}
+
+		@Override
+		public void releaseConnection(Connection connection) throws SQLException {
+			connection.close();
+		}
+	};
+
+	private final List<Connection> held = new ArrayList<Connection>();
+	private final List<JdbcConnectionAccess> heldBy = new ArrayList<JdbcConnectionAccess>();
+
+	@After
+	public void releaseHeld() throws SQLException {
+		for ( int i = 0; i < held.size(); i++ ) {
+			heldBy.get( i ).releaseConnection( held.get( i ) );
+		}
+		held.clear();
+		heldBy.clear();
+	}
+
+	@Test
+	public void testNoisyTenantCannotStarveOthers() throws Exception {
+		final JdbcConnectionAccessTenantPartitionedImpl access = new JdbcConnectionAccessTenantPartitionedImpl(
+				DIRECT_ACCESS, 2, 2, 50, TimeUnit.MILLISECONDS
+		);
+		access.registerTenant( "noisy", 1 );
+		access.registerTenant( "quiet", 1 );
+		final JdbcConnectionAccess noisy = access.resolveForSession( tenantContext( "noisy" ) );
+		final JdbcConnectionAccess quiet = access.resolveForSession( tenantContext( "quiet" ) );
+
+		// its reservation plus all of the shared capacity
+		for ( int i = 0; i < 3; i++ ) {
+			hold( noisy );
+		}
+		try {
+			hold( noisy );
+			fail( "Expecting timeout" );
+		}
+		catch (SQLTimeoutException expected) {
+		}
+
+		// the quiet tenant still has its reservation
+		hold( quiet );
+
+		final TenantStatistics noisyStatistics = access.getTenantStatistics( "noisy" );
+		assertEquals( 4, noisyStatistics.getAcquisitionCount() );
+		assertEquals( 1, noisyStatistics.getTimeoutCount() );
+		assertEquals( 3, noisyStatistics.getPeakConnectionsInUse() );
+		assertEquals( 3, noisyStatistics.getConnectionsInUse() );
+		assertEquals( 1, access.getTenantStatistics( "quiet" ).getConnectionsInUse() );
+	}
+
+	@Test
+	public void testBurstLimitedPerTenant() throws Exception {
+		final JdbcConnectionAccessTenantPartitionedImpl access = new JdbcConnectionAccessTenantPartitionedImpl(
+				DIRECT_ACCESS, 4, 1, 50, TimeUnit.MILLISECONDS
+		);
+		final JdbcConnectionAccess tenantA = access.resolveForSession( tenantContext( "a" ) );
+		final JdbcConnectionAccess tenantB = access.resolveForSession( tenantContext( "b" ) );
+
+		hold( tenantA );
+		try {
+			hold( tenantA );
+			fail( "Expecting timeout" );
+		}
+		catch (SQLTimeoutException expected) {
+		}
+		hold( tenantB );
+	}
+
+	@Test
+	public void testWaiterServedOnRelease() throws Exception {
+		final JdbcConnectionAccessTenantPartitionedImpl access = new JdbcConnectionAccessTenantPartitionedImpl(
+				DIRECT_ACCESS, 0, 0, 5, TimeUnit.SECONDS
+		);
+		access.registerTenant( "t", 1 );
+		final JdbcConnectionAccess tenant = access.resolveForSession( tenantContext( "t" ) );
+
+		final Connection connection = tenant.obtainConnection();
+		final Thread releaser = new Thread(
+				new Runnable() {
+					@Override
+					public void run() {
+						try {
+							Thread.sleep( 50 );
+							tenant.releaseConnection( connection );
+						}
+						catch (Exception e) {
+							throw new RuntimeException( e );
+						}
+					}
+				}
+		);
+		releaser.start();
+		hold( tenant );
+		releaser.join();
+
+		assertEquals( 1, access.getTenantStatistics( "t" ).getWaitCount() );
+		assertEquals( 0, access.getTenantStatistics( "t" ).getTimeoutCount() );
+	}
+
+	@Test
+	public void testSessionsResolveTenantAccess() {
+		final JdbcConnectionAccessTenantPartitionedImpl access = new JdbcConnectionAccessTenantPartitionedImpl(
+				DIRECT_ACCESS, 0, 0, 50, TimeUnit.MILLISECONDS
+		);
+		access.registerTenant( "acme", 1 );
+
+		final JdbcSessionOwnerTestingImpl owner = new JdbcSessionOwnerTestingImpl();
+		owner.setJdbcSessionContext( tenantContext( "acme" ) );
+		owner.setJdbcConnectionAccess( access );
+
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		try {
+			final Connection connection = jdbcSession.accept(
+					new Operation<Connection>() {
+						@Override
+						public Connection perform(JdbcSession jdbcSession) throws SQLException {
+							return ( (LogicalConnectionImplementor) jdbcSession.getLogicalConnection() ).getPhysicalConnection();
+						}
+					}
+			);
+			assertNotNull( connection );
+			assertEquals( 1, access.getTenantStatistics( "acme" ).getConnectionsInUse() );
+		}
+		finally {
+			jdbcSession.close();
+		}
+		assertEquals( 0, access.getTenantStatistics( "acme" ).getConnectionsInUse() );
+	}
+
+	private void hold(JdbcConnectionAccess access) throws SQLException {
+		held.add( access.obtainConnection() );
+		heldBy.add( access );
+	}
+
+	private static JdbcSessionContextStandardTestingImpl tenantContext(final String tenantIdentifier) {
+		return new JdbcSessionContextStandardTestingImpl() {
+			@Override
+			public String getTenantIdentifier() {
+				return tenantIdentifier;
+			}
+		};
+	}
+}
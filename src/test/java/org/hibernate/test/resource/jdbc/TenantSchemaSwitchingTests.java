@@ -0,0 +1,340 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.hibernate.HibernateException;
+import org.hibernate.JDBCException;
+import org.hibernate.resource.jdbc.JdbcSession;
+import org.hibernate.resource.jdbc.Operation;
+import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
+import org.hibernate.resource.jdbc.spi.JdbcSessionFactory;
+import org.hibernate.resource.jdbc.spi.LogicalConnectionImplementor;
+import org.hibernate.resource.jdbc.spi.TenantSchemaSwitcher;
+
+import org.hibernate.test.resource.common.DatabaseConnectionInfo;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionContextStandardTestingImpl;
+import org.hibernate.test.resource.jdbc.common.JdbcSessionOwnerTestingImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for switching Connections to the tenant schema via {@link TenantSchemaSwitcher}
+ *
+ * @author Steve Ebersole
+ */
+public class TenantSchemaSwitchingTests {
+	private Connection pooledConnection;
+	private int obtainCount;
+	private int releaseCount;
+
+	private final JdbcConnectionAccess singleConnectionPool = new JdbcConnectionAccess() {
+		@Override
+		public Connection obtainConnection() throws SQLException {
+			obtainCount++;
+			return pooledConnection;
+		}
+
+		@Override
+		public void releaseConnection(Connection connection) throws SQLException {
+			// "pooled"; left open
+			releaseCount++;
+		}
+	};
+
+	@Before
+	public void setUp() throws SQLException {
+		pooledConnection = DatabaseConnectionInfo.INSTANCE.makeConnection();
+		execute( pooledConnection, "create schema if not exists TENANT_A" );
+		execute( pooledConnection, "create schema if not exists TENANT_B" );
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		execute( pooledConnection, "set schema PUBLIC" );
+		execute( pooledConnection, "drop schema TENANT_A" );
+		execute( pooledConnection, "drop schema TENANT_B" );
+		pooledConnection.close();
+	}
+
+	@Test
+	public void testSchemaOnlySwitchedWhenTenantChanges() {
+		final CountingSwitcher switcher = new CountingSwitcher( null );
+
+		assertEquals( "TENANT_A", currentSchema( "a", switcher ) );
+		assertEquals( 1, switcher.applyCount );
+
+		// same tenant, same (pooled) Connection : no switch needed
+		assertEquals( "TENANT_A", currentSchema( "a", switcher ) );
+		assertEquals( 1, switcher.applyCount );
+
+		assertEquals( "TENANT_B", currentSchema( "b", switcher ) );
+		assertEquals( 2, switcher.applyCount );
+
+		assertEquals( 3, obtainCount );
+		assertEquals( 3, releaseCount );
+	}
+
+	@Test
+	public void testSchemaResetOnRelease() {
+		final CountingSwitcher switcher = new CountingSwitcher( "PUBLIC" );
+
+		assertEquals( "TENANT_A", currentSchema( "a", switcher ) );
+		// switched to the tenant, then back on release
+		assertEquals( 2, switcher.applyCount );
+		assertEquals( "PUBLIC", currentSchema( null, switcher ) );
+		assertEquals( 2, switcher.applyCount );
+	}
+
+	@Test
+	public void testFailedSwitchReleasesConnection() {
+		final CountingSwitcher switcher = new CountingSwitcher( null ) {
+			@Override
+			public String resolveSchema(String tenantIdentifier) {
+				return "NO_SUCH_SCHEMA";
+			}
+		};
+
+		try {
+			currentSchema( "a", switcher );
+			fail( "Expecting failure" );
+		}
+		catch (JDBCException expected) {
+		}
+		assertEquals( 1, obtainCount );
+		assertEquals( 1, releaseCount );
+	}
+
+	@Test
+	public void testDefaultSchemaForSessionsWithoutTenant() {
+		final CountingSwitcher switcher = new CountingSwitcher( null );
+
+		assertEquals( "TENANT_A", currentSchema( "a", switcher ) );
+		// the previous tenant's schema is not left in place for a session without a tenant
+		assertEquals( "PUBLIC", currentSchema( null, switcher ) );
+		assertEquals( 2, switcher.applyCount );
+	}
+
+	@Test
+	public void testMissingDefaultSchema() {
+		final CountingSwitcher switcher = new CountingSwitcher( null ) {
+			@Override
+			public String getDefaultSchema() {
+				return null;
+			}
+		};
+
+		try {
+			currentSchema( null, switcher );
+			fail( "Expecting failure" );
+		}
+		catch (HibernateException expected) {
+		}
+		assertEquals( 1, obtainCount );
+		assertEquals( 1, releaseCount );
+	}
+
+	@Test
+	public void testPoolResettingConnectionState() {
+		// the pool hands out the same Connection object, but resets its schema on check-in behind our back
+		final JdbcConnectionAccess resettingPool = new JdbcConnectionAccess() {
+			@Override
+			public Connection obtainConnection() throws SQLException {
+				return pooledConnection;
+			}
+
+			@Override
+			public void releaseConnection(Connection connection) throws SQLException {
+				execute( connection, "set schema PUBLIC" );
+			}
+		};
+		final CountingSwitcher switcher = new CountingSwitcher( null );
+
+		assertEquals( "TENANT_A", currentSchema( "a", switcher, resettingPool ) );
+		assertEquals( "TENANT_A", currentSchema( "a", switcher, resettingPool ) );
+		assertEquals( 2, switcher.applyCount );
+	}
+
+	@Test
+	public void testPoolHandingOutNewProxies() {
+		// the pool hands out a new proxy for the same Connection on every checkout
+		final JdbcConnectionAccess proxyingPool = new JdbcConnectionAccess() {
+			@Override
+			public Connection obtainConnection() throws SQLException {
+				return (Connection) Proxy.newProxyInstance(
+						getClass().getClassLoader(),
+						new Class[] { Connection.class },
+						new InvocationHandler() {
+							@Override
+							public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+								try {
+									return method.invoke( pooledConnection, args );
+								}
+								catch (InvocationTargetException e) {
+									throw e.getCause();
+								}
+							}
+						}
+				);
+			}
+
+			@Override
+			public void releaseConnection(Connection connection) throws SQLException {
+			}
+		};
+		final CountingSwitcher switcher = new CountingSwitcher( null );
+
+		assertEquals( "TENANT_A", currentSchema( "a", switcher, proxyingPool ) );
+		assertEquals( "TENANT_A", currentSchema( "a", switcher, proxyingPool ) );
+		assertEquals( 1, switcher.applyCount );
+	}
+
+	@Test
+	public void testAlwaysAppliedWhenCurrentSchemaUnknown() {
+		final CountingSwitcher switcher = new CountingSwitcher( null ) {
+			@Override
+			public String readCurrentSchema(Connection connection) {
+				return null;
+			}
+		};
+
+		assertEquals( "TENANT_A", currentSchema( "a", switcher ) );
+		assertEquals( "TENANT_A", currentSchema( "a", switcher ) );
+		assertEquals( 2, switcher.applyCount );
+	}
+
+	private String currentSchema(String tenantIdentifier, TenantSchemaSwitcher switcher) {
+		return currentSchema( tenantIdentifier, switcher, singleConnectionPool );
+	}
+
+	private String currentSchema(
+			final String tenantIdentifier,
+			final TenantSchemaSwitcher switcher,
+			JdbcConnectionAccess connectionAccess) {
+		final JdbcSessionOwnerTestingImpl owner = new JdbcSessionOwnerTestingImpl();
+		owner.setJdbcConnectionAccess( connectionAccess );
+		owner.setJdbcSessionContext(
+				new JdbcSessionContextStandardTestingImpl() {
+					@Override
+					public String getTenantIdentifier() {
+						return tenantIdentifier;
+					}
+
+					@Override
+					public TenantSchemaSwitcher getTenantSchemaSwitcher() {
+						return switcher;
+					}
+				}
+		);
+
+		final JdbcSession jdbcSession = JdbcSessionFactory.INSTANCE.create( owner );
+		try {
+			return jdbcSession.accept(
+					new Operation<String>() {
+						@Override
+						public String perform(JdbcSession jdbcSession) throws SQLException {
+							final Connection connection = ( (LogicalConnectionImplementor) jdbcSession.getLogicalConnection() ).getPhysicalConnection();
+							final Statement statement = connection.createStatement();
+							try {
+								final ResultSet resultSet = statement.executeQuery( "select schema() from dual" );
+								assertTrue( resultSet.next() );
+								return resultSet.getString( 1 );
+							}
+							finally {
+								statement.close();
+							}
+						}
+					}
+			);
+		}
+		finally {
+			jdbcSession.close();
+		}
+	}
+
+	private static void execute(Connection connection, String sql) throws SQLException {
+		final Statement statement = connection.createStatement();
+		try {
+			statement.execute( sql );
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	private static class CountingSwitcher implements TenantSchemaSwitcher {
+		private final String releaseSchema;
+		private int applyCount;
+
+		private CountingSwitcher(String releaseSchema) {
+			this.releaseSchema = releaseSchema;
+		}
+
+		@Override
+		public String resolveSchema(String tenantIdentifier) {
+			return tenantIdentifier == null ? null : "TENANT_" + tenantIdentifier.toUpperCase();
+		}
+
+		@Override
+		public String getDefaultSchema() {
+			return "PUBLIC";
+		}
+
+		@Override
+		public String readCurrentSchema(Connection connection) throws SQLException {
+			final Statement statement = connection.createStatement();
+			try {
+				final ResultSet resultSet = statement.executeQuery( "select schema() from dual" );
+				return resultSet.next() ? resultSet.getString( 1 ) : null;
+			}
+			finally {
+				statement.close();
+			}
+		}
+
+		@Override
+		public void applySchema(Connection connection, String schema) throws SQLException {
+			applyCount++;
+			execute( connection, "set schema " + schema );
+		}
+
+		@Override
+		public String getReleaseSchema() {
+			return releaseSchema;
+		}
+	}
+}
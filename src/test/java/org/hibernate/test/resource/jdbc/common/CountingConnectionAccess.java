@@ -0,0 +1,77 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.jdbc.common;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.resource.jdbc.spi.JdbcConnectionAccess;
+
+import org.hibernate.test.resource.common.DatabaseConnectionInfo;
+
+/**
+ * JdbcConnectionAccess to the testing database which counts the Connections obtained and released.  Safe for use
+ * from multiple threads.
+ *
+ * @author Steve Ebersole
+ */
+public class CountingConnectionAccess implements JdbcConnectionAccess {
+	private final AtomicInteger obtainCount = new AtomicInteger();
+	private final AtomicInteger releaseCount = new AtomicInteger();
+	private transient volatile Connection lastObtained;
+
+	@Override
+	public Connection obtainConnection() throws SQLException {
+		final Connection connection = DatabaseConnectionInfo.INSTANCE.makeConnection();
+		obtainCount.incrementAndGet();
+		lastObtained = connection;
+		return connection;
+	}
+
+	@Override
+	public void releaseConnection(Connection connection) throws SQLException {
+		releaseCount.incrementAndGet();
+		connection.close();
+	}
+
+	public int getObtainCount() {
+		return obtainCount.get();
+	}
+
+	public int getReleaseCount() {
+		return releaseCount.get();
+	}
+
+	/**
+	 * The number of Connections obtained but not (yet) released
+	 */
+	public int getOpenCount() {
+		return obtainCount.get() - releaseCount.get();
+	}
+
+	public Connection getLastObtained() {
+		return lastObtained;
+	}
+}
@@ -23,12 +23,17 @@
  */
 package org.hibernate.test.resource.jdbc.common;
 
+import java.util.concurrent.Executor;
+
 import org.hibernate.ConnectionReleaseMode;
 import org.hibernate.engine.jdbc.spi.SqlExceptionHelper;
 import org.hibernate.engine.jdbc.spi.SqlStatementLogger;
+import org.hibernate.resource.jdbc.spi.AdaptiveConnectionReleasePolicy;
+import org.hibernate.resource.jdbc.spi.FetchSizeTuner;
 import org.hibernate.resource.jdbc.spi.JdbcObserver;
 import org.hibernate.resource.jdbc.spi.JdbcSessionContext;
 import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.resource.jdbc.spi.TenantSchemaSwitcher;
 
 /**
  * @author Steve Ebersole
@@ -57,6 +62,11 @@ public class JdbcSessionContextStandardTestingImpl implements JdbcSessionContext
 		return -1;
 	}
 
+	@Override
+	public FetchSizeTuner getFetchSizeTuner() {
+		return null;
+	}
+
 	@Override
 	public ConnectionReleaseMode getConnectionReleaseMode() {
 		return ConnectionReleaseMode.ON_CLOSE;
@@ -67,6 +77,41 @@ public class JdbcSessionContextStandardTestingImpl implements JdbcSessionContext
 		return ConnectionAcquisitionMode.DEFAULT;
 	}
 
+	@Override
+	public ConnectionAcquisitionPriority getConnectionAcquisitionPriority() {
+		return ConnectionAcquisitionPriority.NORMAL;
+	}
+
+	@Override
+	public String getTenantIdentifier() {
+		return null;
+	}
+
+	@Override
+	public TenantSchemaSwitcher getTenantSchemaSwitcher() {
+		return null;
+	}
+
+	@Override
+	public Executor getAsyncExecutor() {
+		return null;
+	}
+
+	@Override
+	public boolean isLazyTransactionCoordinatorEnabled() {
+		return false;
+	}
+
+	@Override
+	public AdaptiveConnectionReleasePolicy getAdaptiveConnectionReleasePolicy() {
+		return null;
+	}
+
+	@Override
+	public boolean isOperationScopedConnectionReleaseEnabled() {
+		return false;
+	}
+
 	@Override
 	public StatementInspector getStatementInspector() {
 		return StatementInspectorNoOpImpl.INSTANCE;
@@ -0,0 +1,167 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.transaction;
+
+import javax.transaction.Status;
+import javax.transaction.TransactionManager;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.hibernate.resource.transaction.TransactionCoordinatorBuilderFactory;
+import org.hibernate.resource.transaction.TransactionCoordinatorJtaBuilder.JoinCheckPolicy;
+import org.hibernate.resource.transaction.backend.jta.internal.JtaTransactionCoordinatorImpl;
+
+import org.hibernate.test.resource.transaction.common.JtaPlatformCountingImpl;
+import org.hibernate.test.resource.transaction.common.JtaPlatformStandardTestingImpl;
+import org.hibernate.test.resource.transaction.common.TransactionCoordinatorOwnerTestingImpl;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the JoinCheckPolicy applied to JtaTransactionCoordinatorImpl#pulse
+ *
+ * @author Steve Ebersole
+ */
+public class JtaJoinCheckPolicyTests {
+	private final TransactionCoordinatorOwnerTestingImpl owner = new TransactionCoordinatorOwnerTestingImpl();
+	private final JtaPlatformCountingImpl jtaPlatform = new JtaPlatformCountingImpl( JtaPlatformStandardTestingImpl.INSTANCE );
+
+	private JtaTransactionCoordinatorImpl buildTransactionCoordinator(JoinCheckPolicy joinCheckPolicy) {
+		return buildTransactionCoordinator( joinCheckPolicy, null );
+	}
+
+	private JtaTransactionCoordinatorImpl buildTransactionCoordinator(
+			JoinCheckPolicy joinCheckPolicy,
+			TransactionSynchronizationRegistry transactionSynchronizationRegistry) {
+		return (JtaTransactionCoordinatorImpl) TransactionCoordinatorBuilderFactory.INSTANCE.forJta()
+				.setJtaPlatform( jtaPlatform )
+				.setPerformJtaThreadTracking( false )
+				.setJoinCheckPolicy( joinCheckPolicy )
+				.setTransactionSynchronizationRegistry( transactionSynchronizationRegistry )
+				.buildTransactionCoordinator( owner );
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		final TransactionManager tm = JtaPlatformStandardTestingImpl.INSTANCE.transactionManager();
+		if ( tm.getStatus() != Status.STATUS_NO_TRANSACTION ) {
+			tm.rollback();
+		}
+	}
+
+	@Test
+	public void testAlwaysPolicy() throws Exception {
+		final JtaTransactionCoordinatorImpl transactionCoordinator = buildTransactionCoordinator( JoinCheckPolicy.ALWAYS );
+		assertEquals( 1, jtaPlatform.getCanRegisterSynchronizationCount() );
+
+		transactionCoordinator.pulse();
+		transactionCoordinator.pulse();
+		assertEquals( 3, jtaPlatform.getCanRegisterSynchronizationCount() );
+		assertFalse( transactionCoordinator.isSynchronizationRegistered() );
+	}
+
+	@Test
+	public void testPerTransactionPolicy() throws Exception {
+		final TransactionManager tm = JtaPlatformStandardTestingImpl.INSTANCE.transactionManager();
+		assertEquals( Status.STATUS_NO_TRANSACTION, tm.getStatus() );
+
+		final JtaTransactionCoordinatorImpl transactionCoordinator = buildTransactionCoordinator(
+				JoinCheckPolicy.PER_TRANSACTION,
+				JtaPlatformStandardTestingImpl.INSTANCE.synchronizationRegistry()
+		);
+		assertEquals( 1, jtaPlatform.getCanRegisterSynchronizationCount() );
+
+		// the negative answer is remembered while there is no transaction, without consulting the TransactionManager
+		transactionCoordinator.pulse();
+		transactionCoordinator.pulse();
+		assertEquals( 1, jtaPlatform.getCanRegisterSynchronizationCount() );
+		assertEquals( 0, jtaPlatform.getTransactionManagerCallCount() );
+		assertFalse( transactionCoordinator.isSynchronizationRegistered() );
+
+		// a transaction begun elsewhere (by a container, e.g.) is noticed and joined
+		tm.begin();
+		transactionCoordinator.pulse();
+		assertEquals( 2, jtaPlatform.getCanRegisterSynchronizationCount() );
+		assertTrue( transactionCoordinator.isSynchronizationRegistered() );
+		tm.commit();
+		assertFalse( transactionCoordinator.isSynchronizationRegistered() );
+
+		transactionCoordinator.pulse();
+		transactionCoordinator.pulse();
+		assertEquals( 3, jtaPlatform.getCanRegisterSynchronizationCount() );
+		assertEquals( 0, jtaPlatform.getTransactionManagerCallCount() );
+	}
+
+	@Test
+	public void testUnjoinableTransactionFollowedByJoinable() throws Exception {
+		final TransactionManager tm = JtaPlatformStandardTestingImpl.INSTANCE.transactionManager();
+		assertEquals( Status.STATUS_NO_TRANSACTION, tm.getStatus() );
+
+		tm.begin();
+		tm.setRollbackOnly();
+		final JtaTransactionCoordinatorImpl transactionCoordinator = buildTransactionCoordinator(
+				JoinCheckPolicy.PER_TRANSACTION,
+				JtaPlatformStandardTestingImpl.INSTANCE.synchronizationRegistry()
+		);
+		transactionCoordinator.pulse();
+		assertEquals( 1, jtaPlatform.getCanRegisterSynchronizationCount() );
+		assertFalse( transactionCoordinator.isSynchronizationRegistered() );
+		tm.rollback();
+
+		tm.begin();
+		transactionCoordinator.pulse();
+		assertEquals( 2, jtaPlatform.getCanRegisterSynchronizationCount() );
+		assertTrue( transactionCoordinator.isSynchronizationRegistered() );
+		tm.commit();
+		assertFalse( transactionCoordinator.isSynchronizationRegistered() );
+	}
+
+	@Test
+	public void testPerTransactionPolicyWithoutSynchronizationRegistry() throws Exception {
+		final TransactionManager tm = JtaPlatformStandardTestingImpl.INSTANCE.transactionManager();
+		assertEquals( Status.STATUS_NO_TRANSACTION, tm.getStatus() );
+
+		final JtaTransactionCoordinatorImpl transactionCoordinator = buildTransactionCoordinator(
+				JoinCheckPolicy.PER_TRANSACTION,
+				null
+		);
+		assertEquals( 1, jtaPlatform.getCanRegisterSynchronizationCount() );
+
+		// the current transaction is identified through the TransactionManager instead
+		transactionCoordinator.pulse();
+		transactionCoordinator.pulse();
+		assertEquals( 1, jtaPlatform.getCanRegisterSynchronizationCount() );
+		assertEquals( 3, jtaPlatform.getTransactionManagerCallCount() );
+
+		tm.begin();
+		transactionCoordinator.pulse();
+		assertEquals( 2, jtaPlatform.getCanRegisterSynchronizationCount() );
+		assertTrue( transactionCoordinator.isSynchronizationRegistered() );
+		tm.commit();
+		assertFalse( transactionCoordinator.isSynchronizationRegistered() );
+	}
+}
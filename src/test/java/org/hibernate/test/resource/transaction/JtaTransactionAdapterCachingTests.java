@@ -0,0 +1,76 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.transaction;
+
+import javax.transaction.Status;
+
+import org.hibernate.resource.transaction.TransactionCoordinator;
+import org.hibernate.resource.transaction.TransactionCoordinatorBuilderFactory;
+import org.hibernate.resource.transaction.TransactionCoordinatorJtaBuilder;
+
+import org.hibernate.test.resource.transaction.common.JtaPlatformCountingImpl;
+import org.hibernate.test.resource.transaction.common.JtaPlatformStandardTestingImpl;
+import org.hibernate.test.resource.transaction.common.TransactionCoordinatorOwnerTestingImpl;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that the JtaTransactionAdapter is resolved once per builder configuration rather than per
+ * coordinator/transaction.
+ *
+ * @author Steve Ebersole
+ */
+public class JtaTransactionAdapterCachingTests {
+	private final TransactionCoordinatorOwnerTestingImpl owner = new TransactionCoordinatorOwnerTestingImpl();
+
+	@Test
+	public void testAdapterResolvedOncePerBuilder() throws Exception {
+		final JtaPlatformCountingImpl jtaPlatform = new JtaPlatformCountingImpl( JtaPlatformStandardTestingImpl.INSTANCE );
+		final TransactionCoordinatorJtaBuilder builder = TransactionCoordinatorBuilderFactory.INSTANCE.forJta()
+				.setJtaPlatform( jtaPlatform )
+				.setPreferUserTransactions( false )
+				.setPerformJtaThreadTracking( false );
+
+		for ( int i = 0; i < 3; i++ ) {
+			final TransactionCoordinator transactionCoordinator = builder.buildTransactionCoordinator( owner );
+			transactionCoordinator.getTransactionDriverControl().begin();
+			transactionCoordinator.getTransactionDriverControl().commit();
+			transactionCoordinator.getTransactionDriverControl().begin();
+			transactionCoordinator.getTransactionDriverControl().rollback();
+		}
+
+		assertEquals( Status.STATUS_NO_TRANSACTION, JtaPlatformStandardTestingImpl.INSTANCE.transactionManager().getStatus() );
+		assertEquals( 1, jtaPlatform.getTransactionManagerRetrievalCount() );
+		assertEquals( 0, jtaPlatform.getUserTransactionRetrievalCount() );
+
+		// changing the preference should lead to a new resolution
+		builder.setPreferUserTransactions( true );
+		final TransactionCoordinator transactionCoordinator = builder.buildTransactionCoordinator( owner );
+		transactionCoordinator.getTransactionDriverControl().begin();
+		transactionCoordinator.getTransactionDriverControl().commit();
+		assertEquals( 1, jtaPlatform.getTransactionManagerRetrievalCount() );
+		assertEquals( 1, jtaPlatform.getUserTransactionRetrievalCount() );
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.transaction;
+
+import javax.transaction.Status;
+
+import org.hibernate.HibernateException;
+import org.hibernate.resource.transaction.backend.jta.internal.synchronization.SynchronizationCallbackCoordinatorTrackingImpl;
+import org.hibernate.resource.transaction.backend.jta.internal.synchronization.SynchronizationCallbackTarget;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the hand-off of rollbacks initiated from a "reaper" thread in
+ * SynchronizationCallbackCoordinatorTrackingImpl
+ *
+ * @author Steve Ebersole
+ */
+public class SynchronizationCallbackCoordinatorTrackingImplTests {
+	@Test
+	public void testForeignRollbackWhileOwnerIdle() throws Exception {
+		final CallbackTargetImpl target = new CallbackTargetImpl();
+		final SynchronizationCallbackCoordinatorTrackingImpl coordinator = new SynchronizationCallbackCoordinatorTrackingImpl( target );
+		coordinator.synchronizationRegistered();
+
+		rollbackFromOtherThread( coordinator );
+
+		// the reaper should have performed the completion itself
+		assertEquals( 1, target.afterCompletionCount );
+		assertFalse( target.successful );
+		assertNotSame( Thread.currentThread(), target.afterCompletionThread );
+
+		// the owner should be told on its next work
+		try {
+			coordinator.beforeOwnerWork();
+			fail( "Expecting HibernateException" );
+		}
+		catch (HibernateException expected) {
+		}
+
+		// but only once
+		coordinator.beforeOwnerWork();
+		coordinator.afterOwnerWork();
+		assertEquals( 1, target.afterCompletionCount );
+	}
+
+	@Test
+	public void testForeignRollbackWhileOwnerWorking() throws Exception {
+		final CallbackTargetImpl target = new CallbackTargetImpl();
+		final SynchronizationCallbackCoordinatorTrackingImpl coordinator = new SynchronizationCallbackCoordinatorTrackingImpl( target );
+		coordinator.synchronizationRegistered();
+
+		coordinator.beforeOwnerWork();
+		coordinator.beforeOwnerWork();
+		rollbackFromOtherThread( coordinator );
+		// the completion should have been queued for the owner
+		assertEquals( 0, target.afterCompletionCount );
+
+		coordinator.afterOwnerWork();
+		// still nested
+		assertEquals( 0, target.afterCompletionCount );
+
+		coordinator.afterOwnerWork();
+		assertEquals( 1, target.afterCompletionCount );
+		assertSame( Thread.currentThread(), target.afterCompletionThread );
+
+		try {
+			coordinator.processAnyDelayedAfterCompletion();
+			fail( "Expecting HibernateException" );
+		}
+		catch (HibernateException expected) {
+		}
+
+		coordinator.processAnyDelayedAfterCompletion();
+		assertEquals( 1, target.afterCompletionCount );
+	}
+
+	@Test
+	public void testOwnerThreadRollbackIsImmediate() throws Exception {
+		final CallbackTargetImpl target = new CallbackTargetImpl();
+		final SynchronizationCallbackCoordinatorTrackingImpl coordinator = new SynchronizationCallbackCoordinatorTrackingImpl( target );
+		coordinator.synchronizationRegistered();
+
+		coordinator.beforeOwnerWork();
+		coordinator.afterCompletion( Status.STATUS_ROLLEDBACK );
+		assertEquals( 1, target.afterCompletionCount );
+		coordinator.afterOwnerWork();
+
+		coordinator.beforeOwnerWork();
+		coordinator.afterOwnerWork();
+		coordinator.processAnyDelayedAfterCompletion();
+		assertEquals( 1, target.afterCompletionCount );
+	}
+
+	private static void rollbackFromOtherThread(final SynchronizationCallbackCoordinatorTrackingImpl coordinator)
+			throws InterruptedException {
+		final Thread reaper = new Thread(
+				new Runnable() {
+					@Override
+					public void run() {
+						coordinator.afterCompletion( Status.STATUS_ROLLEDBACK );
+					}
+				}
+		);
+		reaper.start();
+		reaper.join();
+	}
+
+	private static class CallbackTargetImpl implements SynchronizationCallbackTarget {
+		private volatile int afterCompletionCount;
+		private volatile boolean successful;
+		private volatile Thread afterCompletionThread;
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public void beforeCompletion() {
+		}
+
+		@Override
+		public void afterCompletion(boolean successful) {
+			this.afterCompletionCount++;
+			this.successful = successful;
+			this.afterCompletionThread = Thread.currentThread();
+		}
+	}
+}
@@ -23,6 +23,10 @@
  */
 package org.hibernate.test.resource.transaction;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import javax.transaction.Status;
 import javax.transaction.Synchronization;
 
@@ -137,4 +141,84 @@ public class SynchronizationRegistryStandardImplTests {
 		}
 
 	}
+
+	@Test
+	public void testAsyncAfterCompletion() {
+		final DeferringExecutor executor = new DeferringExecutor();
+		final SynchronizationRegistryStandardImpl registry = new SynchronizationRegistryStandardImpl( executor );
+
+		final SynchronizationCollectorImpl synchronization = new SynchronizationCollectorImpl();
+		registry.registerAsyncSynchronization( synchronization );
+		registry.registerAsyncSynchronization( synchronization );
+		assertEquals( 1, registry.getNumberOfRegisteredSynchronizations() );
+
+		registry.notifySynchronizationsBeforeTransactionCompletion();
+		assertEquals( 1, synchronization.getBeforeCompletionCount() );
+
+		registry.notifySynchronizationsAfterTransactionCompletion( Status.STATUS_COMMITTED );
+		// the callback should have been handed off, not yet performed
+		assertEquals( 0, synchronization.getSuccessfulCompletionCount() );
+		assertEquals( 1, executor.tasks.size() );
+		assertEquals( 0, registry.getNumberOfRegisteredSynchronizations() );
+
+		executor.runAll();
+		assertEquals( 1, synchronization.getSuccessfulCompletionCount() );
+		assertEquals( 0, synchronization.getFailedCompletionCount() );
+
+		// make sure the outcome cannot be delivered a second time
+		executor.runAll();
+		assertEquals( 1, synchronization.getSuccessfulCompletionCount() );
+	}
+
+	@Test
+	public void testAsyncAfterCompletionFailureIsNotPropagated() {
+		final DeferringExecutor executor = new DeferringExecutor();
+		final SynchronizationRegistryStandardImpl registry = new SynchronizationRegistryStandardImpl( executor );
+		registry.registerAsyncSynchronization( new SynchronizationErrorImpl( false, true ) );
+
+		registry.notifySynchronizationsAfterTransactionCompletion( Status.STATUS_COMMITTED );
+		executor.runAll();
+	}
+
+	@Test
+	public void testAsyncAfterCompletionFallsBackWhenRejected() {
+		final SynchronizationRegistryStandardImpl registry = new SynchronizationRegistryStandardImpl(
+				new Executor() {
+					@Override
+					public void execute(Runnable command) {
+						throw new RejectedExecutionException( "saturated" );
+					}
+				}
+		);
+
+		final SynchronizationCollectorImpl synchronization = new SynchronizationCollectorImpl();
+		registry.registerAsyncSynchronization( synchronization );
+		registry.notifySynchronizationsAfterTransactionCompletion( Status.STATUS_ROLLEDBACK );
+		assertEquals( 1, synchronization.getFailedCompletionCount() );
+		assertEquals( 0, registry.getNumberOfRegisteredSynchronizations() );
+	}
+
+	@Test
+	public void testAsyncWithoutExecutorIsSynchronous() {
+		final SynchronizationRegistryStandardImpl registry = new SynchronizationRegistryStandardImpl();
+		final SynchronizationCollectorImpl synchronization = new SynchronizationCollectorImpl();
+		registry.registerAsyncSynchronization( synchronization );
+		registry.notifySynchronizationsAfterTransactionCompletion( Status.STATUS_COMMITTED );
+		assertEquals( 1, synchronization.getSuccessfulCompletionCount() );
+	}
+
+	private static class DeferringExecutor implements Executor {
+		private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+		@Override
+		public void execute(Runnable command) {
+			tasks.add( command );
+		}
+
+		public void runAll() {
+			for ( Runnable task : tasks ) {
+				task.run();
+			}
+		}
+	}
 }
@@ -0,0 +1,132 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2014, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.test.resource.transaction.common;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+import javax.transaction.UserTransaction;
+
+import org.hibernate.engine.transaction.jta.platform.spi.JtaPlatform;
+
+/**
+ * A JtaPlatform which delegates to another while counting the calls made to it.
+ *
+ * @author Steve Ebersole
+ */
+public class JtaPlatformCountingImpl implements JtaPlatform {
+	private final JtaPlatform delegate;
+
+	private int transactionManagerRetrievalCount;
+	private int userTransactionRetrievalCount;
+	private int canRegisterSynchronizationCount;
+	private int transactionManagerCallCount;
+
+	public JtaPlatformCountingImpl(JtaPlatform delegate) {
+		this.delegate = delegate;
+	}
+
+	public int getTransactionManagerRetrievalCount() {
+		return transactionManagerRetrievalCount;
+	}
+
+	public int getUserTransactionRetrievalCount() {
+		return userTransactionRetrievalCount;
+	}
+
+	public int getCanRegisterSynchronizationCount() {
+		return canRegisterSynchronizationCount;
+	}
+
+	/**
+	 * The number of calls made on TransactionManagers obtained from {@link #retrieveTransactionManager()}
+	 */
+	public int getTransactionManagerCallCount() {
+		return transactionManagerCallCount;
+	}
+
+	public void reset() {
+		transactionManagerRetrievalCount = 0;
+		userTransactionRetrievalCount = 0;
+		canRegisterSynchronizationCount = 0;
+		transactionManagerCallCount = 0;
+	}
+
+	@Override
+	public TransactionManager retrieveTransactionManager() {
+		transactionManagerRetrievalCount++;
+		final TransactionManager transactionManager = delegate.retrieveTransactionManager();
+		if ( transactionManager == null ) {
+			return null;
+		}
+		return (TransactionManager) Proxy.newProxyInstance(
+				getClass().getClassLoader(),
+				new Class[] { TransactionManager.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						transactionManagerCallCount++;
+						try {
+							return method.invoke( transactionManager, args );
+						}
+						catch (InvocationTargetException e) {
+							throw e.getCause();
+						}
+					}
+				}
+		);
+	}
+
+	@Override
+	public UserTransaction retrieveUserTransaction() {
+		userTransactionRetrievalCount++;
+		return delegate.retrieveUserTransaction();
+	}
+
+	@Override
+	public Object getTransactionIdentifier(Transaction transaction) {
+		return delegate.getTransactionIdentifier( transaction );
+	}
+
+	@Override
+	public boolean canRegisterSynchronization() {
+		canRegisterSynchronizationCount++;
+		return delegate.canRegisterSynchronization();
+	}
+
+	@Override
+	public void registerSynchronization(Synchronization synchronization) {
+		delegate.registerSynchronization( synchronization );
+	}
+
+	@Override
+	public int getCurrentStatus() throws SystemException {
+		return delegate.getCurrentStatus();
+	}
+}